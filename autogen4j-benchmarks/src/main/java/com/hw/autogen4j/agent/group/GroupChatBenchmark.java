@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent.group;
+
+import com.hw.autogen4j.agent.Agent;
+import com.hw.autogen4j.agent.AssistantAgent;
+import com.hw.autogen4j.model.StubChatModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * The per-round work of a group chat manager outside the llm call: building the speaker selection prompt and finding
+ * the agents mentioned in the reply, as the number of agents grows.
+ * <p>
+ * It lives in the package of {@link GroupChat} to reach {@link GroupChat#mentionedAgents(String, List)}.
+ *
+ * @author HamaWhite
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupChatBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int agentCount;
+
+    private GroupChat groupChat;
+
+    private List<Agent> agents;
+
+    private String reply;
+
+    @Setup
+    public void setUp() {
+        StubChatModel chatModel = StubChatModel.builder().build();
+        agents = IntStream.range(0, agentCount)
+                .<Agent>mapToObj(i -> AssistantAgent.builder()
+                        .name("agent_" + i)
+                        .systemMessage("An expert in the domain number %d.".formatted(i))
+                        .chatModel(chatModel)
+                        .build())
+                .toList();
+        groupChat = GroupChat.builder().agents(agents).build();
+        // a long reply mentioning one agent, as the selector would ideally return it
+        reply = "After reading the conversation, the next role to play is agent_%d, because it knows best. "
+                .formatted(agentCount / 2)
+                .repeat(16);
+    }
+
+    @Benchmark
+    public Map<String, Integer> mentionedAgents() {
+        return groupChat.mentionedAgents(reply, agents);
+    }
+
+    @Benchmark
+    public String selectSpeakerMsg() {
+        return groupChat.selectSpeakerMsg(agents);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.benchmark;
+
+import com.hw.autogen4j.entity.CodeBlock;
+import com.hw.autogen4j.util.CodeUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting the code blocks from large markdown replies, which runs on every message received by an agent with code
+ * execution enabled.
+ *
+ * @author HamaWhite
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeUtilBenchmark {
+
+    /**
+     * the number of code blocks in the reply, each one preceded by a paragraph of prose.
+     */
+    @Param({"0", "4", "64"})
+    public int codeBlocks;
+
+    private String reply;
+
+    @Setup
+    public void setUp() {
+        reply = markdownReply(codeBlocks);
+    }
+
+    @Benchmark
+    public List<CodeBlock> extractCode() {
+        return CodeUtil.extractCode(reply);
+    }
+
+    @Benchmark
+    public List<CodeBlock> extractSingleLineCode() {
+        return CodeUtil.extractCode(reply, true);
+    }
+
+    static String markdownReply(int codeBlocks) {
+        StringBuilder builder = new StringBuilder();
+        String paragraph = "To solve the task, we first collect the data and then analyze it step by step. "
+                .repeat(8) + "Use `pip install pandas` if the `pandas` module is missing.\n\n";
+        for (int i = 0; i < Math.max(codeBlocks, 1); i++) {
+            builder.append(paragraph);
+            if (i < codeBlocks) {
+                builder.append("```").append(i % 2 == 0 ? "python" : "sh").append('\n');
+                for (int line = 0; line < 20; line++) {
+                    builder.append("print(\"step %d, line %d\")\n".formatted(i, line));
+                }
+                builder.append("```\n\n");
+            }
+        }
+        return builder.append("TERMINATE").toString();
+    }
+}
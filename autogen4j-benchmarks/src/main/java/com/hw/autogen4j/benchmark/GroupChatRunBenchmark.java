@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.benchmark;
+
+import com.hw.autogen4j.agent.Agent;
+import com.hw.autogen4j.agent.AssistantAgent;
+import com.hw.autogen4j.agent.UserProxyAgent;
+import com.hw.autogen4j.agent.group.GroupChat;
+import com.hw.autogen4j.agent.group.GroupChatManager;
+import com.hw.autogen4j.conversation.ConversationSession;
+import com.hw.autogen4j.model.StubChatModel;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+
+/**
+ * A full multi-round group chat, from the initial message of the user proxy until the maximum number of rounds,
+ * against in-process stub models with no latency, so that the result is the overhead of the framework alone:
+ * broadcasting, history bookkeeping, speaker selection and reply dispatch.
+ *
+ * @author HamaWhite
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupChatRunBenchmark {
+
+    /**
+     * the number of assistants taking part in the chat, besides the user proxy.
+     */
+    @Param({"3", "12"})
+    public int assistants;
+
+    @Param({"10", "40"})
+    public int maxRound;
+
+    private UserProxyAgent userProxy;
+
+    private List<Agent> agents;
+
+    @Setup
+    public void setUp() {
+        userProxy = UserProxyAgent.builder()
+                .name("user_proxy")
+                .systemMessage("A human admin.")
+                .humanInputMode(NEVER)
+                .maxConsecutiveAutoReply(Integer.MAX_VALUE)
+                .chatModel(StubChatModel.builder().replies("Please go on.").build())
+                .build();
+        agents = new ArrayList<>(List.of(userProxy));
+        for (int i = 0; i < assistants; i++) {
+            agents.add(AssistantAgent.builder()
+                    .name("assistant_" + i)
+                    .systemMessage("An expert in the domain number %d.".formatted(i))
+                    .maxConsecutiveAutoReply(Integer.MAX_VALUE)
+                    .chatModel(StubChatModel.builder()
+                            .replies("Here is my analysis of the task, step by step. ".repeat(10))
+                            .build())
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public int runChat() {
+        // the group chat holds the transcript, so every chat gets a new one
+        GroupChat groupChat = GroupChat.builder()
+                .agents(agents)
+                .maxRound(maxRound)
+                .build();
+        AtomicInteger round = new AtomicInteger();
+        GroupChatManager manager = GroupChatManager.builder()
+                .groupChat(groupChat)
+                .chatModel(StubChatModel.builder()
+                        .responder(request -> new ChatMessage(ASSISTANT,
+                                agents.get(round.incrementAndGet() % agents.size()).getName()))
+                        .build())
+                .build();
+
+        userProxy.initiateChat(manager, "Find the latest paper about gpt-4 and its applications.",
+                new ConversationSession());
+        return groupChat.getMessages().size();
+    }
+}
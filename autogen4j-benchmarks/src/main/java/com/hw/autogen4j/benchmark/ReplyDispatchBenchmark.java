@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.benchmark;
+
+import com.hw.autogen4j.agent.Agent;
+import com.hw.autogen4j.agent.ConversableAgent;
+import com.hw.autogen4j.agent.ReplyTrigger;
+import com.hw.autogen4j.agent.UserProxyAgent;
+import com.hw.autogen4j.agent.group.GroupChatManager;
+import com.hw.autogen4j.entity.ReplyResult;
+import com.hw.autogen4j.model.StubChatModel;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+
+/**
+ * The dispatch of {@link ConversableAgent#generateReply(Agent, List)} through the registered reply functions, down to
+ * an llm reply from an in-process stub model, so that the result is the overhead of the framework alone.
+ *
+ * @author HamaWhite
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplyDispatchBenchmark {
+
+    /**
+     * the number of custom reply functions registered before the built-in ones, half of them triggered by the sender.
+     */
+    @Param({"0", "8", "32"})
+    public int replyFunctions;
+
+    /**
+     * the number of messages in the conversation history.
+     */
+    @Param({"10", "100"})
+    public int historySize;
+
+    private ConversableAgent agent;
+
+    private Agent sender;
+
+    private List<ChatMessage> messages;
+
+    @Setup
+    public void setUp() {
+        agent = new DispatchAgent(replyFunctions);
+        sender = UserProxyAgent.builder().name("user_proxy").humanInputMode(NEVER).build();
+        messages = IntStream.range(0, historySize)
+                .mapToObj(i -> new ChatMessage("Message number %d of the conversation.".formatted(i)))
+                .toList();
+    }
+
+    @Benchmark
+    public ChatMessage generateReply() {
+        return agent.generateReply(sender, messages);
+    }
+
+    /**
+     * An assistant with extra reply functions which never apply, so that every call ends in the llm reply.
+     */
+    private static class DispatchAgent extends ConversableAgent {
+
+        private DispatchAgent(int replyFunctions) {
+            super(new Builder()
+                    .name("assistant")
+                    .humanInputMode(NEVER)
+                    .maxConsecutiveAutoReply(Integer.MAX_VALUE)
+                    .chatModel(StubChatModel.builder().replies("The answer is 42.").build()));
+            for (int i = 0; i < replyFunctions; i++) {
+                ReplyTrigger trigger = i % 2 == 0 ? ReplyTrigger.any() : ReplyTrigger.of(GroupChatManager.class);
+                registerReply(trigger, (sender, messages) -> ReplyResult.NOT_APPLICABLE, 0);
+            }
+        }
+
+        private static class Builder extends ConversableAgent.Builder<Builder> {
+
+            @Override
+            protected ConversableAgent build() {
+                throw new UnsupportedOperationException("DispatchAgent is created by its constructor.");
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import com.hw.openai.entity.chat.ChatMessage;
 import lombok.Getter;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An agent can communicate with other agents and perform actions.
@@ -56,6 +57,9 @@ public abstract class Agent {
 
     /**
      * Send a message to another agent.
+     * <p>
+     * A reply requested from inside a reply function is exchanged before this method returns; the conversation
+     * between the two agents runs to its end, as a nested chat would.
      *
      * @param recipient    the recipient of the message.
      * @param message      message to be sent.
@@ -84,6 +88,65 @@ public abstract class Agent {
      */
     public abstract ChatMessage generateReply(Agent sender, List<ChatMessage> messages);
 
+    /**
+     * Send a message to another agent without blocking the calling thread.
+     * The default implementation delegates to {@link #send(Agent, ChatMessage, boolean, boolean)} on the calling
+     * thread, subclasses can override it to provide a non-blocking implementation.
+     *
+     * @param recipient    the recipient of the message.
+     * @param message      message to be sent.
+     * @param requestReply whether to request a reply from the recipient.
+     * @param silent       whether to print the message sent.
+     * @return a future that completes when the message, and the conversation it triggers, have been processed.
+     */
+    public CompletableFuture<Void> sendAsync(Agent recipient, ChatMessage message, boolean requestReply,
+            boolean silent) {
+        try {
+            send(recipient, message, requestReply, silent);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Receive a message from another agent without blocking the calling thread.
+     * The default implementation delegates to {@link #receive(Agent, ChatMessage, boolean, boolean)} on the calling
+     * thread, subclasses can override it to provide a non-blocking implementation.
+     *
+     * @param sender       sender of an Agent instance.
+     * @param message      message from the sender.
+     * @param requestReply whether a reply is requested from the sender.
+     * @param silent       whether to print the message received.
+     * @return a future that completes when the message, and the conversation it triggers, have been processed.
+     */
+    public CompletableFuture<Void> receiveAsync(Agent sender, ChatMessage message, boolean requestReply,
+            boolean silent) {
+        try {
+            receive(sender, message, requestReply, silent);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Generate a reply based on the received messages without blocking the calling thread.
+     * The default implementation delegates to {@link #generateReply(Agent, List)} on the calling thread,
+     * subclasses can override it to provide a non-blocking implementation.
+     *
+     * @param sender   sender of an Agent instance.
+     * @param messages a list of messages received.
+     * @return a future of the reply message.
+     */
+    public CompletableFuture<ChatMessage> generateReplyAsync(Agent sender, List<ChatMessage> messages) {
+        try {
+            return CompletableFuture.completedFuture(generateReply(sender, messages));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
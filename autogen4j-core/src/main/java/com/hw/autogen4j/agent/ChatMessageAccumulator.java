@@ -0,0 +1,114 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent;
+
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatMessage;
+import com.hw.openai.entity.chat.ChatMessageRole;
+import com.hw.openai.entity.chat.FunctionCall;
+import com.hw.openai.entity.chat.ToolCall;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+
+/**
+ * Assembles the chunks of a streamed chat completion into a single message.
+ *
+ * @author HamaWhite
+ */
+class ChatMessageAccumulator {
+
+    private ChatMessageRole role = ASSISTANT;
+
+    private final StringBuilder content = new StringBuilder();
+
+    /**
+     * tool calls are streamed in fragments, identified by their index.
+     */
+    private final Map<Integer, ToolCall> toolCalls = new TreeMap<>();
+
+    /**
+     * Append a chunk to the message.
+     *
+     * @param chunk the chunk of the streamed chat completion.
+     * @return the content carried by the chunk, empty if there is none.
+     */
+    String append(ChatCompletionChunk chunk) {
+        if (CollectionUtils.isEmpty(chunk.getChoices()) || chunk.getChoices().get(0).getMessage() == null) {
+            return "";
+        }
+        ChatMessage delta = chunk.getChoices().get(0).getMessage();
+        if (delta.getRole() != null) {
+            role = delta.getRole();
+        }
+        if (CollectionUtils.isNotEmpty(delta.getToolCalls())) {
+            delta.getToolCalls().forEach(this::appendToolCall);
+        }
+        if (delta.getContent() == null) {
+            return "";
+        }
+        content.append(delta.getContent());
+        return delta.getContent();
+    }
+
+    private void appendToolCall(ToolCall fragment) {
+        int index = fragment.getIndex() != null ? fragment.getIndex() : 0;
+        ToolCall toolCall = toolCalls.computeIfAbsent(index, key -> {
+            ToolCall value = new ToolCall();
+            value.setIndex(key);
+            value.setFunction(new FunctionCall());
+            return value;
+        });
+        if (fragment.getId() != null) {
+            toolCall.setId(fragment.getId());
+        }
+        if (fragment.getType() != null) {
+            toolCall.setType(fragment.getType());
+        }
+        FunctionCall function = fragment.getFunction();
+        if (function != null) {
+            if (function.getName() != null) {
+                toolCall.getFunction().setName(function.getName());
+            }
+            toolCall.getFunction().setArguments(
+                    StringUtils.defaultString(toolCall.getFunction().getArguments())
+                            + StringUtils.defaultString(function.getArguments()));
+        }
+    }
+
+    /**
+     * The message assembled from the chunks received so far.
+     *
+     * @return a new message.
+     */
+    ChatMessage message() {
+        ChatMessage message = new ChatMessage(role, content.toString());
+        if (!toolCalls.isEmpty()) {
+            message.setToolCalls(new ArrayList<>(toolCalls.values()));
+        }
+        return message;
+    }
+}
@@ -19,26 +19,68 @@
 
 package com.hw.autogen4j.agent;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.hw.autogen4j.cache.ReplyCache;
+import com.hw.autogen4j.context.ContextPolicy;
+import com.hw.autogen4j.conversation.ConversationDriver;
+import com.hw.autogen4j.conversation.ConversationSession;
+import com.hw.autogen4j.conversation.MessageHistory;
+import com.hw.autogen4j.conversation.SharedMessages;
 import com.hw.autogen4j.entity.*;
 import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.autogen4j.function.FunctionCallExecutor;
+import com.hw.autogen4j.function.FunctionRegistry;
+import com.hw.autogen4j.jfr.ModelCallEvent;
+import com.hw.autogen4j.jfr.ReplyFunctionEvent;
+import com.hw.autogen4j.jfr.TurnEvent;
+import com.hw.autogen4j.limit.AdmissionController;
+import com.hw.autogen4j.metrics.Metrics;
+import com.hw.autogen4j.model.AcceptanceCheck;
+import com.hw.autogen4j.model.CascadingChatModel;
+import com.hw.autogen4j.model.ChatModel;
+import com.hw.autogen4j.model.EndpointConfig;
+import com.hw.autogen4j.model.LoadBalancedChatModel;
+import com.hw.autogen4j.model.OpenAiChatModel;
+import com.hw.autogen4j.model.RateLimitedChatModel;
+import com.hw.autogen4j.model.RetryingChatModel;
+import com.hw.autogen4j.retry.CircuitBreaker;
+import com.hw.autogen4j.retry.RetryPolicy;
+import com.hw.autogen4j.util.ConcurrentUtil;
 import com.hw.openai.OpenAiClient;
 import com.hw.openai.entity.chat.*;
+import com.hw.openai.entity.completions.Usage;
 
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
-import java.util.function.Function;
 import java.util.function.Predicate;
 
 import static com.hw.autogen4j.entity.HumanInputMode.*;
+import static com.hw.autogen4j.metrics.Metrics.LLM_LATENCY;
+import static com.hw.autogen4j.metrics.Metrics.LLM_TOKENS;
+import static com.hw.autogen4j.metrics.Metrics.REPLY_CACHE;
+import static com.hw.autogen4j.metrics.Metrics.REPLY_FUNCTION_LATENCY;
+import static com.hw.autogen4j.util.CodeUtil.EXECUTABLE_LANGUAGES;
 import static com.hw.autogen4j.util.CodeUtil.executeCode;
+import static com.hw.autogen4j.util.ChatCompletionUtil.copyOf;
 import static com.hw.autogen4j.util.CodeUtil.extractCode;
+import static com.hw.autogen4j.util.ConcurrentUtil.defaultExecutor;
+import static com.hw.autogen4j.util.ConcurrentUtil.join;
 import static com.hw.openai.entity.chat.ChatMessageRole.*;
 
 /**
@@ -53,8 +95,25 @@ public class ConversableAgent extends Agent {
 
     private static final Logger LOG = LoggerFactory.getLogger(ConversableAgent.class);
 
+    /**
+     * the name of the reply functions registered without a name.
+     */
+    private static final String CUSTOM_REPLY_FUNCTION = "custom";
+
+    /**
+     * the name of the function message replying to several tool calls at once.
+     */
+    private static final String PARALLEL_FUNCTION_NAME = "multi_tool_use";
+
     private static final String NO_HUMAN_INPUT_MSG = "NO HUMAN INPUT RECEIVED.";
 
+    /**
+     * the console shared by all agents, concurrent chats take turns to prompt the human.
+     */
+    private static final BufferedReader CONSOLE =
+            new BufferedReader(new InputStreamReader(System.in, Charset.defaultCharset()));
+    private static final Lock CONSOLE_LOCK = new ReentrantLock();
+
     /**
      * a function that takes a message in the form of a dictionary and
      * returns a boolean value indicating if this received message is a termination message.
@@ -72,9 +131,14 @@ public class ConversableAgent extends Agent {
     protected HumanInputMode humanInputMode;
 
     /**
-     * mapping function names (passed to llm) to functions.
+     * mapping function names (passed to llm) to functions, which this agent executes.
      */
-    protected Map<String, Function<?, ?>> functionMap;
+    protected FunctionRegistry functionMap;
+
+    /**
+     * executes the tool calls of a message concurrently, with a timeout per call.
+     */
+    protected FunctionCallExecutor functionCallExecutor;
 
     /**
      * config for the code execution.
@@ -82,12 +146,13 @@ public class ConversableAgent extends Agent {
     protected CodeExecutionConfig codeExecutionConfig;
 
     /**
-     * a client for interacting with the OpenAI API.
+     * the model generating the llm replies.
      */
-    protected OpenAiClient client;
+    protected ChatModel chatModel;
 
     /**
-     * Chat conversation.
+     * Chat conversation template, holding the model and the sampling parameters. It is copied for every request and
+     * never mutated, so that concurrent sessions can share it.
      */
     protected ChatCompletion chatCompletion;
 
@@ -96,11 +161,52 @@ public class ConversableAgent extends Agent {
      */
     protected String defaultAutoReply;
 
-    private final Map<Agent, Integer> consecutiveAutoReplyCounter = new HashMap<>();
+    /**
+     * executor for the blocking reply functions when the conversation is driven asynchronously.
+     */
+    protected Executor executor;
+
+    /**
+     * listener receiving the llm reply as it is generated, setting it enables streaming.
+     */
+    protected StreamListener streamListener;
+
+    /**
+     * cache of llm replies, keyed by the content of the request.
+     */
+    protected ReplyCache replyCache;
+
+    /**
+     * policy selecting the part of the history sent to the llm.
+     */
+    protected ContextPolicy contextPolicy;
+
     private final List<ChatMessage> oaiSystemMessage;
-    private final Map<Agent, List<ChatMessage>> oaiMessages = new HashMap<>();
 
-    private final List<BiFunction<Agent, List<ChatMessage>, ReplyResult>> replyFuncList;
+    /**
+     * the session used when no session is bound to the calling thread.
+     */
+    private final ConversationSession defaultSession = new ConversationSession();
+
+    private final List<ReplyFunction> replyFuncList;
+
+    /**
+     * the reply functions applying to each sender, in order, built on the first message from the sender.
+     */
+    private final Cache<Agent, List<ReplyFunction>> dispatchTable = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * A registered reply function, which can be called either blocking or non-blocking.
+     *
+     * @param name    the name of the reply function in the metrics.
+     * @param trigger the trigger deciding to which senders the reply function applies.
+     * @param sync    the blocking form of the reply function.
+     * @param async   the non-blocking form of the reply function.
+     */
+    private record ReplyFunction(String name, ReplyTrigger trigger,
+            BiFunction<Agent, List<ChatMessage>, ReplyResult> sync,
+            BiFunction<Agent, List<ChatMessage>, CompletableFuture<ReplyResult>> async) {
+    }
 
     protected ConversableAgent(Builder<?> builder) {
         this.name = builder.name;
@@ -109,18 +215,99 @@ public class ConversableAgent extends Agent {
         this.maxConsecutiveAutoReply = builder.maxConsecutiveAutoReply;
         this.humanInputMode = builder.humanInputMode;
         this.functionMap = builder.functionMap;
+        this.functionCallExecutor = builder.functionCallExecutor;
         this.codeExecutionConfig = builder.codeExecutionConfig;
-        this.client = builder.client;
-        this.chatCompletion = builder.chatCompletion;
+        this.chatModel = createChatModel(builder);
+        this.chatCompletion = withTools(builder.chatCompletion, builder.functions);
         this.defaultAutoReply = builder.defaultAutoReply;
+        this.executor = builder.executor;
+        this.streamListener = builder.streamListener;
+        this.replyCache = builder.replyCache;
+        this.contextPolicy = builder.contextPolicy;
 
         this.oaiSystemMessage = List.of(new ChatMessage(SYSTEM, systemMessage));
         // creating a list of method references
         this.replyFuncList = Lists.newArrayList(
-                this::checkTerminationAndHumanReply,
-                this::generateFunctionCallReply,
-                this::generateCodeExecutionReply,
-                this::generateOaiReply);
+                blockingReply("checkTerminationAndHumanReply", ReplyTrigger.any(),
+                        this::checkTerminationAndHumanReply),
+                blockingReply("generateFunctionCallReply", ReplyTrigger.any(), this::generateFunctionCallReply),
+                blockingReply("generateCodeExecutionReply", sender -> codeExecutionConfig != null,
+                        this::generateCodeExecutionReply),
+                blockingReply("generateOaiReply", ReplyTrigger.any(), this::generateOaiReply));
+    }
+
+    /**
+     * Create the model generating the llm replies: the given model, the OpenAI client, the deployments or the
+     * endpoint, in that order of precedence, wrapped in the admission controller, then in the retry policy so that
+     * each retry is admitted again, then in the cascade of cheaper models.
+     */
+    private static ChatModel createChatModel(Builder<?> builder) {
+        ChatModel model;
+        CircuitBreaker circuitBreaker = builder.circuitBreaker;
+        if (builder.chatModel != null) {
+            model = builder.chatModel;
+        } else if (builder.client != null) {
+            model = new OpenAiChatModel(builder.client);
+        } else if (builder.endpoints != null) {
+            // the load balancer ejects the failing deployments itself
+            model = LoadBalancedChatModel.builder().endpoints(builder.endpoints).build();
+        } else {
+            model = new OpenAiChatModel(builder.endpoint);
+            if (circuitBreaker == null && builder.retryPolicy != null) {
+                circuitBreaker = CircuitBreaker.forEndpoint(builder.endpoint);
+            }
+        }
+        if (builder.admissionController != null) {
+            model = new RateLimitedChatModel(model, builder.admissionController);
+        }
+        if (builder.retryPolicy != null || circuitBreaker != null) {
+            model = new RetryingChatModel(model,
+                    builder.retryPolicy != null ? builder.retryPolicy : RetryPolicy.noRetry(), circuitBreaker);
+        }
+        if (builder.cascadeModels != null) {
+            // every tier is admitted and retried on its own
+            CascadingChatModel.Builder cascade = CascadingChatModel.builder()
+                    .acceptanceCheck(builder.acceptanceCheck);
+            for (String cascadeModel : builder.cascadeModels) {
+                cascade.tier(cascadeModel, model);
+            }
+            model = cascade.tier(null, model).build();
+        }
+        return model;
+    }
+
+    private ReplyFunction blockingReply(String name, ReplyTrigger trigger,
+            BiFunction<Agent, List<ChatMessage>, ReplyResult> replyFunc) {
+        // in asynchronous mode, the blocking reply function runs on the executor, within the caller's session
+        return new ReplyFunction(name, trigger, replyFunc, (sender, messages) -> {
+            ConversationSession session = session();
+            return CompletableFuture.supplyAsync(() -> session.call(() -> replyFunc.apply(sender, messages)),
+                    executor);
+        });
+    }
+
+    /**
+     * The session holding the conversation state of this agent: the session bound to the calling thread,
+     * or the default session of this agent if there is none.
+     *
+     * @return the current session.
+     */
+    protected ConversationSession session() {
+        ConversationSession session = ConversationSession.current();
+        return session != null ? session : defaultSession;
+    }
+
+    private Map<Agent, MessageHistory> oaiMessages() {
+        return session().oaiMessages(this);
+    }
+
+    private Map<Agent, Integer> consecutiveAutoReplyCounter() {
+        return session().consecutiveAutoReplyCounter(this);
+    }
+
+    private List<ChatMessage> oaiSystemMessage() {
+        List<ChatMessage> override = session().oaiSystemMessage(this);
+        return override != null ? override : oaiSystemMessage;
     }
 
     /**
@@ -130,16 +317,92 @@ public class ConversableAgent extends Agent {
      * @param replyFunc the reply function.
      */
     protected void registerReply(BiFunction<Agent, List<ChatMessage>, ReplyResult> replyFunc) {
-        this.replyFuncList.add(0, replyFunc);
+        registerReply(ReplyTrigger.any(), replyFunc, 0);
+    }
+
+    /**
+     * Register a reply function, called for the messages from the senders matching the trigger.
+     *
+     * @param trigger   the trigger deciding to which senders the reply function applies.
+     * @param replyFunc the reply function.
+     * @param position  the position of the reply function in the list, the functions are checked in order and 0
+     *                  means it is checked first.
+     */
+    protected void registerReply(ReplyTrigger trigger, BiFunction<Agent, List<ChatMessage>, ReplyResult> replyFunc,
+            int position) {
+        registerReply(CUSTOM_REPLY_FUNCTION, trigger, replyFunc, position);
+    }
+
+    /**
+     * Register a named reply function, called for the messages from the senders matching the trigger.
+     *
+     * @param name      the name of the reply function in the metrics.
+     * @param trigger   the trigger deciding to which senders the reply function applies.
+     * @param replyFunc the reply function.
+     * @param position  the position of the reply function in the list, 0 means it is checked first.
+     */
+    protected void registerReply(String name, ReplyTrigger trigger,
+            BiFunction<Agent, List<ChatMessage>, ReplyResult> replyFunc, int position) {
+        addReplyFunction(position, blockingReply(name, trigger, replyFunc));
+    }
+
+    /**
+     * Register a reply function that returns a future instead of blocking.
+     * The function registered later will be checked earlier by default.
+     *
+     * @param replyFunc the non-blocking reply function.
+     */
+    protected void registerAsyncReply(BiFunction<Agent, List<ChatMessage>, CompletableFuture<ReplyResult>> replyFunc) {
+        registerAsyncReply(ReplyTrigger.any(), replyFunc, 0);
     }
 
     /**
-     * Update the system message.
+     * Register a reply function that returns a future instead of blocking, called for the messages from the senders
+     * matching the trigger.
+     *
+     * @param trigger   the trigger deciding to which senders the reply function applies.
+     * @param replyFunc the non-blocking reply function.
+     * @param position  the position of the reply function in the list, 0 means it is checked first.
+     */
+    protected void registerAsyncReply(ReplyTrigger trigger,
+            BiFunction<Agent, List<ChatMessage>, CompletableFuture<ReplyResult>> replyFunc, int position) {
+        addReplyFunction(position, new ReplyFunction(CUSTOM_REPLY_FUNCTION, trigger,
+                (sender, messages) -> join(replyFunc.apply(sender, messages)), replyFunc));
+    }
+
+    private void addReplyFunction(int position, ReplyFunction replyFunction) {
+        synchronized (replyFuncList) {
+            replyFuncList.add(position, replyFunction);
+            dispatchTable.invalidateAll();
+        }
+    }
+
+    /**
+     * The reply functions applying to the messages from a sender, in order.
+     *
+     * @param sender the sender.
+     * @return the reply functions whose trigger matches the sender.
+     */
+    private List<ReplyFunction> replyFunctions(Agent sender) {
+        List<ReplyFunction> replyFunctions = dispatchTable.getIfPresent(sender);
+        if (replyFunctions == null) {
+            synchronized (replyFuncList) {
+                replyFunctions = replyFuncList.stream()
+                        .filter(replyFunc -> replyFunc.trigger().matches(sender))
+                        .toList();
+                dispatchTable.put(sender, replyFunctions);
+            }
+        }
+        return replyFunctions;
+    }
+
+    /**
+     * Update the system message in the current session.
      *
      * @param systemMessage system message for the ChatCompletion inference.
      */
     public void updateSystemMessage(String systemMessage) {
-        oaiSystemMessage.get(0).setContent(systemMessage);
+        session().updateSystemMessage(this, systemMessage);
     }
 
     /**
@@ -151,23 +414,33 @@ public class ConversableAgent extends Agent {
      * @return The last message exchanged with the agent.
      */
     protected ChatMessage lastMessage(Agent agent) {
-        if (!oaiMessages.containsKey(agent)) {
+        MessageHistory messages = oaiMessages().get(agent);
+        if (messages == null) {
             throw new Autogen4jException(
                     "The agent %s is not present in any conversation. No history available for this agent.",
                     agent.getName());
         }
-        return oaiMessages.get(agent).get(oaiMessages.get(agent).size() - 1);
+        return messages.last();
     }
 
     /**
      * Append a message to the ChatCompletion conversation.
+     * A shared message is referenced under the right role, any other message is copied, so that the caller keeping
+     * its instance cannot modify the history.
      */
     private void appendOaiMessage(Agent agent, ChatMessage message, ChatMessageRole role) {
-        ChatMessage oaiMessage = new ChatMessage(message);
-        if (!FUNCTION.equals(message.getRole())) {
-            oaiMessage.setRole(role);
+        ChatMessage oaiMessage;
+        if (SharedMessages.isShared(message)) {
+            oaiMessage = FUNCTION.equals(message.getRole()) ? message : SharedMessages.withRole(message, role);
+        } else {
+            oaiMessage = new ChatMessage(message);
+            if (!FUNCTION.equals(message.getRole())) {
+                oaiMessage.setRole(role);
+            }
         }
-        oaiMessages.computeIfAbsent(agent, key -> new ArrayList<>()).add(oaiMessage);
+        ChatMessage appended = oaiMessage;
+        oaiMessages().compute(agent, (key, history) -> (history != null ? history : MessageHistory.empty())
+                .append(appended));
     }
 
     @Override
@@ -178,6 +451,14 @@ public class ConversableAgent extends Agent {
         recipient.receive(this, message, requestReply, silent);
     }
 
+    @Override
+    public CompletableFuture<Void> sendAsync(Agent recipient, ChatMessage message, boolean requestReply,
+            boolean silent) {
+        appendOaiMessage(recipient, message, ASSISTANT);
+
+        return recipient.receiveAsync(this, message, requestReply, silent);
+    }
+
     private void printReceivedMessage(Agent sender, ChatMessage message) {
         LOG.info("{} (to {}):\n", sender.getName(), this.getName());
 
@@ -193,14 +474,16 @@ public class ConversableAgent extends Agent {
                 LOG.info(message.getContent());
             }
             if (CollectionUtils.isNotEmpty(message.getToolCalls())) {
-                // only support the first function now.
-                FunctionCall functionCall = message.getToolCalls().get(0).getFunction();
-                String funcPrint = String.format("***** Suggested function Call: %s *****", functionCall.getName());
-                LOG.info(funcPrint);
-                LOG.info("Arguments: \n{}", functionCall.getArguments());
-
-                String repeatedStars = "*".repeat(funcPrint.length());
-                LOG.info(repeatedStars);
+                for (ToolCall toolCall : message.getToolCalls()) {
+                    FunctionCall functionCall = toolCall.getFunction();
+                    String funcPrint = String.format("***** Suggested function Call: %s *****",
+                            functionCall.getName());
+                    LOG.info(funcPrint);
+                    LOG.info("Arguments: \n{}", functionCall.getArguments());
+
+                    String repeatedStars = "*".repeat(funcPrint.length());
+                    LOG.info(repeatedStars);
+                }
             }
         }
         String repeatedHyphens = "\n" + "-".repeat(80);
@@ -221,13 +504,34 @@ public class ConversableAgent extends Agent {
         processReceivedMessage(sender, message, silent);
 
         if (requestReply) {
-            var reply = generateReply(sender, oaiMessages.get(sender));
-            if (reply != null) {
-                send(sender, reply, true, silent);
-            }
+            // the reply turn is scheduled on the conversation driver rather than sent recursively,
+            // so that a long conversation does not grow the stack. The reply functions run suspended from the driver,
+            // so that the messages they send are answered before they return.
+            ConversationDriver.schedule(() -> {
+                var reply = ConversationDriver.suspend(() -> generateReply(sender, oaiMessages().get(sender)));
+                if (reply != null) {
+                    send(sender, reply, true, silent);
+                }
+            });
         }
     }
 
+    @Override
+    public CompletableFuture<Void> receiveAsync(Agent sender, ChatMessage message, boolean requestReply,
+            boolean silent) {
+        processReceivedMessage(sender, message, silent);
+
+        if (!requestReply) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ConversationSession session = session();
+        // hop to the executor between turns, so that replies which complete immediately don't grow the stack.
+        return generateReplyAsync(sender, oaiMessages().get(sender))
+                .thenComposeAsync(session.bind(reply -> reply == null
+                        ? CompletableFuture.completedFuture(null)
+                        : sendAsync(sender, reply, true, silent)), executor);
+    }
+
     private void prepareChat(ConversableAgent recipient, boolean clearHistory) {
         this.resetConsecutiveAutoReplyCounter(recipient);
         recipient.resetConsecutiveAutoReplyCounter(this);
@@ -235,6 +539,10 @@ public class ConversableAgent extends Agent {
         if (clearHistory) {
             this.clearHistory(recipient);
             recipient.clearHistory(this);
+            // a new conversation starts, the function results cached for the previous one are dropped. Without a
+            // bound session, each agent holds them in its own default session.
+            this.session().clearFunctionResults();
+            recipient.session().clearFunctionResults();
         }
     }
 
@@ -259,13 +567,70 @@ public class ConversableAgent extends Agent {
      */
     public void initiateChat(ConversableAgent recipient, String message, boolean clearHistory, boolean silent) {
         prepareChat(recipient, clearHistory);
-        send(recipient, new ChatMessage(message), true, silent);
+        ConversationDriver.run(() -> send(recipient, new ChatMessage(message), true, silent));
+    }
+
+    /**
+     * Initiate a chat with the recipient agent in the given session.
+     * Chats in different sessions don't share any state, so they can run concurrently against the same agents.
+     *
+     * @param recipient the recipient agent.
+     * @param message   the message to send.
+     * @param session   the session holding the state of this chat.
+     */
+    public void initiateChat(ConversableAgent recipient, String message, ConversationSession session) {
+        session.run(() -> initiateChat(recipient, message));
+    }
+
+    /**
+     * Initiate a chat with the recipient agent without blocking the calling thread.
+     * This method will clear the chat history with the agent, but it won't print the messages for this conversation.
+     *
+     * @param recipient the recipient agent.
+     * @param message   the message to send.
+     * @return a future that completes when the conversation ends.
+     */
+    public CompletableFuture<Void> initiateChatAsync(ConversableAgent recipient, String message) {
+        return initiateChatAsync(recipient, message, true, false);
+    }
+
+    /**
+     * Initiate a chat with the recipient agent without blocking the calling thread.
+     * <p>
+     * Every turn is a chain of futures: non-blocking reply functions run inline, and blocking ones run on the
+     * {@link #executor}, so the calling thread is never held for the duration of the chat. A blocking reply function
+     * holds a thread of the executor while it runs, the bounded default executor queues the others.
+     *
+     * @param recipient    the recipient agent.
+     * @param message      the message to send.
+     * @param clearHistory whether to clear the chat history with the agent.
+     * @param silent       whether to print the messages for this conversation.
+     * @return a future that completes when the conversation ends.
+     */
+    public CompletableFuture<Void> initiateChatAsync(ConversableAgent recipient, String message,
+            boolean clearHistory, boolean silent) {
+        prepareChat(recipient, clearHistory);
+        return sendAsync(recipient, new ChatMessage(message), true, silent);
+    }
+
+    /**
+     * Initiate a chat with the recipient agent in the given session, without blocking the calling thread.
+     *
+     * @param recipient the recipient agent.
+     * @param message   the message to send.
+     * @param session   the session holding the state of this chat.
+     * @return a future that completes when the conversation ends.
+     */
+    public CompletableFuture<Void> initiateChatAsync(ConversableAgent recipient, String message,
+            ConversationSession session) {
+        return session.call(() -> initiateChatAsync(recipient, message));
     }
 
     private void resetConsecutiveAutoReplyCounter(Agent sender) {
+        Map<Agent, Integer> counter = consecutiveAutoReplyCounter();
         Optional.ofNullable(sender).ifPresentOrElse(
-                value -> consecutiveAutoReplyCounter.put(value, 0),
-                consecutiveAutoReplyCounter::clear);
+                value -> counter.put(value, 0),
+                counter::clear);
     }
 
     /**
@@ -274,8 +639,9 @@ public class ConversableAgent extends Agent {
      * @param agent the agent with whom the chat history to clear. If null, clear the chat history with all agents.
      */
     private void clearHistory(Agent agent) {
+        Map<Agent, MessageHistory> oaiMessages = oaiMessages();
         if (agent != null && oaiMessages.containsKey(agent)) {
-            oaiMessages.get(agent).clear();
+            oaiMessages.put(agent, MessageHistory.empty());
         } else {
             oaiMessages.clear();
         }
@@ -289,9 +655,135 @@ public class ConversableAgent extends Agent {
      * @return a reply using llm.
      */
     public ReplyResult generateOaiReply(Agent sender, List<ChatMessage> messages) {
-        chatCompletion.setMessages(ListUtils.union(oaiSystemMessage, messages));
-        ChatCompletionResp response = client.createChatCompletion(chatCompletion);
-        return new ReplyResult(true, response.getChoices().get(0).getMessage());
+        return generateOaiReply(sender, messages, List.of());
+    }
+
+    /**
+     * Generate a reply using llm, with instructions following the conversation history.
+     * <p>
+     * The context policy applies to the history alone, so that its caches keyed on the history still hit when the
+     * instructions change on every call.
+     *
+     * @param sender       The agent object representing the sender of the message.
+     * @param messages     A list of message, representing the conversation history.
+     * @param instructions the messages appended after the history, such as the prompt selecting the next speaker.
+     * @return a reply using llm.
+     */
+    public ReplyResult generateOaiReply(Agent sender, List<ChatMessage> messages, List<ChatMessage> instructions) {
+        List<ChatMessage> context = contextPolicy.apply(messages);
+        if (!instructions.isEmpty()) {
+            context = MessageHistory.concat(context, instructions);
+        }
+        ChatCompletion request = copyOf(chatCompletion, MessageHistory.concat(oaiSystemMessage(), context));
+        if (replyCache == null) {
+            return new ReplyResult(true, createOaiReply(sender, request).message());
+        }
+
+        String cacheKey = ReplyCache.keyOf(request);
+        ChatMessage reply = replyCache.get(cacheKey);
+        Metrics.global().count(REPLY_CACHE, 1, "agent", name, "result", reply != null ? "hit" : "miss");
+        if (reply != null) {
+            if (streamListener != null && StringUtils.isNotEmpty(reply.getContent())) {
+                streamListener.onDelta(this, reply.getContent());
+            }
+            return new ReplyResult(true, reply);
+        }
+        OaiReply created = createOaiReply(sender, request);
+        // a stream stopped early on a termination match is not the whole reply to the request
+        if (!created.truncated()) {
+            replyCache.put(cacheKey, created.message());
+        }
+        return new ReplyResult(true, created.message());
+    }
+
+    /**
+     * A reply from llm.
+     *
+     * @param message   the reply.
+     * @param truncated whether the generation was cancelled before it completed.
+     */
+    private record OaiReply(ChatMessage message, boolean truncated) {
+    }
+
+    private OaiReply createOaiReply(Agent sender, ChatCompletion request) {
+        Metrics metrics = Metrics.global();
+        ModelCallEvent event = new ModelCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        ChatMessage reply = null;
+        Usage usage = null;
+        try {
+            if (streamListener != null) {
+                OaiReply streamed = streamOaiReply(sender, request);
+                reply = streamed.message();
+                return streamed;
+            }
+            ChatCompletionResp response = chatModel.complete(request);
+            usage = response.getUsage();
+            if (usage != null) {
+                metrics.count(LLM_TOKENS, nullToZero(usage.getPromptTokens()),
+                        "agent", name, "model", request.getModel(), "type", "prompt");
+                metrics.count(LLM_TOKENS, nullToZero(usage.getCompletionTokens()),
+                        "agent", name, "model", request.getModel(), "type", "completion");
+            }
+            reply = response.getChoices().get(0).getMessage();
+            return new OaiReply(reply, false);
+        } finally {
+            metrics.recordTime(LLM_LATENCY, System.nanoTime() - start,
+                    "agent", name, "model", request.getModel(), "outcome", reply != null ? "success" : "failure");
+            if (event.shouldCommit()) {
+                event.agent = name;
+                event.model = request.getModel();
+                event.stream = streamListener != null;
+                event.messages = request.getMessages().size();
+                event.promptTokens = usage != null ? nullToMinusOne(usage.getPromptTokens()) : -1;
+                event.completionTokens = usage != null ? nullToMinusOne(usage.getCompletionTokens()) : -1;
+                event.replyLength = lengthOf(reply);
+                event.success = reply != null;
+                event.commit();
+            }
+        }
+    }
+
+    private static long nullToZero(Long value) {
+        return value != null ? value : 0;
+    }
+
+    private static long nullToMinusOne(Long value) {
+        return value != null ? value : -1;
+    }
+
+    private static int lengthOf(ChatMessage message) {
+        if (message == null) {
+            return -1;
+        }
+        return message.getContent() != null ? message.getContent().length() : 0;
+    }
+
+    /**
+     * Stream a reply from llm, delivering the content to the stream listener as it arrives.
+     * <p>
+     * The partial reply is checked against the termination condition of the agent that will receive it after every
+     * chunk, and once it matches, the rest of the generation is cancelled.
+     *
+     * @param recipient the agent that will receive the reply.
+     * @param request   the chat completion request.
+     * @return the reply assembled from the streamed chunks, truncated if the generation was cancelled.
+     */
+    private OaiReply streamOaiReply(Agent recipient, ChatCompletion request) {
+        Predicate<ChatMessage> terminationCheck = recipient instanceof ConversableAgent agent
+                ? agent.isTerminationMsg
+                : isTerminationMsg;
+        ChatMessageAccumulator accumulator = new ChatMessageAccumulator();
+        AtomicBoolean truncated = new AtomicBoolean();
+
+        chatModel.stream(request)
+                .map(accumulator::append)
+                .doOnCancel(() -> truncated.set(true))
+                .takeUntil(delta -> !delta.isEmpty() && terminationCheck.test(accumulator.message()))
+                .filter(delta -> !delta.isEmpty())
+                .blockingForEach(delta -> streamListener.onDelta(this, delta));
+        return new OaiReply(accumulator.message(), truncated.get());
     }
 
     /**
@@ -303,7 +795,7 @@ public class ConversableAgent extends Agent {
      */
     private ReplyResult generateCodeExecutionReply(Agent sender, List<ChatMessage> messages) {
         if (codeExecutionConfig == null) {
-            return new ReplyResult(false, null);
+            return ReplyResult.NOT_APPLICABLE;
         }
 
         int lastMessagesNumber = codeExecutionConfig.getLastMessagesNumber();
@@ -338,7 +830,7 @@ public class ConversableAgent extends Agent {
                     result.logs());
             return new ReplyResult(true, new ChatMessage(reply));
         }
-        return new ReplyResult(false, null);
+        return ReplyResult.NOT_APPLICABLE;
     }
 
     /**
@@ -351,11 +843,38 @@ public class ConversableAgent extends Agent {
     private ReplyResult generateFunctionCallReply(Agent sender, List<ChatMessage> messages) {
         ChatMessage message = messages.get(messages.size() - 1);
         if (CollectionUtils.isNotEmpty(message.getToolCalls())) {
-            // only supports executing the first function now.
-            ChatMessage functionResult = executeFunction(message.getToolCalls().get(0).getFunction());
-            return new ReplyResult(true, functionResult);
+            // the calls of a message are independent, they all run at the same time, within the current session
+            // which holds the function results cached per conversation
+            List<ToolCall> toolCalls = message.getToolCalls();
+            List<ChatMessage> functionResults = functionCallExecutor.executeAll(
+                    toolCalls.stream().map(ToolCall::getFunction).toList(), session().bind(this::executeFunction));
+            return new ReplyResult(true, combineFunctionResults(toolCalls, functionResults));
+        }
+        return ReplyResult.NOT_APPLICABLE;
+    }
+
+    /**
+     * Combine the results of the tool calls of a message into a single function message, with a section per call
+     * naming the function and the id of the tool call.
+     *
+     * @param toolCalls       the tool calls of the message.
+     * @param functionResults the results of the calls, in the same order.
+     * @return the function message replying to all the tool calls.
+     */
+    private static ChatMessage combineFunctionResults(List<ToolCall> toolCalls, List<ChatMessage> functionResults) {
+        if (functionResults.size() == 1) {
+            return functionResults.get(0);
+        }
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < toolCalls.size(); i++) {
+            if (i > 0) {
+                content.append("\n\n");
+            }
+            content.append("Response from calling function %s (tool call %s):\n"
+                    .formatted(functionResults.get(i).getName(), toolCalls.get(i).getId()))
+                    .append(functionResults.get(i).getContent());
         }
-        return new ReplyResult(false, null);
+        return new ChatMessage(FUNCTION, content.toString(), PARALLEL_FUNCTION_NAME);
     }
 
     /**
@@ -373,6 +892,7 @@ public class ConversableAgent extends Agent {
      */
     private ReplyResult checkTerminationAndHumanReply(Agent sender, List<ChatMessage> messages) {
         ChatMessage message = messages.get(messages.size() - 1);
+        Map<Agent, Integer> consecutiveAutoReplyCounter = consecutiveAutoReplyCounter();
         String reply = "";
         String noHumanInputMsg = "";
         if (humanInputMode.equals(ALWAYS)) {
@@ -438,17 +958,31 @@ public class ConversableAgent extends Agent {
         if (!humanInputMode.equals(NEVER)) {
             LOG.info("\n>>>>>>>> USING AUTO REPLY...");
         }
-        return new ReplyResult(false, null);
+        return ReplyResult.NOT_APPLICABLE;
     }
 
     @Override
     public ChatMessage generateReply(Agent sender, List<ChatMessage> messages) {
         if (CollectionUtils.isEmpty(messages)) {
-            messages = oaiMessages.get(sender);
+            messages = oaiMessages().get(sender);
         }
-        // loop through each method
-        for (var replyFunc : replyFuncList) {
-            ReplyResult replyResult = replyFunc.apply(sender, messages);
+        TurnEvent turnEvent = new TurnEvent();
+        turnEvent.begin();
+        ChatMessage reply = generateReply(replyFunctions(sender), sender, messages);
+        commitTurnEvent(turnEvent, sender, messages, reply);
+        return reply;
+    }
+
+    private ChatMessage generateReply(List<ReplyFunction> replyFunctions, Agent sender, List<ChatMessage> messages) {
+        // loop through each method applying to the sender
+        for (var replyFunc : replyFunctions) {
+            ReplyFunctionEvent event = new ReplyFunctionEvent();
+            event.begin();
+            long start = System.nanoTime();
+            ReplyResult replyResult = replyFunc.sync().apply(sender, messages);
+            Metrics.global().recordTime(REPLY_FUNCTION_LATENCY, System.nanoTime() - start,
+                    "agent", name, "function", replyFunc.name());
+            commitReplyFunctionEvent(event, sender, replyFunc, messages, replyResult);
             // if termination is required, immediately return the reply
             if (replyResult.terminate()) {
                 return replyResult.reply();
@@ -458,6 +992,61 @@ public class ConversableAgent extends Agent {
         return new ChatMessage(defaultAutoReply);
     }
 
+    private void commitTurnEvent(TurnEvent event, Agent sender, List<ChatMessage> messages, ChatMessage reply) {
+        if (event.shouldCommit()) {
+            event.agent = name;
+            event.sender = sender.getName();
+            event.messages = messages.size();
+            event.replyLength = lengthOf(reply);
+            event.commit();
+        }
+    }
+
+    private void commitReplyFunctionEvent(ReplyFunctionEvent event, Agent sender, ReplyFunction replyFunc,
+            List<ChatMessage> messages, ReplyResult replyResult) {
+        if (event.shouldCommit()) {
+            event.agent = name;
+            event.sender = sender.getName();
+            event.function = replyFunc.name();
+            event.messages = messages.size();
+            event.terminate = replyResult != null && replyResult.terminate();
+            event.commit();
+        }
+    }
+
+    @Override
+    public CompletableFuture<ChatMessage> generateReplyAsync(Agent sender, List<ChatMessage> messages) {
+        if (CollectionUtils.isEmpty(messages)) {
+            messages = oaiMessages().get(sender);
+        }
+        List<ChatMessage> history = messages;
+        TurnEvent turnEvent = new TurnEvent();
+        turnEvent.begin();
+        return generateReplyAsync(replyFunctions(sender), 0, sender, messages, session())
+                .whenComplete((reply, throwable) -> commitTurnEvent(turnEvent, sender, history, reply));
+    }
+
+    private CompletableFuture<ChatMessage> generateReplyAsync(List<ReplyFunction> replyFunctions, int index,
+            Agent sender, List<ChatMessage> messages, ConversationSession session) {
+        if (index == replyFunctions.size()) {
+            // if no termination occurred, return default auto reply
+            return CompletableFuture.completedFuture(new ChatMessage(defaultAutoReply));
+        }
+        ReplyFunction replyFunc = replyFunctions.get(index);
+        ReplyFunctionEvent event = new ReplyFunctionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        return session.call(() -> replyFunc.async().apply(sender, messages))
+                .whenComplete((replyResult, throwable) -> {
+                    Metrics.global().recordTime(REPLY_FUNCTION_LATENCY, System.nanoTime() - start,
+                            "agent", name, "function", replyFunc.name());
+                    commitReplyFunctionEvent(event, sender, replyFunc, messages, replyResult);
+                })
+                .thenCompose(replyResult -> replyResult.terminate()
+                        ? CompletableFuture.completedFuture(replyResult.reply())
+                        : generateReplyAsync(replyFunctions, index + 1, sender, messages, session));
+    }
+
     /**
      * Get human input.
      * Override this method to customize the way to get human input.
@@ -466,9 +1055,20 @@ public class ConversableAgent extends Agent {
      * @return human input.
      */
     protected String getHumanInput(String prompt) {
-        LOG.info(prompt);
-        Scanner scanner = new Scanner(System.in);
-        return scanner.nextLine();
+        // a ReentrantLock instead of synchronized, so that a virtual thread waiting for the console is not pinned
+        CONSOLE_LOCK.lock();
+        try {
+            LOG.info(prompt);
+            String line = CONSOLE.readLine();
+            if (line == null) {
+                throw new Autogen4jException("No human input available, the console has been closed.");
+            }
+            return line;
+        } catch (IOException e) {
+            throw new Autogen4jException("Error reading human input.", e);
+        } finally {
+            CONSOLE_LOCK.unlock();
+        }
     }
 
     /**
@@ -486,7 +1086,7 @@ public class ConversableAgent extends Agent {
             String code = codeBlock.code();
             LOG.info("\n>>>>>>>> EXECUTING CODE BLOCK {} (inferred language is {})...", i + 1, language);
 
-            if (Set.of("bash", "shell", "sh", "python").contains(language.toLowerCase())) {
+            if (EXECUTABLE_LANGUAGES.contains(language.toLowerCase())) {
                 result = executeCode(language, code, codeExecutionConfig);
             } else {
                 // the language is not supported, then return an error message.
@@ -508,8 +1108,32 @@ public class ConversableAgent extends Agent {
      * @return The result of the function call
      */
     private ChatMessage executeFunction(FunctionCall functionCall) {
-        // TODO
-        return null;
+        String functionName = functionCall.getName();
+        String content;
+        if (functionMap == null || !functionMap.contains(functionName)) {
+            content = "Error: Function %s not found.".formatted(functionName);
+        } else {
+            try {
+                content = functionMap.execute(functionName, functionCall.getArguments());
+            } catch (RuntimeException e) {
+                LOG.warn("Error executing function {}.", functionName, e);
+                content = "Error: " + e.getMessage();
+            }
+        }
+        return new ChatMessage(FUNCTION, content, functionName);
+    }
+
+    /**
+     * Add the tool specs of the functions to the request template. The specs are built once by the registry, and
+     * shared by all the requests copied from the template.
+     */
+    private static ChatCompletion withTools(ChatCompletion template, FunctionRegistry functions) {
+        if (functions == null) {
+            return template;
+        }
+        ChatCompletion withTools = copyOf(template, template.getMessages());
+        withTools.setTools(functions.tools());
+        return withTools;
     }
 
     @Override
@@ -552,9 +1176,19 @@ public class ConversableAgent extends Agent {
         protected HumanInputMode humanInputMode = TERMINATE;
 
         /**
-         * mapping function names (passed to llm) to functions.
+         * mapping function names (passed to llm) to functions, which this agent executes.
+         */
+        protected FunctionRegistry functionMap;
+
+        /**
+         * the functions the llm of this agent can call, passed as the tools of every request.
+         */
+        protected FunctionRegistry functions;
+
+        /**
+         * executes the tool calls of a message concurrently, with a timeout per call.
          */
-        protected Map<String, Function<?, ?>> functionMap;
+        protected FunctionCallExecutor functionCallExecutor = FunctionCallExecutor.shared();
 
         /**
          * config for the code execution.
@@ -562,10 +1196,50 @@ public class ConversableAgent extends Agent {
         protected CodeExecutionConfig codeExecutionConfig;
 
         /**
-         * a client for interacting with the OpenAI API.
+         * a client for interacting with the OpenAI API, overriding the client shared for the endpoint.
          */
         protected OpenAiClient client;
 
+        /**
+         * the OpenAI endpoint, whose client is shared with the other agents and created on the first call.
+         */
+        protected EndpointConfig endpoint = EndpointConfig.builder().build();
+
+        /**
+         * equivalent deployments to balance the calls across, overriding the endpoint.
+         */
+        protected List<EndpointConfig> endpoints;
+
+        /**
+         * the model generating the llm replies, the OpenAI API through the client by default.
+         */
+        protected ChatModel chatModel;
+
+        /**
+         * admission controller shared by the agents calling the same endpoint, enforcing its rate limits.
+         */
+        protected AdmissionController admissionController;
+
+        /**
+         * policy retrying the failed llm calls, none by default.
+         */
+        protected RetryPolicy retryPolicy;
+
+        /**
+         * circuit breaker of the endpoint, the one shared for the endpoint by default when retrying.
+         */
+        protected CircuitBreaker circuitBreaker;
+
+        /**
+         * cheaper models tried first, from the cheapest, before the model of the chat completion.
+         */
+        protected List<String> cascadeModels;
+
+        /**
+         * check accepting the replies of the cheaper models.
+         */
+        protected AcceptanceCheck acceptanceCheck;
+
         /**
          * Chat conversation.
          */
@@ -576,12 +1250,28 @@ public class ConversableAgent extends Agent {
          */
         protected String defaultAutoReply = "";
 
-        protected Builder() {
-            this.client = OpenAiClient.builder()
-                    .requestTimeout(60)
-                    .build()
-                    .init();
+        /**
+         * executor for the blocking reply functions when the conversation is driven asynchronously, by default the
+         * shared executor running at most {@link ConcurrentUtil#DEFAULT_EXECUTOR_THREADS} of them at the same time.
+         */
+        protected Executor executor = defaultExecutor();
+
+        /**
+         * listener receiving the llm reply as it is generated, setting it enables streaming.
+         */
+        protected StreamListener streamListener;
+
+        /**
+         * cache of llm replies, keyed by the content of the request.
+         */
+        protected ReplyCache replyCache;
 
+        /**
+         * policy selecting the part of the history sent to the llm, the whole history by default.
+         */
+        protected ContextPolicy contextPolicy = ContextPolicy.unbounded();
+
+        protected Builder() {
             this.chatCompletion = ChatCompletion.builder()
                     .model("gpt-4")
                     .temperature(0)
@@ -613,11 +1303,21 @@ public class ConversableAgent extends Agent {
             return (T) this;
         }
 
-        public T functionMap(Map<String, Function<?, ?>> functionMap) {
+        public T functionMap(FunctionRegistry functionMap) {
             this.functionMap = functionMap;
             return (T) this;
         }
 
+        public T functions(FunctionRegistry functions) {
+            this.functions = functions;
+            return (T) this;
+        }
+
+        public T functionCallExecutor(FunctionCallExecutor functionCallExecutor) {
+            this.functionCallExecutor = functionCallExecutor;
+            return (T) this;
+        }
+
         public T codeExecutionConfig(CodeExecutionConfig codeExecutionConfig) {
             this.codeExecutionConfig = codeExecutionConfig;
             return (T) this;
@@ -628,6 +1328,50 @@ public class ConversableAgent extends Agent {
             return (T) this;
         }
 
+        public T endpoint(EndpointConfig endpoint) {
+            this.endpoint = endpoint;
+            return (T) this;
+        }
+
+        public T endpoints(List<EndpointConfig> endpoints) {
+            this.endpoints = endpoints;
+            return (T) this;
+        }
+
+        public T chatModel(ChatModel chatModel) {
+            this.chatModel = chatModel;
+            return (T) this;
+        }
+
+        public T admissionController(AdmissionController admissionController) {
+            this.admissionController = admissionController;
+            return (T) this;
+        }
+
+        public T retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return (T) this;
+        }
+
+        public T circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return (T) this;
+        }
+
+        /**
+         * Try cheaper models first, and escalate to the model of the chat completion only when the reply fails the
+         * acceptance check.
+         *
+         * @param acceptanceCheck the check accepting the replies of the cheaper models, null for non-empty replies.
+         * @param cascadeModels   the names of the cheaper models, from the cheapest.
+         * @return the builder.
+         */
+        public T cascade(AcceptanceCheck acceptanceCheck, String... cascadeModels) {
+            this.acceptanceCheck = acceptanceCheck;
+            this.cascadeModels = List.of(cascadeModels);
+            return (T) this;
+        }
+
         public T chatCompletion(ChatCompletion chatCompletion) {
             this.chatCompletion = chatCompletion;
             return (T) this;
@@ -638,6 +1382,26 @@ public class ConversableAgent extends Agent {
             return (T) this;
         }
 
+        public T executor(Executor executor) {
+            this.executor = executor;
+            return (T) this;
+        }
+
+        public T streamListener(StreamListener streamListener) {
+            this.streamListener = streamListener;
+            return (T) this;
+        }
+
+        public T replyCache(ReplyCache replyCache) {
+            this.replyCache = replyCache;
+            return (T) this;
+        }
+
+        public T contextPolicy(ContextPolicy contextPolicy) {
+            this.contextPolicy = contextPolicy;
+            return (T) this;
+        }
+
         protected abstract ConversableAgent build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent;
+
+import java.util.function.Predicate;
+
+/**
+ * Decides whether a reply function applies to the messages from a sender.
+ * <p>
+ * A trigger is evaluated once per sender, when the agent builds its dispatch table for the sender, so it must depend
+ * only on the sender and on the configuration of the agent, not on the messages.
+ *
+ * @author HamaWhite
+ */
+@FunctionalInterface
+public interface ReplyTrigger {
+
+    /**
+     * Whether the reply function applies to the messages from the sender.
+     *
+     * @param sender the sender of the messages.
+     * @return true if the reply function applies.
+     */
+    boolean matches(Agent sender);
+
+    /**
+     * A trigger matching every sender.
+     *
+     * @return the trigger.
+     */
+    static ReplyTrigger any() {
+        return sender -> true;
+    }
+
+    /**
+     * A trigger matching the senders of a class, including its subclasses.
+     *
+     * @param senderClass the class of the senders.
+     * @return the trigger.
+     */
+    static ReplyTrigger of(Class<? extends Agent> senderClass) {
+        return senderClass::isInstance;
+    }
+
+    /**
+     * A trigger matching one sender.
+     *
+     * @param sender the sender.
+     * @return the trigger.
+     */
+    static ReplyTrigger of(Agent sender) {
+        return agent -> agent == sender;
+    }
+
+    /**
+     * A trigger matching the senders accepted by a predicate.
+     *
+     * @param predicate the predicate on the sender.
+     * @return the trigger.
+     */
+    static ReplyTrigger of(Predicate<Agent> predicate) {
+        return predicate::test;
+    }
+}
@@ -0,0 +1,37 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent;
+
+/**
+ * Listener receiving the reply of the llm piece by piece, as it is generated.
+ *
+ * @author HamaWhite
+ */
+@FunctionalInterface
+public interface StreamListener {
+
+    /**
+     * Called on the thread generating the reply, for every piece of content as soon as it arrives.
+     *
+     * @param agent the agent generating the reply.
+     * @param delta the content generated since the previous call.
+     */
+    void onDelta(Agent agent, String delta);
+}
@@ -19,8 +19,10 @@
 
 package com.hw.autogen4j.agent.group;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.hw.autogen4j.agent.Agent;
 import com.hw.autogen4j.agent.ConversableAgent;
+import com.hw.autogen4j.conversation.MessageHistory;
 import com.hw.autogen4j.entity.ReplyResult;
 import com.hw.autogen4j.exception.Autogen4jException;
 import com.hw.openai.entity.chat.ChatMessage;
@@ -65,7 +67,7 @@ public class GroupChat {
      * a list of messages in the group chat.
      */
     @Builder.Default
-    private List<ChatMessage> messages = new ArrayList<>();
+    private MessageHistory messages = MessageHistory.empty();
 
     /**
      * the maximum number of rounds.
@@ -89,10 +91,17 @@ public class GroupChat {
     }
 
     public GroupChat append(ChatMessage message) {
-        messages.add(message);
+        messages = messages.append(message);
         return this;
     }
 
+    /**
+     * Clear the messages of the group chat.
+     */
+    public void reset() {
+        messages = MessageHistory.empty();
+    }
+
     /**
      * Returns the agent with a given name.
      *
@@ -149,12 +158,13 @@ public class GroupChat {
         }
         selector.updateSystemMessage(selectSpeakerMsg(updatedAgents));
 
-        List<ChatMessage> updatedMessages = new ArrayList<>(messages);
-        updatedMessages.add(new ChatMessage(SYSTEM,
+        // the prompt follows the history without being appended to it, which would fork the history on the next
+        // message, and without changing the history the context policy caches its work for.
+        List<ChatMessage> prompt = List.of(new ChatMessage(SYSTEM,
                 "Read the above conversation. Then select the next role from %s to play. Only return the role."
                         .formatted(extractAgentNames(updatedAgents))));
 
-        ReplyResult replyResult = selector.generateOaiReply(selector, updatedMessages);
+        ReplyResult replyResult = selector.generateOaiReply(selector, messages, prompt);
         String content = replyResult.reply().getContent();
 
         // if exactly one agent is mentioned, use it. Otherwise, leave the OAI response unmodified
@@ -194,7 +204,8 @@ public class GroupChat {
      * @param agents  A list of Agent objects
      * @return a map counter for mentioned agents.
      */
-    private Map<String, Integer> mentionedAgents(String content, List<Agent> agents) {
+    @VisibleForTesting
+    Map<String, Integer> mentionedAgents(String content, List<Agent> agents) {
         Map<String, Integer> mentions = new HashMap<>();
         for (Agent agent : agents) {
             // finds agent mentions, taking word boundaries into account
@@ -21,14 +21,23 @@ package com.hw.autogen4j.agent.group;
 
 import com.hw.autogen4j.agent.Agent;
 import com.hw.autogen4j.agent.ConversableAgent;
+import com.hw.autogen4j.agent.ReplyTrigger;
+import com.hw.autogen4j.conversation.SharedMessages;
 import com.hw.autogen4j.entity.ReplyResult;
 import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.autogen4j.jfr.SpeakerSelectionEvent;
+import com.hw.autogen4j.metrics.Metrics;
 import com.hw.openai.entity.chat.ChatMessage;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.List;
 
 import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static com.hw.autogen4j.metrics.Metrics.SELECT_SPEAKER_LATENCY;
 import static com.hw.openai.entity.chat.ChatMessageRole.FUNCTION;
+import static com.hw.openai.entity.chat.ChatMessageRole.USER;
 
 /**
  * A chat manager agent that can manage a group chat of multiple agents.
@@ -37,13 +46,15 @@ import static com.hw.openai.entity.chat.ChatMessageRole.FUNCTION;
  */
 public class GroupChatManager extends ConversableAgent {
 
+    private static final Logger LOG = LoggerFactory.getLogger(GroupChatManager.class);
+
     private final GroupChat groupChat;
 
     protected GroupChatManager(Builder builder) {
         super(builder);
         this.groupChat = builder.groupChat;
 
-        this.registerReply(this::runChat);
+        this.registerReply("runChat", ReplyTrigger.any(), this::runChat, 0);
     }
 
     /**
@@ -58,14 +69,11 @@ public class GroupChatManager extends ConversableAgent {
      * @return a reply result.
      */
     private ReplyResult runChat(Agent sender, List<ChatMessage> messages) {
-        ChatMessage message = messages.get(messages.size() - 1);
         Agent speaker = sender;
+        ChatMessage message = share(messages.get(messages.size() - 1), speaker);
         for (int i = 0; i < groupChat.getMaxRound(); i++) {
-            // set the name to speaker's name if the role is not function
-            if (!FUNCTION.equals(message.getRole())) {
-                message.setName(speaker.getName());
-            }
-            groupChat.append(message);
+            // the transcript holds the messages as the manager received them
+            groupChat.append(FUNCTION.equals(message.getRole()) ? message : SharedMessages.withRole(message, USER));
             // the conversation is over
             if (isTerminationMsg.test(message)) {
                 break;
@@ -79,11 +87,12 @@ public class GroupChatManager extends ConversableAgent {
             ChatMessage reply;
             try {
                 // select the next speaker.
-                speaker = groupChat.selectSpeaker(speaker, this);
+                speaker = selectSpeaker(speaker, i);
                 // Let the speaker speak.
                 reply = speaker.generateReply(this, List.of());
             } catch (Exception e) {
                 // let the admin agent speak if interrupted.
+                LOG.warn("GroupChat turn failed, the admin agent {} speaks instead.", groupChat.getAdminName(), e);
                 if (groupChat.agentNames().contains(groupChat.getAdminName())) {
                     // admin agent is one of the participants.
                     speaker = groupChat.agentByName(groupChat.getAdminName());
@@ -92,13 +101,53 @@ public class GroupChatManager extends ConversableAgent {
                     throw new Autogen4jException("Admin agent is not found in the participants.", e);
                 }
             }
+            // the speaker ends the conversation, e.g. after reaching its maximum number of auto replies.
+            if (reply == null) {
+                break;
+            }
             // the speaker sends the message without requesting a reply.
-            speaker.send(this, reply, false, false);
-            message = lastMessage(speaker);
+            message = share(reply, speaker);
+            speaker.send(this, message, false, false);
         }
         return new ReplyResult(true, null);
     }
 
+    private Agent selectSpeaker(Agent lastSpeaker, int round) {
+        SpeakerSelectionEvent event = new SpeakerSelectionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Agent speaker = null;
+        try {
+            speaker = groupChat.selectSpeaker(lastSpeaker, this);
+            return speaker;
+        } finally {
+            // the round is only on the event, as a metric tag it would create a meter per round
+            Metrics.global().recordTime(SELECT_SPEAKER_LATENCY, System.nanoTime() - start, "manager", getName());
+            if (event.shouldCommit()) {
+                event.manager = getName();
+                event.round = round;
+                event.previousSpeaker = lastSpeaker.getName();
+                event.speaker = speaker != null ? speaker.getName() : null;
+                event.agents = groupChat.getAgents().size();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Share a message, so that it is held once and referenced by the transcript and the histories of all
+     * participants.
+     *
+     * @param message the message.
+     * @param speaker the agent that spoke the message.
+     * @return the shared message.
+     */
+    private ChatMessage share(ChatMessage message, Agent speaker) {
+        // set the name to speaker's name if the role is not function
+        String name = FUNCTION.equals(message.getRole()) ? message.getName() : speaker.getName();
+        return SharedMessages.share(message, name);
+    }
+
     @Override
     public boolean equals(Object o) {
         return super.equals(o);
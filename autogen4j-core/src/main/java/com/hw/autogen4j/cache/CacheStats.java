@@ -0,0 +1,43 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.cache;
+
+/**
+ * Statistics of a cache.
+ *
+ * @param hitCount      the number of lookups that found a cached value.
+ * @param missCount     the number of lookups that found nothing.
+ * @param evictionCount the number of entries evicted because of the size limit or expiration.
+ * @param size          the approximate number of entries in the cache.
+ *
+ * @author HamaWhite
+ */
+public record CacheStats(long hitCount, long missCount, long evictionCount, long size) {
+
+    /**
+     * The ratio of lookups that found a cached value, 1.0 if there was no lookup.
+     *
+     * @return the hit rate.
+     */
+    public double hitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+}
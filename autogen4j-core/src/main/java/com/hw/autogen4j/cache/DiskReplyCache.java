@@ -0,0 +1,645 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.hw.autogen4j.util.JsonUtil.canonicalMapper;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A persistent reply cache, stored as append-only segment files in a directory, so that cached replies survive JVM
+ * restarts without any external service.
+ * <p>
+ * Every record is appended to the newest segment as {@code [magic][crc][key length][value length][created][key]
+ * [value]}. An in-memory index maps each key to the position of its value, and values are read from read-only memory
+ * mappings of the segments, so a lookup costs a hash lookup and the decoding of the reply.
+ * <p>
+ * Several processes on the same host can share a directory: appends and compactions are serialized by a file lock,
+ * and a process that misses a key first picks up the records appended by the others. Every write increments a
+ * generation counter in a memory-mapped file, so that a miss scans the directory only when the segments have changed.
+ * Older segments are compacted in the background, dropping expired and duplicated records. Several instances on
+ * the same directory in one JVM behave like separate processes, waiting for each other's file lock.
+ *
+ * @author HamaWhite
+ */
+public class DiskReplyCache implements ReplyCache, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiskReplyCache.class);
+
+    private static final int MAGIC = 0x41474A43;
+
+    private static final int HEADER_BYTES = 24;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String LOCK_FILE = "write.lock";
+
+    private static final String GENERATION_FILE = "generation";
+
+    private static final long LOCK_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * the directory holding the segment files.
+     */
+    private final Path directory;
+
+    /**
+     * the size above which a new segment is started.
+     */
+    private final long maxSegmentBytes;
+
+    /**
+     * how long a reply stays in the cache after it is written, null means forever.
+     */
+    private final Duration ttl;
+
+    /**
+     * the number of older segments that triggers a compaction.
+     */
+    private final int compactionSegments;
+
+    private final ObjectMapper objectMapper = canonicalMapper();
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+
+    /**
+     * serializes the writers of this process, the file lock serializes the processes.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final FileChannel lockChannel;
+
+    /**
+     * the generation counter shared by the processes, incremented by every append and compaction.
+     */
+    private final MappedByteBuffer generation;
+
+    /**
+     * the generation the index is up to date with.
+     */
+    private volatile long indexedGeneration = -1;
+
+    private final LongAdder refreshCount = new LongAdder();
+
+    private final ScheduledExecutorService compactor;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * The position of a cached value.
+     */
+    private record Location(long segmentId, long offset, int keyLength, int valueLength, long createdMillis) {
+
+        long recordBytes() {
+            return (long) HEADER_BYTES + keyLength + valueLength;
+        }
+    }
+
+    /**
+     * An open segment file.
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+
+        /**
+         * the number of bytes read into the index, the records after it are not indexed yet.
+         */
+        private long indexedBytes;
+
+        private volatile MappedByteBuffer mapping;
+
+        private Segment(long id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        private byte[] read(long offset, int length) throws IOException {
+            MappedByteBuffer buffer = mapping;
+            if (buffer == null || offset + length > buffer.capacity()) {
+                // the segment has grown since it was mapped
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mapping = buffer;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get((int) offset, bytes);
+            return bytes;
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close cache segment {}.", path, e);
+            }
+        }
+    }
+
+    private DiskReplyCache(Builder builder) {
+        this.directory = builder.directory;
+        this.maxSegmentBytes = builder.maxSegmentBytes;
+        this.ttl = builder.ttl;
+        this.compactionSegments = builder.compactionSegments;
+        try {
+            Files.createDirectories(directory);
+            this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            try (FileChannel channel = FileChannel.open(directory.resolve(GENERATION_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // the mapping stays valid after the channel is closed
+                this.generation = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+            }
+            writeLock.lock();
+            try {
+                refresh();
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new Autogen4jException("Failed to open the reply cache in " + directory, e);
+        }
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("autogen4j-cache-compactor-%d")
+                .setDaemon(true)
+                .build());
+        long interval = builder.compactionInterval.toMillis();
+        compactor.scheduleWithFixedDelay(this::compactQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ChatMessage get(String key) {
+        Location location = index.get(key);
+        // the key may have been written by another process, which is known without locking from the generation
+        if (location == null && generation() != indexedGeneration) {
+            writeLock.lock();
+            try {
+                refreshIfChanged();
+            } catch (IOException e) {
+                LOG.warn("Failed to refresh the reply cache in {}.", directory, e);
+            } finally {
+                writeLock.unlock();
+            }
+            location = index.get(key);
+        }
+        if (location == null) {
+            missCount.increment();
+            return null;
+        }
+        if (isExpired(location)) {
+            index.remove(key, location);
+            evictionCount.increment();
+            missCount.increment();
+            return null;
+        }
+        try {
+            ChatMessage reply = objectMapper.readValue(readValue(location), ChatMessage.class);
+            hitCount.increment();
+            return reply;
+        } catch (IOException e) {
+            LOG.warn("Failed to read the cached reply {} in {}.", key, directory, e);
+            index.remove(key, location);
+            missCount.increment();
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, ChatMessage reply) {
+        if (index.containsKey(key)) {
+            // the key is the hash of the request, so the cached reply is equivalent
+            return;
+        }
+        writeLock.lock();
+        try {
+            FileLock fileLock = lockFile();
+            try {
+                refreshIfChanged();
+                if (!index.containsKey(key)) {
+                    append(key.getBytes(UTF_8), objectMapper.writeValueAsBytes(reply), System.currentTimeMillis());
+                }
+            } finally {
+                fileLock.release();
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to write the reply {} to the cache in {}.", key, directory, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), index.size());
+    }
+
+    /**
+     * Compact the older segments now: the live records are rewritten into a new segment, and the expired or
+     * duplicated records are dropped. This is also done periodically in the background.
+     */
+    public void compact() {
+        writeLock.lock();
+        try {
+            FileLock fileLock = lockFile();
+            try {
+                refreshIfChanged();
+                doCompact();
+            } finally {
+                fileLock.release();
+            }
+        } catch (IOException e) {
+            throw new Autogen4jException("Failed to compact the reply cache in " + directory, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            LOG.warn("Background compaction of the reply cache failed.", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        writeLock.lock();
+        try {
+            segments.values().forEach(Segment::close);
+            segments.clear();
+            lockChannel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close the reply cache in {}.", directory, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Lock the directory against the other writers. The JVM holds file locks per process, so a lock held by another
+     * instance on the same directory in this JVM is reported as an overlap instead of being waited for, and is
+     * retried until that instance releases it. Must be called holding the write lock.
+     */
+    private FileLock lockFile() throws IOException {
+        while (true) {
+            try {
+                return lockChannel.lock();
+            } catch (OverlappingFileLockException e) {
+                LockSupport.parkNanos(LOCK_RETRY_NANOS);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while waiting for the lock of " + directory);
+                }
+            }
+        }
+    }
+
+    private boolean isExpired(Location location) {
+        return ttl != null && location.createdMillis() + ttl.toMillis() < System.currentTimeMillis();
+    }
+
+    private byte[] readValue(Location location) throws IOException {
+        Segment segment = segments.get(location.segmentId());
+        if (segment == null) {
+            throw new NoSuchFileException(segmentPath(location.segmentId()).toString());
+        }
+        return segment.read(location.offset() + HEADER_BYTES + location.keyLength(), location.valueLength());
+    }
+
+    private byte[] readKey(Location location) throws IOException {
+        return segments.get(location.segmentId()).read(location.offset() + HEADER_BYTES, location.keyLength());
+    }
+
+    /**
+     * Append a record to the newest segment. Must be called holding both locks, after a refresh.
+     */
+    private void append(byte[] key, byte[] value, long createdMillis) throws IOException {
+        Segment segment = activeSegment();
+        if (segment.indexedBytes < segment.channel.size()) {
+            // a torn record left by a crashed writer, no writer can be running since we hold the file lock
+            segment.channel.truncate(segment.indexedBytes);
+        }
+        if (segment.indexedBytes >= maxSegmentBytes) {
+            segment = openSegment(segment.id + 1);
+        }
+        long offset = segment.indexedBytes;
+        writeFully(segment.channel, encode(key, value, createdMillis), offset);
+
+        Location location = new Location(segment.id, offset, key.length, value.length, createdMillis);
+        index.put(new String(key, UTF_8), location);
+        segment.indexedBytes = offset + location.recordBytes();
+        advanceGeneration();
+    }
+
+    private Segment activeSegment() throws IOException {
+        long id = segments.keySet().stream().mapToLong(Long::longValue).max().orElse(0L);
+        Segment segment = segments.get(id);
+        return segment != null ? segment : openSegment(id);
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Segment segment = new Segment(id, segmentPath(id));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve("%020d%s".formatted(id, SEGMENT_SUFFIX));
+    }
+
+    private long generation() {
+        return generation.getLong(0);
+    }
+
+    /**
+     * Increment the generation after a write, which the index is up to date with. Must be called holding both locks,
+     * after a refresh.
+     */
+    private void advanceGeneration() {
+        long next = generation() + 1;
+        generation.putLong(0, next);
+        indexedGeneration = next;
+    }
+
+    /**
+     * Refresh the index if another process has written since the last refresh. Must be called holding the write lock.
+     */
+    private void refreshIfChanged() throws IOException {
+        if (generation() != indexedGeneration) {
+            refresh();
+        }
+    }
+
+    /**
+     * Bring the index up to date with the segment files, which other processes may have appended to, created or
+     * compacted away. Must be called holding the write lock.
+     */
+    private void refresh() throws IOException {
+        // read before listing, so that a write during the refresh triggers the next one
+        long current = generation();
+        Set<Long> ids = listSegmentIds();
+        for (Segment segment : List.copyOf(segments.values())) {
+            if (!ids.contains(segment.id)) {
+                // removed by a compaction in another process, the live records were copied to a newer segment
+                segments.remove(segment.id);
+                segment.close();
+                index.values().removeIf(location -> location.segmentId() == segment.id);
+            }
+        }
+        for (long id : ids) {
+            try {
+                Segment segment = segments.get(id);
+                scan(segment != null ? segment : openSegment(id));
+            } catch (NoSuchFileException e) {
+                // compacted away while we were listing
+                Segment segment = segments.remove(id);
+                if (segment != null) {
+                    segment.close();
+                }
+            }
+        }
+        indexedGeneration = current;
+        refreshCount.increment();
+    }
+
+    /**
+     * The number of times the index was refreshed from the segment files.
+     */
+    @VisibleForTesting
+    long refreshes() {
+        return refreshCount.sum();
+    }
+
+    private SortedSet<Long> listSegmentIds() throws IOException {
+        SortedSet<Long> ids = new TreeSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> name.substring(0, name.length() - SEGMENT_SUFFIX.length()))
+                    .forEach(id -> ids.add(Long.parseLong(id)));
+        }
+        return ids;
+    }
+
+    /**
+     * Index the records of a segment after its indexed bytes. Scanning stops at a record that is incomplete, either
+     * being written by another process or torn by a crash.
+     */
+    private void scan(Segment segment) throws IOException {
+        long position = segment.indexedBytes;
+        long size = segment.channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            header.flip();
+            int magic = header.getInt();
+            int crc = header.getInt();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            long createdMillis = header.getLong();
+            if (magic != MAGIC || keyLength <= 0 || valueLength < 0
+                    || position + HEADER_BYTES + keyLength + valueLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(keyLength + valueLength);
+            readFully(segment.channel, body, position + HEADER_BYTES);
+            if (checksum(createdMillis, body.array()) != crc) {
+                break;
+            }
+            String key = new String(body.array(), 0, keyLength, UTF_8);
+            index.put(key, new Location(segment.id, position, keyLength, valueLength, createdMillis));
+            position += HEADER_BYTES + keyLength + valueLength;
+        }
+        segment.indexedBytes = position;
+    }
+
+    /**
+     * Rewrite the live records of all segments but the newest into a new segment, then delete them.
+     * Must be called holding both locks, after a refresh.
+     */
+    private void doCompact() throws IOException {
+        List<Long> ids = new ArrayList<>(listSegmentIds());
+        if (ids.size() <= compactionSegments) {
+            return;
+        }
+        long activeId = ids.remove(ids.size() - 1);
+        Set<Long> sealedIds = Set.copyOf(ids);
+
+        long compactedId = activeId + 1;
+        Path temporary = directory.resolve(segmentPath(compactedId).getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (Location location : List.copyOf(index.values())) {
+                if (!sealedIds.contains(location.segmentId()) || isExpired(location)) {
+                    continue;
+                }
+                ByteBuffer record = encode(readKey(location), readValue(location), location.createdMillis());
+                writeFully(channel, record, position);
+                position += location.recordBytes();
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, segmentPath(compactedId), StandardCopyOption.ATOMIC_MOVE);
+        scan(openSegment(compactedId));
+
+        int before = index.size();
+        index.values().removeIf(location -> sealedIds.contains(location.segmentId()));
+        evictionCount.add(before - (long) index.size());
+        for (long id : sealedIds) {
+            Segment segment = segments.remove(id);
+            if (segment != null) {
+                segment.close();
+            }
+            Files.deleteIfExists(segmentPath(id));
+        }
+        advanceGeneration();
+        LOG.debug("Compacted {} cache segments into {}.", sealedIds.size(), segmentPath(compactedId));
+    }
+
+    private static ByteBuffer encode(byte[] key, byte[] value, long createdMillis) {
+        ByteBuffer body = ByteBuffer.allocate(key.length + value.length).put(key).put(value);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + key.length + value.length)
+                .putInt(MAGIC)
+                .putInt(checksum(createdMillis, body.array()))
+                .putInt(key.length)
+                .putInt(value.length)
+                .putLong(createdMillis)
+                .put(body.array());
+        return record.flip();
+    }
+
+    private static int checksum(long createdMillis, byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(createdMillis).array());
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of cache segment.");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    public static class Builder {
+
+        private final Path directory;
+
+        private long maxSegmentBytes = 64L * 1024 * 1024;
+
+        private Duration ttl;
+
+        private int compactionSegments = 4;
+
+        private Duration compactionInterval = Duration.ofMinutes(5);
+
+        private Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        public Builder maxSegmentBytes(long maxSegmentBytes) {
+            if (maxSegmentBytes <= 0 || maxSegmentBytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("maxSegmentBytes must be between 1 and " + Integer.MAX_VALUE);
+            }
+            this.maxSegmentBytes = maxSegmentBytes;
+            return this;
+        }
+
+        public Builder ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public Builder compactionSegments(int compactionSegments) {
+            this.compactionSegments = compactionSegments;
+            return this;
+        }
+
+        public Builder compactionInterval(Duration compactionInterval) {
+            this.compactionInterval = compactionInterval;
+            return this;
+        }
+
+        public DiskReplyCache build() {
+            return new DiskReplyCache(this);
+        }
+    }
+}
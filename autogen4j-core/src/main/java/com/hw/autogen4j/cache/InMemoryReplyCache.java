@@ -0,0 +1,77 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.cache;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.time.Duration;
+
+/**
+ * An in-memory reply cache, evicting the least recently used entries above a maximum size, and the entries older
+ * than a time-to-live.
+ *
+ * @author HamaWhite
+ */
+public class InMemoryReplyCache implements ReplyCache {
+
+    private final Cache<String, ChatMessage> cache;
+
+    /**
+     * Create an in-memory reply cache.
+     *
+     * @param maximumSize the maximum number of cached replies.
+     * @param ttl         how long a reply stays in the cache after it is written, null means forever.
+     */
+    public InMemoryReplyCache(long maximumSize, Duration ttl) {
+        this(maximumSize, ttl, Ticker.systemTicker());
+    }
+
+    InMemoryReplyCache(long maximumSize, Duration ttl, Ticker ticker) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .recordStats();
+        if (ttl != null) {
+            builder.expireAfterWrite(ttl);
+        }
+        this.cache = builder.build();
+    }
+
+    @Override
+    public ChatMessage get(String key) {
+        ChatMessage reply = cache.getIfPresent(key);
+        // return a copy, so that the cached reply is never modified by the conversation
+        return reply == null ? null : new ChatMessage(reply);
+    }
+
+    @Override
+    public void put(String key, ChatMessage reply) {
+        cache.put(key, new ChatMessage(reply));
+    }
+
+    @Override
+    public CacheStats stats() {
+        var stats = cache.stats();
+        return new CacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.size());
+    }
+}
@@ -0,0 +1,71 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.cache;
+
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import static com.hw.autogen4j.util.JsonUtil.toCanonicalJson;
+
+/**
+ * A cache of llm replies, addressed by the content of the request that produced them.
+ * <p>
+ * Implementations must be thread-safe, so that a cache can be shared by many agents.
+ *
+ * @author HamaWhite
+ */
+public interface ReplyCache {
+
+    /**
+     * Get the cached reply for a request key.
+     *
+     * @param key the key of the request, see {@link #keyOf(ChatCompletion)}.
+     * @return the cached reply, or null if there is none.
+     */
+    ChatMessage get(String key);
+
+    /**
+     * Cache the reply for a request key.
+     *
+     * @param key   the key of the request, see {@link #keyOf(ChatCompletion)}.
+     * @param reply the reply to cache.
+     */
+    void put(String key, ChatMessage reply);
+
+    /**
+     * Statistics of the cache.
+     *
+     * @return a snapshot of the statistics.
+     */
+    CacheStats stats();
+
+    /**
+     * Compute the key of a request: a SHA-256 hash of its canonical JSON form, which covers the model, the sampling
+     * parameters and the full list of messages. Identical requests always have the same key, across JVM runs.
+     *
+     * @param request the chat completion request.
+     * @return the hex encoded key.
+     */
+    static String keyOf(ChatCompletion request) {
+        return DigestUtils.sha256Hex(toCanonicalJson(request));
+    }
+}
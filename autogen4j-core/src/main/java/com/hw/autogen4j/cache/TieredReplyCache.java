@@ -0,0 +1,69 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.cache;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+/**
+ * A two-tier reply cache, typically a small in-memory cache in front of a persistent one. Replies found in the second
+ * tier are promoted to the first, and new replies are written to both.
+ *
+ * @author HamaWhite
+ */
+public class TieredReplyCache implements ReplyCache {
+
+    private final ReplyCache first;
+
+    private final ReplyCache second;
+
+    public TieredReplyCache(ReplyCache first, ReplyCache second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public ChatMessage get(String key) {
+        ChatMessage reply = first.get(key);
+        if (reply == null) {
+            reply = second.get(key);
+            if (reply != null) {
+                first.put(key, reply);
+            }
+        }
+        return reply;
+    }
+
+    @Override
+    public void put(String key, ChatMessage reply) {
+        first.put(key, reply);
+        second.put(key, reply);
+    }
+
+    /**
+     * The hits of both tiers, and the lookups that missed both tiers.
+     */
+    @Override
+    public CacheStats stats() {
+        CacheStats firstStats = first.stats();
+        CacheStats secondStats = second.stats();
+        return new CacheStats(firstStats.hitCount() + secondStats.hitCount(), secondStats.missCount(),
+                firstStats.evictionCount() + secondStats.evictionCount(), secondStats.size());
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.code;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hw.autogen4j.entity.CodeExecutionResult;
+import com.hw.autogen4j.exception.Autogen4jException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A long-lived python interpreter running the code blocks one at a time, see {@code python_worker.py}.
+ * <p>
+ * The code is sent over the stdin of the interpreter and the exit code is read back from its stdout, while the output
+ * of the code goes to a pair of files owned by the worker. A worker whose interpreter crashed or was killed on timeout
+ * is not alive anymore, and must be closed.
+ *
+ * @author HamaWhite
+ */
+class PythonWorker implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PythonWorker.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Lazily created executor reading the responses of the workers, a thread per running code block. It is not the
+     * bounded default executor, where a queued read would count against the timeout of its code block.
+     */
+    private static final class ResponseReaderHolder {
+
+        private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("autogen4j-python-reader-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    private final Process process;
+
+    private final Writer requests;
+
+    private final BufferedReader responses;
+
+    private final Path stdoutFile;
+
+    private final Path stderrFile;
+
+    private int runs;
+
+    private PythonWorker(Process process, Path stdoutFile, Path stderrFile) {
+        this.process = process;
+        this.requests = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        this.responses = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        this.stdoutFile = stdoutFile;
+        this.stderrFile = stderrFile;
+    }
+
+    /**
+     * Start an interpreter and wait until it has imported the preloaded modules.
+     *
+     * @param executable     the python executable.
+     * @param script         the source of the worker script.
+     * @param preloadModules the modules imported at startup.
+     * @return the started worker.
+     */
+    static PythonWorker start(String executable, String script, List<String> preloadModules) {
+        List<String> command = new ArrayList<>(List.of(executable, "-u", "-c", script));
+        command.addAll(preloadModules);
+        Path stdoutFile = null;
+        Path stderrFile = null;
+        try {
+            stdoutFile = Files.createTempFile("autogen4j-python-", ".out");
+            stderrFile = Files.createTempFile("autogen4j-python-", ".err");
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            PythonWorker worker = new PythonWorker(process, stdoutFile, stderrFile);
+            if (!"ready".equals(worker.responses.readLine())) {
+                worker.close();
+                throw new Autogen4jException("The python worker exited on startup with code %s.",
+                        process.waitFor());
+            }
+            return worker;
+        } catch (IOException e) {
+            deleteQuietly(stdoutFile);
+            deleteQuietly(stderrFile);
+            throw new Autogen4jException("Error starting the python worker.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Autogen4jException("Interrupted while starting the python worker.", e);
+        }
+    }
+
+    /**
+     * Run a code block, with the same result as running it with {@code python <filename>} in the work directory.
+     *
+     * @param code     the code to run.
+     * @param workDir  the working directory of the code.
+     * @param filename the name of the file the code is reported under, in the tracebacks and as {@code __file__}.
+     * @param timeout  the maximum execution time in seconds, the interpreter is killed beyond it.
+     * @return the result of the execution.
+     */
+    CodeExecutionResult execute(String code, String workDir, String filename, int timeout) {
+        runs++;
+        CompletableFuture<String> response;
+        try {
+            requests.write(MAPPER.writeValueAsString(Map.of(
+                    "code", code,
+                    "work_dir", workDir,
+                    "filename", filename,
+                    "stdout", stdoutFile.toString(),
+                    "stderr", stderrFile.toString())));
+            requests.write('\n');
+            requests.flush();
+            // the response is read on another thread, so that the wait is bounded by the timeout
+            response = CompletableFuture.supplyAsync(this::readResponse, ResponseReaderHolder.INSTANCE);
+        } catch (JsonProcessingException e) {
+            throw new Autogen4jException("Error serializing the code execution request.", e);
+        } catch (IOException e) {
+            // the interpreter has died since its last run
+            return crashed(workDir);
+        }
+
+        try {
+            String exitCode = response.get(timeout, TimeUnit.SECONDS);
+            return exitCode == null ? crashed(workDir) : result(Integer.parseInt(exitCode), workDir);
+        } catch (TimeoutException e) {
+            // kill the interpreter, as the watchdog of a process would
+            process.destroy();
+            return crashed(workDir);
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new Autogen4jException("Interrupted while executing code.", e);
+        } catch (ExecutionException e) {
+            process.destroyForcibly();
+            throw new Autogen4jException("Error executing code.", e.getCause());
+        }
+    }
+
+    private String readResponse() {
+        try {
+            return responses.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The result of a run that ended with the interpreter, the exit code is the one of the process.
+     */
+    private CodeExecutionResult crashed(String workDir) {
+        try {
+            return result(process.waitFor(), workDir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Autogen4jException("Interrupted while waiting for the python worker to exit.", e);
+        }
+    }
+
+    private CodeExecutionResult result(int exitCode, String workDir) {
+        try {
+            if (exitCode == 0) {
+                return new CodeExecutionResult(0, Files.readString(stdoutFile).trim());
+            }
+            String errorOutput = Files.readString(stderrFile)
+                    .replace(Path.of(workDir).toAbsolutePath() + File.separator, "");
+            return new CodeExecutionResult(exitCode, errorOutput.trim());
+        } catch (IOException e) {
+            throw new Autogen4jException("Error reading the output of the code execution.", e);
+        }
+    }
+
+    /**
+     * The number of code blocks this worker has run.
+     *
+     * @return the number of runs.
+     */
+    int runs() {
+        return runs;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    @Override
+    public void close() {
+        // closing the stdin makes the interpreter exit once the current run is over
+        try {
+            requests.close();
+        } catch (IOException e) {
+            LOG.debug("Error closing the stdin of the python worker.", e);
+        }
+        try {
+            if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        deleteQuietly(stdoutFile);
+        deleteQuietly(stderrFile);
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.debug("Error deleting {}.", file, e);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.code;
+
+import com.hw.autogen4j.entity.CodeExecutionResult;
+import com.hw.autogen4j.exception.Autogen4jException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+import static com.hw.autogen4j.util.ConcurrentUtil.defaultExecutor;
+
+/**
+ * A pool of warm python interpreters running the python code blocks, set with
+ * {@link com.hw.autogen4j.entity.CodeExecutionConfig#getPythonWorkerPool()}.
+ * <p>
+ * Starting a new interpreter for every code block costs its startup and the imports of the code, which take hundreds
+ * of milliseconds for libraries such as numpy or pandas. The workers of the pool are started ahead, optionally with
+ * such modules already imported, and take the code over a pipe. Each run has its own globals, working directory and
+ * output, and has the same exit code and logs as a new interpreter would. The modules a run imports stay loaded, so
+ * a worker is retired after a number of runs, and as soon as its interpreter crashed or was killed on timeout.
+ *
+ * @author HamaWhite
+ */
+public class PythonWorkerPool implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PythonWorkerPool.class);
+
+    private static final String WORKER_SCRIPT = "python_worker.py";
+
+    /**
+     * Lazily created pool shared by the code executions that do not set their own.
+     */
+    private static final class SharedHolder {
+
+        private static final PythonWorkerPool INSTANCE = builder().build();
+    }
+
+    private final String executable;
+
+    private final List<String> preloadModules;
+
+    private final int minIdle;
+
+    private final int maxRunsPerWorker;
+
+    private final String script;
+
+    private final Semaphore permits;
+
+    private final BlockingDeque<PythonWorker> idleWorkers = new LinkedBlockingDeque<>();
+
+    private volatile boolean closed;
+
+    private PythonWorkerPool(Builder builder) {
+        this.executable = builder.executable;
+        this.preloadModules = List.copyOf(builder.preloadModules);
+        this.minIdle = builder.minIdle;
+        this.maxRunsPerWorker = builder.maxRunsPerWorker;
+        this.permits = new Semaphore(builder.maxWorkers);
+        this.script = loadScript();
+        replenish();
+    }
+
+    /**
+     * The pool shared by the code executions that do not set their own, with up to as many workers as processors,
+     * each retired after 100 runs.
+     *
+     * @return the shared pool.
+     */
+    public static PythonWorkerPool shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Run a python code block on a worker of the pool, waiting for a worker if all of them are busy.
+     *
+     * @param code     the code to run.
+     * @param workDir  the working directory of the code.
+     * @param filename the name of the file the code is reported under, in the tracebacks and as {@code __file__}.
+     * @param timeout  the maximum execution time in seconds.
+     * @return the result of the execution.
+     */
+    public CodeExecutionResult execute(String code, String workDir, String filename, int timeout) {
+        if (closed) {
+            throw new Autogen4jException("The python worker pool is closed.");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Autogen4jException("Interrupted while waiting for a python worker.", e);
+        }
+        PythonWorker worker = null;
+        try {
+            worker = borrow();
+            return worker.execute(code, workDir, filename, timeout);
+        } finally {
+            if (worker != null) {
+                giveBack(worker);
+            }
+            permits.release();
+            replenish();
+        }
+    }
+
+    private PythonWorker borrow() {
+        PythonWorker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            if (worker.isAlive()) {
+                return worker;
+            }
+            // the interpreter died while idle
+            worker.close();
+        }
+        return PythonWorker.start(executable, script, preloadModules);
+    }
+
+    private void giveBack(PythonWorker worker) {
+        if (closed || !worker.isAlive() || worker.runs() >= maxRunsPerWorker) {
+            LOG.debug("Retiring a python worker after {} runs.", worker.runs());
+            worker.close();
+        } else {
+            // the most recently used worker is reused first, so that the others can be retired when idle
+            idleWorkers.offerFirst(worker);
+        }
+    }
+
+    /**
+     * Start workers in the background, until there are at least minIdle idle workers.
+     */
+    private void replenish() {
+        int missing = Math.min(minIdle - idleWorkers.size(), permits.availablePermits());
+        for (int i = 0; i < missing && !closed; i++) {
+            defaultExecutor().execute(() -> {
+                if (idleWorkers.size() >= minIdle || !permits.tryAcquire()) {
+                    return;
+                }
+                try {
+                    PythonWorker worker = PythonWorker.start(executable, script, preloadModules);
+                    idleWorkers.offerLast(worker);
+                    // the pool may have been closed while the worker was starting
+                    if (closed && idleWorkers.remove(worker)) {
+                        worker.close();
+                    }
+                } catch (RuntimeException e) {
+                    LOG.warn("Error starting a python worker in the background.", e);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * The number of idle workers, ready to run code.
+     *
+     * @return the number of idle workers.
+     */
+    public int idleWorkers() {
+        return idleWorkers.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        List<PythonWorker> workers = new ArrayList<>();
+        idleWorkers.drainTo(workers);
+        workers.forEach(PythonWorker::close);
+    }
+
+    private static String loadScript() {
+        try (InputStream in = PythonWorkerPool.class.getResourceAsStream(WORKER_SCRIPT)) {
+            if (in == null) {
+                throw new Autogen4jException("The python worker script %s is not found.", WORKER_SCRIPT);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new Autogen4jException("Error loading the python worker script.", e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private String executable = "python";
+
+        private List<String> preloadModules = List.of();
+
+        private int maxWorkers = Runtime.getRuntime().availableProcessors();
+
+        private int minIdle = 1;
+
+        private int maxRunsPerWorker = 100;
+
+        private Builder() {
+        }
+
+        /**
+         * The python executable the workers run.
+         *
+         * @param executable the python executable.
+         * @return this builder.
+         */
+        public Builder executable(String executable) {
+            this.executable = executable;
+            return this;
+        }
+
+        /**
+         * The modules each worker imports when it starts, before running any code. A module that fails to import
+         * is skipped.
+         *
+         * @param preloadModules the names of the modules.
+         * @return this builder.
+         */
+        public Builder preloadModules(List<String> preloadModules) {
+            this.preloadModules = preloadModules;
+            return this;
+        }
+
+        /**
+         * The maximum number of workers, which is the maximum number of code blocks running at the same time.
+         *
+         * @param maxWorkers the maximum number of workers.
+         * @return this builder.
+         */
+        public Builder maxWorkers(int maxWorkers) {
+            this.maxWorkers = maxWorkers;
+            return this;
+        }
+
+        /**
+         * The number of idle workers kept warm, started in the background whenever there are fewer.
+         *
+         * @param minIdle the minimum number of idle workers.
+         * @return this builder.
+         */
+        public Builder minIdle(int minIdle) {
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        /**
+         * The number of runs after which a worker is retired, bounding the state leaked from run to run through the
+         * imported modules.
+         *
+         * @param maxRunsPerWorker the maximum number of runs of a worker.
+         * @return this builder.
+         */
+        public Builder maxRunsPerWorker(int maxRunsPerWorker) {
+            this.maxRunsPerWorker = maxRunsPerWorker;
+            return this;
+        }
+
+        public PythonWorkerPool build() {
+            if (maxWorkers <= 0 || maxRunsPerWorker <= 0 || minIdle < 0) {
+                throw new Autogen4jException("Invalid python worker pool: maxWorkers %s, minIdle %s, "
+                        + "maxRunsPerWorker %s.", maxWorkers, minIdle, maxRunsPerWorker);
+            }
+            return new PythonWorkerPool(this);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.context;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Decides which part of the history with a peer is sent to the llm, so that the requests stay within the context
+ * window of the model and the cost of a turn does not grow with the length of the conversation.
+ * <p>
+ * The system message of the agent is always sent and is not part of the history passed to the policy.
+ *
+ * @author HamaWhite
+ */
+@FunctionalInterface
+public interface ContextPolicy {
+
+    /**
+     * Select the messages to send to the llm.
+     *
+     * @param messages the history with the peer, oldest first.
+     * @return the messages to send, oldest first.
+     */
+    List<ChatMessage> apply(List<ChatMessage> messages);
+
+    /**
+     * Send the whole history.
+     *
+     * @return the unbounded policy.
+     */
+    static ContextPolicy unbounded() {
+        return messages -> messages;
+    }
+
+    /**
+     * Send the most recent messages that fit in a token budget, with token counts estimated by
+     * {@link TokenCounter#estimating()}.
+     *
+     * @param maxTokens the token budget of the history.
+     * @return the sliding window policy.
+     */
+    static ContextPolicy slidingWindow(int maxTokens) {
+        return slidingWindow(maxTokens, TokenCounter.estimating());
+    }
+
+    /**
+     * Send the most recent messages that fit in a token budget.
+     *
+     * @param maxTokens the token budget of the history.
+     * @param counter   the token counter.
+     * @return the sliding window policy.
+     */
+    static ContextPolicy slidingWindow(int maxTokens, TokenCounter counter) {
+        return new SlidingWindowPolicy(maxTokens, new TokenIndex(counter));
+    }
+
+    /**
+     * Send the first messages, which usually state the task, and the most recent ones.
+     *
+     * @param first the number of leading messages to keep.
+     * @param last  the number of trailing messages to keep.
+     * @return the keep-first-and-last policy.
+     */
+    static ContextPolicy keepFirstAndLast(int first, int last) {
+        return new KeepFirstAndLastPolicy(first, last);
+    }
+
+    /**
+     * Send the most recent messages that fit in a token budget, preceded by a summary of the older ones, with token
+     * counts estimated by {@link TokenCounter#estimating()}.
+     *
+     * @param maxTokens  the token budget of the messages sent verbatim.
+     * @param summarizer the summarizer of the older messages.
+     * @return the summarizing policy.
+     */
+    static ContextPolicy summarizeOlder(int maxTokens, Summarizer summarizer) {
+        return summarizeOlder(maxTokens, summarizer, TokenCounter.estimating());
+    }
+
+    /**
+     * Send the most recent messages that fit in a token budget, preceded by a summary of the older ones.
+     *
+     * @param maxTokens  the token budget of the messages sent verbatim.
+     * @param summarizer the summarizer of the older messages.
+     * @param counter    the token counter.
+     * @return the summarizing policy.
+     */
+    static ContextPolicy summarizeOlder(int maxTokens, Summarizer summarizer, TokenCounter counter) {
+        return new SummarizingPolicy(maxTokens, summarizer, new TokenIndex(counter));
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.context;
+
+import com.hw.autogen4j.conversation.MessageHistory;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Keeps the first N messages, which usually state the task, and the last M messages.
+ *
+ * @author HamaWhite
+ */
+public class KeepFirstAndLastPolicy implements ContextPolicy {
+
+    private final int first;
+
+    private final int last;
+
+    public KeepFirstAndLastPolicy(int first, int last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    @Override
+    public List<ChatMessage> apply(List<ChatMessage> messages) {
+        int size = messages.size();
+        if (size <= first + last) {
+            return messages;
+        }
+        return MessageHistory.concat(messages.subList(0, first), messages.subList(size - last, size));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.context;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Keeps the most recent messages that fit in a token budget. The last message is always kept.
+ *
+ * @author HamaWhite
+ */
+public class SlidingWindowPolicy implements ContextPolicy {
+
+    private final int maxTokens;
+
+    private final TokenIndex tokenIndex;
+
+    public SlidingWindowPolicy(int maxTokens, TokenIndex tokenIndex) {
+        this.maxTokens = maxTokens;
+        this.tokenIndex = tokenIndex;
+    }
+
+    @Override
+    public List<ChatMessage> apply(List<ChatMessage> messages) {
+        int start = tokenIndex.prefixSums(messages).suffixStart(messages.size(), maxTokens);
+        return start == 0 ? messages : messages.subList(start, messages.size());
+    }
+}
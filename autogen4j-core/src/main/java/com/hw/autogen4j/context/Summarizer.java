@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.context;
+
+import com.hw.autogen4j.model.ChatModel;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.hw.autogen4j.util.ChatCompletionUtil.copyOf;
+import static com.hw.openai.entity.chat.ChatMessageRole.SYSTEM;
+import static com.hw.openai.entity.chat.ChatMessageRole.USER;
+
+/**
+ * Summarizes the messages that no longer fit in the context window.
+ *
+ * @author HamaWhite
+ */
+@FunctionalInterface
+public interface Summarizer {
+
+    /**
+     * Fold messages into a running summary.
+     *
+     * @param previousSummary the summary of the messages before, null if there is none.
+     * @param messages        the messages to add to the summary, oldest first.
+     * @return the new summary.
+     */
+    String summarize(String previousSummary, List<ChatMessage> messages);
+
+    /**
+     * A summarizer asking the llm to fold the messages into the running summary.
+     *
+     * @param chatModel      the model generating the summary.
+     * @param chatCompletion the request template, holding the model and the sampling parameters.
+     * @return the llm summarizer.
+     */
+    static Summarizer llm(ChatModel chatModel, ChatCompletion chatCompletion) {
+        return (previousSummary, messages) -> {
+            String transcript = messages.stream()
+                    .map(message -> "%s: %s".formatted(
+                            message.getName() != null ? message.getName() : message.getRole(),
+                            message.getContent()))
+                    .collect(Collectors.joining("\n"));
+            String prompt = previousSummary == null
+                    ? transcript
+                    : "Summary so far:\n%s\n\nNew messages:\n%s".formatted(previousSummary, transcript);
+
+            ChatCompletion request = copyOf(chatCompletion, List.of(
+                    new ChatMessage(SYSTEM, "Summarize the conversation concisely. Keep the task, the decisions "
+                            + "made, the results obtained and the open questions."),
+                    new ChatMessage(USER, prompt)));
+            return chatModel.complete(request).getChoices().get(0).getMessage().getContent();
+        };
+    }
+}
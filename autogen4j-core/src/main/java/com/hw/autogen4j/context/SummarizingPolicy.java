@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.context;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hw.autogen4j.conversation.MessageHistory;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.List;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.SYSTEM;
+
+/**
+ * Keeps the most recent messages that fit in a token budget, and replaces the older ones with a running summary.
+ * <p>
+ * The summary is extended incrementally, and only when the recent messages overflow the budget. It then absorbs
+ * messages until the recent ones take half of the budget, so the summarizer runs once per half budget of new messages
+ * rather than on every turn.
+ *
+ * @author HamaWhite
+ */
+public class SummarizingPolicy implements ContextPolicy {
+
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
+
+    private final int maxTokens;
+
+    private final Summarizer summarizer;
+
+    private final TokenIndex tokenIndex;
+
+    /**
+     * the running summary of each history, held weakly and compared by identity like in {@link TokenIndex}.
+     */
+    private final Cache<Object, Summary> summaries = CacheBuilder.newBuilder().weakKeys().build();
+
+    public SummarizingPolicy(int maxTokens, Summarizer summarizer, TokenIndex tokenIndex) {
+        this.maxTokens = maxTokens;
+        this.summarizer = summarizer;
+        this.tokenIndex = tokenIndex;
+    }
+
+    @Override
+    public List<ChatMessage> apply(List<ChatMessage> messages) {
+        TokenIndex.PrefixSums sums = tokenIndex.prefixSums(messages);
+        Object key = TokenIndex.historyKey(messages);
+        Summary summary = summaries.getIfPresent(key);
+        if (summary != null && !summary.isPrefixOf(messages)) {
+            // the history was cleared or truncated since
+            summary = null;
+        }
+        int summarized = summary == null ? 0 : summary.count();
+        if (sums.tokens(summarized, messages.size()) > maxTokens) {
+            int start = sums.suffixStart(messages.size(), maxTokens / 2L);
+            if (start > summarized) {
+                String text = summarizer.summarize(summary == null ? null : summary.text(),
+                        messages.subList(summarized, start));
+                summary = new Summary(start, messages.get(start - 1), text,
+                        new ChatMessage(SYSTEM, SUMMARY_PREFIX + text));
+                summaries.put(key, summary);
+                summarized = start;
+            }
+        }
+        if (summary == null) {
+            return messages;
+        }
+        return MessageHistory.concat(List.of(summary.message()), messages.subList(summarized, messages.size()));
+    }
+
+    /**
+     * The running summary of the first count messages of a history.
+     *
+     * @param count          the number of messages summarized.
+     * @param lastSummarized the last message summarized, to detect a history that was replaced since.
+     * @param text           the summary.
+     * @param message        the summary as a message.
+     */
+    private record Summary(int count, ChatMessage lastSummarized, String text, ChatMessage message) {
+
+        private boolean isPrefixOf(List<ChatMessage> messages) {
+            return count <= messages.size() && messages.get(count - 1) == lastSummarized;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.context;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.apache.commons.collections4.CollectionUtils;
+
+/**
+ * Counts the tokens a message takes in the context window of the llm.
+ *
+ * @author HamaWhite
+ */
+@FunctionalInterface
+public interface TokenCounter {
+
+    /**
+     * Count the tokens of a message, including the per-message overhead.
+     *
+     * @param message the message.
+     * @return the number of tokens.
+     */
+    int count(ChatMessage message);
+
+    /**
+     * A tokenizer-free estimate, about four characters per token plus a fixed per-message overhead, which is close
+     * enough for budgeting English text and code with the OpenAI tokenizers.
+     *
+     * @return the estimating token counter.
+     */
+    static TokenCounter estimating() {
+        return message -> {
+            int characters = message.getContent() == null ? 0 : message.getContent().length();
+            if (message.getName() != null) {
+                characters += message.getName().length();
+            }
+            if (CollectionUtils.isNotEmpty(message.getToolCalls())) {
+                characters += message.getToolCalls().stream()
+                        .filter(toolCall -> toolCall.getFunction() != null)
+                        .mapToInt(toolCall -> String.valueOf(toolCall.getFunction().getName()).length()
+                                + String.valueOf(toolCall.getFunction().getArguments()).length())
+                        .sum();
+            }
+            // every message is wrapped as <|start|>{role/name}\n{content}<|end|>\n
+            return 4 + (characters + 3) / 4;
+        };
+    }
+}
@@ -0,0 +1,158 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.context;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hw.autogen4j.conversation.MessageHistory;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Caches the token counts of messages and histories, so that the cost of building a context window grows with the
+ * number of new messages rather than with the length of the history.
+ * <p>
+ * The counts are cached per message instance and, for every history, as prefix sums that are extended as the history
+ * grows. The prefix sums of a {@link MessageHistory} are shared by all its versions, those of other lists are kept per
+ * list instance and recounted when the list shrinks. Both caches hold their keys weakly and compare them by identity,
+ * so they never retain a finished conversation.
+ *
+ * @author HamaWhite
+ */
+public class TokenIndex {
+
+    private final TokenCounter counter;
+
+    private final Cache<ChatMessage, Integer> messageTokens = CacheBuilder.newBuilder().weakKeys().build();
+
+    private final Cache<Object, PrefixSums> historyTokens = CacheBuilder.newBuilder().weakKeys().build();
+
+    public TokenIndex(TokenCounter counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * The number of tokens of a message.
+     *
+     * @param message the message.
+     * @return the cached token count.
+     */
+    public int tokens(ChatMessage message) {
+        Integer tokens = messageTokens.getIfPresent(message);
+        if (tokens == null) {
+            tokens = counter.count(message);
+            messageTokens.put(message, tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * The prefix sums of the token counts of a history, brought up to date with the messages appended since the last
+     * call.
+     *
+     * @param messages the history.
+     * @return the prefix sums, valid for the first {@code messages.size()} messages.
+     */
+    public PrefixSums prefixSums(List<ChatMessage> messages) {
+        try {
+            PrefixSums sums = historyTokens.get(historyKey(messages), PrefixSums::new);
+            sums.update(messages, this, !(messages instanceof MessageHistory));
+            return sums;
+        } catch (ExecutionException e) {
+            throw new Autogen4jException(e.getCause());
+        }
+    }
+
+    /**
+     * The key of a history in caches holding their keys weakly: the storage shared by the versions of a
+     * {@link MessageHistory}, or the list itself.
+     */
+    static Object historyKey(List<ChatMessage> messages) {
+        return messages instanceof MessageHistory history ? history.storageKey() : messages;
+    }
+
+    /**
+     * The token counts of the first i messages of a history, for every i.
+     */
+    public static class PrefixSums {
+
+        /**
+         * sums[i] is the number of tokens of the first i messages.
+         */
+        private long[] sums = new long[16];
+
+        private int size;
+
+        private synchronized void update(List<ChatMessage> messages, TokenIndex index, boolean resetOnShrink) {
+            if (resetOnShrink && messages.size() < size) {
+                // the history was cleared or truncated
+                size = 0;
+            }
+            if (sums.length <= messages.size()) {
+                sums = Arrays.copyOf(sums, Math.max(sums.length * 2, messages.size() + 1));
+            }
+            for (int i = size; i < messages.size(); i++) {
+                sums[i + 1] = sums[i] + index.tokens(messages.get(i));
+            }
+            size = Math.max(size, messages.size());
+        }
+
+        /**
+         * The number of tokens of the messages in [from, to).
+         *
+         * @param from the index of the first message, inclusive.
+         * @param to   the index of the last message, exclusive.
+         * @return the number of tokens.
+         */
+        public synchronized long tokens(int from, int to) {
+            return sums[to] - sums[from];
+        }
+
+        /**
+         * The start of the longest suffix of the first {@code end} messages that fits in a token budget. The last
+         * message is always included, even when it alone exceeds the budget.
+         *
+         * @param end       the number of messages of the history.
+         * @param maxTokens the token budget.
+         * @return the index of the first message of the suffix.
+         */
+        public synchronized int suffixStart(int end, long maxTokens) {
+            if (end == 0) {
+                return 0;
+            }
+            // binary search of the smallest i with sums[end] - sums[i] <= maxTokens
+            int low = 0;
+            int high = end - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sums[end] - sums[mid] <= maxTokens) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+}
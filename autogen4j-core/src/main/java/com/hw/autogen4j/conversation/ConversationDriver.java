@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+/**
+ * A trampoline that runs the turns of a conversation in a loop, instead of letting the agents call each other
+ * recursively through send and receive.
+ * <p>
+ * When an agent receives a message that requests a reply, the reply turn is scheduled on the driver bound to the
+ * current thread and executed after the current turn returns, so a conversation of any length runs in constant stack
+ * depth. The replies are generated {@link #suspend suspended} from the driver, so that a reply function sending a
+ * message gets the answer to it before it returns.
+ *
+ * @author HamaWhite
+ */
+public final class ConversationDriver {
+
+    private static final ThreadLocal<ConversationDriver> CURRENT = new ThreadLocal<>();
+
+    private final Deque<Runnable> turns = new ArrayDeque<>();
+
+    private ConversationDriver() {
+    }
+
+    /**
+     * Run a conversation to completion on the calling thread, starting with the given turn.
+     * <p>
+     * A conversation started from inside another one (for example, a nested chat initiated by a reply function) gets
+     * its own driver and completes before this method returns.
+     *
+     * @param firstTurn the first turn of the conversation.
+     */
+    public static void run(Runnable firstTurn) {
+        ConversationDriver outer = CURRENT.get();
+        ConversationDriver driver = new ConversationDriver();
+        CURRENT.set(driver);
+        try {
+            driver.turns.add(firstTurn);
+            Runnable turn;
+            while ((turn = driver.turns.poll()) != null) {
+                turn.run();
+            }
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Schedule a turn on the conversation running on the calling thread.
+     * If no conversation is running, a new one is started and run to completion.
+     *
+     * @param turn the turn to schedule.
+     */
+    public static void schedule(Runnable turn) {
+        ConversationDriver driver = CURRENT.get();
+        if (driver == null) {
+            run(turn);
+        } else {
+            driver.turns.add(turn);
+        }
+    }
+
+    /**
+     * Run an action outside the conversation running on the calling thread, such as a reply function that may itself
+     * send messages. A message sent from inside the action that requests a reply starts its own conversation, which
+     * completes before the send returns, so the action sees the reply.
+     *
+     * @param action the action to run.
+     * @param <T>    the type of the result.
+     * @return the result of the action.
+     */
+    public static <T> T suspend(Supplier<T> action) {
+        ConversationDriver driver = CURRENT.get();
+        if (driver == null) {
+            return action.get();
+        }
+        CURRENT.remove();
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(driver);
+        }
+    }
+
+    /**
+     * Whether a conversation is running on the calling thread.
+     *
+     * @return true if the calling thread is inside a conversation.
+     */
+    public static boolean isRunning() {
+        return CURRENT.get() != null;
+    }
+}
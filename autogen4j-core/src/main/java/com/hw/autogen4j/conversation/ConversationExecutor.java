@@ -0,0 +1,303 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hw.autogen4j.agent.ConversableAgent;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.hw.autogen4j.util.ConcurrentUtil.newThreadFactory;
+
+/**
+ * Runs each chat on its own thread, a virtual thread when the runtime supports it (Java 21 or later), so that a chat
+ * blocked on network I/O or code execution does not hold a platform thread.
+ * <p>
+ * The executor bounds the number of chats running at the same time, enforces a per-chat deadline, and drains the
+ * running chats gracefully on {@link #close()}.
+ *
+ * @author HamaWhite
+ */
+public class ConversationExecutor implements AutoCloseable {
+
+    /**
+     * the maximum number of chats running at the same time.
+     */
+    private final int maxConcurrentChats;
+
+    /**
+     * how long a submission waits for a free slot before it is rejected, zero means reject immediately.
+     */
+    private final Duration admissionTimeout;
+
+    /**
+     * the default deadline of a chat, null means no deadline.
+     */
+    private final Duration chatTimeout;
+
+    /**
+     * how long {@link #close()} waits for the running chats to finish before interrupting them.
+     */
+    private final Duration drainTimeout;
+
+    private final ThreadFactory threadFactory;
+
+    private final Semaphore admission;
+
+    private final Set<Thread> runningThreads = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService deadlineScheduler;
+
+    private volatile boolean shutdown;
+
+    private ConversationExecutor(Builder builder) {
+        this.maxConcurrentChats = builder.maxConcurrentChats;
+        this.admissionTimeout = builder.admissionTimeout;
+        this.chatTimeout = builder.chatTimeout;
+        this.drainTimeout = builder.drainTimeout;
+        this.threadFactory = builder.threadFactory;
+
+        this.admission = new Semaphore(maxConcurrentChats, true);
+        this.deadlineScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("autogen4j-chat-deadline-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Initiate a chat between two agents on a new thread, in a new {@link ConversationSession}, so that the same
+     * agents can take part in many chats at the same time.
+     *
+     * @param sender    the agent that initiates the chat.
+     * @param recipient the recipient agent.
+     * @param message   the message to send.
+     * @return a future that completes when the conversation ends.
+     */
+    public CompletableFuture<Void> initiateChat(ConversableAgent sender, ConversableAgent recipient, String message) {
+        return submit(() -> {
+            sender.initiateChat(recipient, message, new ConversationSession());
+            return null;
+        });
+    }
+
+    /**
+     * Run a chat on a new thread, with the default deadline.
+     *
+     * @param chat the chat to run.
+     * @param <T>  the result type of the chat.
+     * @return a future of the result of the chat.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> chat) {
+        return submit(chat, chatTimeout);
+    }
+
+    /**
+     * Run a chat on a new thread.
+     * <p>
+     * The submission is rejected when the executor has been shut down, or when no slot frees up within the
+     * admission timeout. When the deadline passes, the future fails with a {@link TimeoutException} and the chat
+     * thread is interrupted.
+     *
+     * @param chat    the chat to run.
+     * @param timeout the deadline of the chat, null means no deadline.
+     * @param <T>     the result type of the chat.
+     * @return a future of the result of the chat.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> chat, Duration timeout) {
+        if (shutdown) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("ConversationExecutor is shut down."));
+        }
+        if (!admit()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Too many concurrent chats, the limit is %d.".formatted(maxConcurrentChats)));
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Thread thread = null;
+        try {
+            thread = threadFactory.newThread(() -> {
+                try {
+                    future.complete(chat.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    runningThreads.remove(Thread.currentThread());
+                    admission.release();
+                }
+            });
+            if (thread == null) {
+                throw new RejectedExecutionException("The thread factory did not create a chat thread.");
+            }
+            runningThreads.add(thread);
+            thread.start();
+        } catch (RuntimeException | Error e) {
+            // the chat never runs, so its slot is freed here, e.g. when no native thread can be created
+            if (thread != null) {
+                runningThreads.remove(thread);
+            }
+            admission.release();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        if (timeout != null) {
+            Thread chatThread = thread;
+            ScheduledFuture<?> deadline = deadlineScheduler.schedule(() -> {
+                if (future.completeExceptionally(new TimeoutException(
+                        "Chat did not finish within %s.".formatted(timeout)))) {
+                    chatThread.interrupt();
+                }
+            }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            future.whenComplete((result, throwable) -> deadline.cancel(false));
+        }
+        return future;
+    }
+
+    private boolean admit() {
+        if (admissionTimeout.isZero()) {
+            return admission.tryAcquire();
+        }
+        try {
+            return admission.tryAcquire(admissionTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * The number of chats currently running.
+     *
+     * @return the number of running chats.
+     */
+    public int runningChats() {
+        return maxConcurrentChats - admission.availablePermits();
+    }
+
+    /**
+     * Stop admitting new chats. The running chats are not affected.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Wait for all running chats to finish.
+     *
+     * @param timeout the maximum time to wait.
+     * @return true if all chats finished, false if the timeout elapsed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        if (admission.tryAcquire(maxConcurrentChats, timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            admission.release(maxConcurrentChats);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stop admitting new chats, and interrupt the running ones.
+     */
+    public void shutdownNow() {
+        shutdown();
+        runningThreads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Gracefully drain the executor: stop admitting new chats, wait up to the drain timeout for the running chats
+     * to finish, then interrupt the remaining ones.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            if (!awaitTermination(drainTimeout)) {
+                shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shutdownNow();
+        } finally {
+            deadlineScheduler.shutdownNow();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int maxConcurrentChats = 10_000;
+
+        private Duration admissionTimeout = Duration.ZERO;
+
+        private Duration chatTimeout;
+
+        private Duration drainTimeout = Duration.ofSeconds(30);
+
+        private ThreadFactory threadFactory = newThreadFactory("autogen4j-chat-");
+
+        private Builder() {
+        }
+
+        public Builder maxConcurrentChats(int maxConcurrentChats) {
+            this.maxConcurrentChats = maxConcurrentChats;
+            return this;
+        }
+
+        public Builder admissionTimeout(Duration admissionTimeout) {
+            this.admissionTimeout = admissionTimeout;
+            return this;
+        }
+
+        public Builder chatTimeout(Duration chatTimeout) {
+            this.chatTimeout = chatTimeout;
+            return this;
+        }
+
+        public Builder drainTimeout(Duration drainTimeout) {
+            this.drainTimeout = drainTimeout;
+            return this;
+        }
+
+        public Builder threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        public ConversationExecutor build() {
+            return new ConversationExecutor(this);
+        }
+    }
+}
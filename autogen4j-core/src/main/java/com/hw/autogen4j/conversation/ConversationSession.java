@@ -0,0 +1,169 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import com.google.common.cache.Cache;
+import com.hw.autogen4j.agent.Agent;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.SYSTEM;
+
+/**
+ * The mutable state of a conversation, kept apart from the agents taking part in it.
+ * <p>
+ * For every agent, a session holds the message history with each peer, the consecutive auto reply counters and the
+ * system message override. It also holds the results of the functions cached per conversation. A session is bound to
+ * the thread that runs the conversation, and the agents look up their state from the bound session, so the same agent
+ * instances can take part in many sessions at the same time without cross-talk. Without a bound session, each agent
+ * falls back to its own default session.
+ *
+ * @author HamaWhite
+ */
+public class ConversationSession {
+
+    private static final ThreadLocal<ConversationSession> CURRENT = new ThreadLocal<>();
+
+    private final Map<Agent, Map<Agent, MessageHistory>> oaiMessages = new ConcurrentHashMap<>();
+
+    private final Map<Agent, Map<Agent, Integer>> consecutiveAutoReplyCounters = new ConcurrentHashMap<>();
+
+    private final Map<Agent, List<ChatMessage>> oaiSystemMessages = new ConcurrentHashMap<>();
+
+    private final Map<Object, Cache<String, String>> functionResults = new ConcurrentHashMap<>();
+
+    /**
+     * The session bound to the calling thread.
+     *
+     * @return the current session, or null if no session is bound.
+     */
+    public static ConversationSession current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * The message history of an agent, keyed by the peer agent.
+     *
+     * @param agent the agent owning the history.
+     * @return a mutable map from the peer agent to the messages exchanged with it.
+     */
+    public Map<Agent, MessageHistory> oaiMessages(Agent agent) {
+        return oaiMessages.computeIfAbsent(agent, key -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * The consecutive auto reply counters of an agent, keyed by the peer agent.
+     *
+     * @param agent the agent owning the counters.
+     * @return a mutable map from the peer agent to the number of consecutive auto replies.
+     */
+    public Map<Agent, Integer> consecutiveAutoReplyCounter(Agent agent) {
+        return consecutiveAutoReplyCounters.computeIfAbsent(agent, key -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * The system message an agent uses in this session.
+     *
+     * @param agent the agent.
+     * @return the system message override, or null if the agent uses its configured system message.
+     */
+    public List<ChatMessage> oaiSystemMessage(Agent agent) {
+        return oaiSystemMessages.get(agent);
+    }
+
+    /**
+     * Override the system message of an agent in this session.
+     *
+     * @param agent         the agent.
+     * @param systemMessage system message for the ChatCompletion inference.
+     */
+    public void updateSystemMessage(Agent agent, String systemMessage) {
+        oaiSystemMessages.put(agent, List.of(new ChatMessage(SYSTEM, systemMessage)));
+    }
+
+    /**
+     * The cached results of a function whose cache is scoped to the conversation, keyed on its arguments.
+     *
+     * @param function the cache of the function, identifying it.
+     * @param factory  creates the cache of the function on its first call in this session.
+     * @return the cached results of the function in this session.
+     */
+    public Cache<String, String> functionResults(Object function, Supplier<Cache<String, String>> factory) {
+        return functionResults.computeIfAbsent(function, key -> factory.get());
+    }
+
+    /**
+     * Drop the results cached per conversation, when a new chat starts in this session.
+     */
+    public void clearFunctionResults() {
+        functionResults.clear();
+    }
+
+    /**
+     * Run an action with this session bound to the calling thread.
+     *
+     * @param action the action to run.
+     */
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Call a function with this session bound to the calling thread.
+     *
+     * @param action the function to call.
+     * @param <T>    the result type.
+     * @return the result of the function.
+     */
+    public <T> T call(Supplier<T> action) {
+        ConversationSession outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Wrap a function so that it runs with this session bound, whichever thread calls it.
+     * Used to carry the session across the stages of an asynchronous conversation.
+     *
+     * @param function the function to wrap.
+     * @param <T>      the argument type.
+     * @param <R>      the result type.
+     * @return the wrapped function.
+     */
+    public <T, R> Function<T, R> bind(Function<T, R> function) {
+        return value -> call(() -> function.apply(value));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable, append-only list of messages whose versions share their common prefix.
+ * <p>
+ * Appending returns a new history in amortized O(1) time without copying: the versions of a history are prefixes of
+ * one growable array, and the newest version appends in place. Only appending to an older version, which forks the
+ * history, copies the prefix. Each version is immutable, so it can be handed to reply functions and requests as a
+ * snapshot and shared between threads without copying.
+ *
+ * @author HamaWhite
+ */
+public final class MessageHistory extends AbstractList<ChatMessage> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Storage storage;
+
+    private final int size;
+
+    private MessageHistory(Storage storage, int size) {
+        this.storage = storage;
+        this.size = size;
+    }
+
+    /**
+     * A new empty history.
+     *
+     * @return the empty history.
+     */
+    public static MessageHistory empty() {
+        return new MessageHistory(new Storage(INITIAL_CAPACITY), 0);
+    }
+
+    /**
+     * A new history holding the given messages.
+     *
+     * @param messages the messages, oldest first.
+     * @return the history.
+     */
+    public static MessageHistory of(List<ChatMessage> messages) {
+        if (messages instanceof MessageHistory history) {
+            return history;
+        }
+        Storage storage = new Storage(Math.max(INITIAL_CAPACITY, messages.size()));
+        messages.forEach(message -> storage.tryAppend(storage.size, message));
+        return new MessageHistory(storage, messages.size());
+    }
+
+    /**
+     * Append a message. This history is not modified.
+     *
+     * @param message the message to append.
+     * @return a history with the message appended.
+     */
+    public MessageHistory append(ChatMessage message) {
+        if (storage.tryAppend(size, message)) {
+            return new MessageHistory(storage, size + 1);
+        }
+        // another version was appended to this one already, fork the history
+        Storage forked = new Storage(Math.max(INITIAL_CAPACITY, size * 2));
+        System.arraycopy(storage.elements, 0, forked.elements, 0, size);
+        forked.size = size;
+        forked.tryAppend(size, message);
+        return new MessageHistory(forked, size + 1);
+    }
+
+    /**
+     * A view of messages preceded by other messages, typically the system message, without copying.
+     *
+     * @param prefix   the messages to prepend.
+     * @param messages the messages.
+     * @return a view of the prefix followed by the messages.
+     */
+    public static List<ChatMessage> concat(List<ChatMessage> prefix, List<ChatMessage> messages) {
+        return prefix.isEmpty() ? messages : new ConcatView(prefix, messages);
+    }
+
+    /**
+     * The last message.
+     *
+     * @return the last message, or null if the history is empty.
+     */
+    public ChatMessage last() {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    /**
+     * An identity shared by all versions of this history that are prefixes of one another, for caches keyed by
+     * history. The messages at a given index are the same in all these versions.
+     *
+     * @return the identity of the shared storage.
+     */
+    public Object storageKey() {
+        return storage;
+    }
+
+    @Override
+    public ChatMessage get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: %d, Size: %d".formatted(index, size));
+        }
+        return storage.elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The array shared by the versions of a history. Elements below {@code size} are never overwritten.
+     */
+    private static final class Storage {
+
+        private volatile ChatMessage[] elements;
+
+        /**
+         * the number of elements written, guarded by this.
+         */
+        private int size;
+
+        private Storage(int capacity) {
+            this.elements = new ChatMessage[capacity];
+        }
+
+        /**
+         * Append an element if the version appending is the newest one.
+         */
+        private synchronized boolean tryAppend(int expectedSize, ChatMessage message) {
+            if (size != expectedSize) {
+                return false;
+            }
+            ChatMessage[] array = elements;
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size * 2);
+            }
+            array[size++] = message;
+            // the volatile write publishes the element together with a grown array
+            elements = array;
+            return true;
+        }
+    }
+
+    /**
+     * An unmodifiable view of a prefix followed by other messages.
+     */
+    private static final class ConcatView extends AbstractList<ChatMessage> implements RandomAccess {
+
+        private final List<ChatMessage> prefix;
+
+        private final List<ChatMessage> messages;
+
+        private ConcatView(List<ChatMessage> prefix, List<ChatMessage> messages) {
+            this.prefix = prefix;
+            this.messages = messages;
+        }
+
+        @Override
+        public ChatMessage get(int index) {
+            return index < prefix.size() ? prefix.get(index) : messages.get(index - prefix.size());
+        }
+
+        @Override
+        public int size() {
+            return prefix.size() + messages.size();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import com.google.common.collect.MapMaker;
+import com.hw.openai.entity.chat.ChatMessage;
+import com.hw.openai.entity.chat.ChatMessageRole;
+
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Messages shared by the histories of the agents of a group, so that a message broadcast to N agents is held once
+ * rather than copied into every history on both sides of every send.
+ * <p>
+ * The histories need the message under different roles, the sender sees its own messages as "assistant" and the
+ * others as "user". The role variants of a shared message are plain {@link ChatMessage} objects, created at most once
+ * per role and referenced by every history needing that role. They are held weakly here, so a message is reclaimed by
+ * the garbage collector once no history references it. A shared message is seen by all the histories holding it, and
+ * must not be modified.
+ *
+ * @author HamaWhite
+ */
+public final class SharedMessages {
+
+    /**
+     * the variants of the shared messages, keyed by identity on any of their variants.
+     */
+    private static final Map<ChatMessage, Variants> VARIANTS = new MapMaker().weakKeys().makeMap();
+
+    private SharedMessages() {
+    }
+
+    /**
+     * Share a copy of a message under the name of its speaker. A message shared already with this name is returned
+     * as is.
+     *
+     * @param message the message to share, which is not modified.
+     * @param name    the name of the speaker.
+     * @return the shared message.
+     */
+    public static ChatMessage share(ChatMessage message, String name) {
+        if (isShared(message) && (name == null ? message.getName() == null : name.equals(message.getName()))) {
+            return message;
+        }
+        ChatMessage shared = new ChatMessage(message);
+        shared.setName(name);
+        Variants variants = new Variants();
+        if (shared.getRole() != null) {
+            variants.put(shared);
+        }
+        VARIANTS.put(shared, variants);
+        return shared;
+    }
+
+    /**
+     * Whether a message was shared, directly or as a role variant.
+     *
+     * @param message the message.
+     * @return true if the message is shared.
+     */
+    public static boolean isShared(ChatMessage message) {
+        return VARIANTS.containsKey(message);
+    }
+
+    /**
+     * The variant of a shared message with another role.
+     *
+     * @param message the shared message.
+     * @param role    the role.
+     * @return the shared variant with the role, the message itself if it has the role already.
+     * @throws IllegalArgumentException if the message is not shared.
+     */
+    public static ChatMessage withRole(ChatMessage message, ChatMessageRole role) {
+        if (role.equals(message.getRole())) {
+            return message;
+        }
+        Variants variants = VARIANTS.get(message);
+        if (variants == null) {
+            throw new IllegalArgumentException("The message is not shared.");
+        }
+        synchronized (variants) {
+            ChatMessage variant = variants.get(role);
+            if (variant == null) {
+                variant = new ChatMessage(message);
+                variant.setRole(role);
+                variants.put(variant);
+                VARIANTS.put(variant, variants);
+            }
+            return variant;
+        }
+    }
+
+    /**
+     * The role variants of a message, held weakly so that they don't keep each other alive.
+     */
+    private static final class Variants {
+
+        private final Map<ChatMessageRole, WeakReference<ChatMessage>> byRole = new EnumMap<>(ChatMessageRole.class);
+
+        private ChatMessage get(ChatMessageRole role) {
+            WeakReference<ChatMessage> reference = byRole.get(role);
+            return reference != null ? reference.get() : null;
+        }
+
+        private void put(ChatMessage variant) {
+            byRole.put(variant.getRole(), new WeakReference<>(variant));
+        }
+    }
+}
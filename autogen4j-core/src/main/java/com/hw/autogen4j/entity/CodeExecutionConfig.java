@@ -18,6 +18,8 @@
 
 package com.hw.autogen4j.entity;
 
+import com.hw.autogen4j.code.PythonWorkerPool;
+
 import lombok.Builder;
 import lombok.Data;
 
@@ -41,6 +43,12 @@ public class CodeExecutionConfig {
      */
     private String docker;
 
+    /**
+     * the pool of warm python interpreters running the python code blocks, such as {@link PythonWorkerPool#shared()}.
+     * null means a new interpreter is started for every code block.
+     */
+    private PythonWorkerPool pythonWorkerPool;
+
     /**
      * the maximum execution time in seconds.
      */
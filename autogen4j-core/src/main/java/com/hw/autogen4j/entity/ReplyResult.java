@@ -25,4 +25,9 @@ import com.hw.openai.entity.chat.ChatMessage;
  * @author HamaWhite
  */
 public record ReplyResult(boolean terminate, ChatMessage reply) {
+
+    /**
+     * the outcome of a reply function that does not apply, shared so that it is not allocated on every message.
+     */
+    public static final ReplyResult NOT_APPLICABLE = new ReplyResult(false, null);
 }
\ No newline at end of file
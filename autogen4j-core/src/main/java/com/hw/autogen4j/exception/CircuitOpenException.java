@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.exception;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a call is rejected without being made, because the circuit breaker of its endpoint is open.
+ *
+ * @author HamaWhite
+ */
+public class CircuitOpenException extends Autogen4jException {
+
+    @Serial
+    private static final long serialVersionUID = 4526109887315274512L;
+
+    /**
+     * Creates a new CircuitOpenException with the given message.
+     *
+     * @param message The exception message
+     */
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
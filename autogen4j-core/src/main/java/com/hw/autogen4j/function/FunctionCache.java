@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.hw.autogen4j.cache.CacheStats;
+import com.hw.autogen4j.conversation.ConversationSession;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.autogen4j.metrics.Metrics;
+import com.hw.autogen4j.util.JsonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import static com.hw.autogen4j.metrics.Metrics.FUNCTION_CACHE;
+
+/**
+ * The memoized results of a function, following its {@link FunctionCachePolicy}.
+ * <p>
+ * The results are keyed on the canonical JSON form of the arguments, so that the same arguments hit the cache whatever
+ * the order of their properties and the whitespace the llm generated. Concurrent calls with the same arguments invoke
+ * the function once, the others wait for its result. The statistics add up the lookups of all the caches of the
+ * function, including those kept in the conversation sessions.
+ *
+ * @author HamaWhite
+ */
+class FunctionCache {
+
+    private final String name;
+
+    private final FunctionCachePolicy policy;
+
+    private final Ticker ticker;
+
+    private final Cache<String, String> globalCache;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    FunctionCache(String name, FunctionCachePolicy policy) {
+        this(name, policy, Ticker.systemTicker());
+    }
+
+    FunctionCache(String name, FunctionCachePolicy policy, Ticker ticker) {
+        this.name = name;
+        this.policy = policy;
+        this.ticker = ticker;
+        this.globalCache = policy.scope() == FunctionCachePolicy.Scope.GLOBAL ? newCache() : null;
+    }
+
+    /**
+     * Return the cached result of a call, or call the function and cache its result.
+     *
+     * @param arguments the arguments of the call, as a JSON object.
+     * @param function  the function, called with the arguments on a miss.
+     * @return the result of the call.
+     */
+    String get(String arguments, UnaryOperator<String> function) {
+        Cache<String, String> cache = cache();
+        if (cache == null) {
+            // a per-conversation cache has nothing to live in outside a session
+            return function.apply(arguments);
+        }
+        String key = key(arguments);
+        boolean[] loaded = new boolean[1];
+        try {
+            return cache.get(key, () -> {
+                loaded[0] = true;
+                return function.apply(arguments);
+            });
+        } catch (UncheckedExecutionException | ExecutionError | ExecutionException e) {
+            // the failures of the function are rethrown as they are, and never cached
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new Autogen4jException(e.getCause());
+        } finally {
+            // a failed call is a miss too
+            (loaded[0] ? missCount : hitCount).increment();
+            Metrics.global().count(FUNCTION_CACHE, 1, "function", name, "result", loaded[0] ? "miss" : "hit");
+        }
+    }
+
+    /**
+     * The statistics of the cache. The size is the number of results cached globally, or in the current session for
+     * a per-conversation cache.
+     *
+     * @return the statistics.
+     */
+    CacheStats stats() {
+        Cache<String, String> cache = cache();
+        long size = cache == null ? 0 : cache.size();
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), size);
+    }
+
+    private Cache<String, String> cache() {
+        if (globalCache != null) {
+            return globalCache;
+        }
+        ConversationSession session = ConversationSession.current();
+        return session == null ? null : session.functionResults(this, this::newCache);
+    }
+
+    private Cache<String, String> newCache() {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(policy.maximumSize())
+                .ticker(ticker)
+                .removalListener((RemovalListener<Object, Object>) notification -> {
+                    if (notification.wasEvicted()) {
+                        evictionCount.increment();
+                    }
+                });
+        if (policy.ttl() != null) {
+            builder.expireAfterWrite(policy.ttl());
+        }
+        return builder.build();
+    }
+
+    private String key(String arguments) {
+        try {
+            // parsed into maps, so that the properties are ordered by key when written back
+            Object value = JsonUtil.canonicalMapper().readValue(arguments, Object.class);
+            return new String(JsonUtil.toCanonicalJson(value), StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new Autogen4jException("The arguments of function %s should follow the JSON format of its schema: %s"
+                    .formatted(name, e.getOriginalMessage()), e);
+        }
+    }
+}
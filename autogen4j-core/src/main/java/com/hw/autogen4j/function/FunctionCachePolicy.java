@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.hw.autogen4j.exception.Autogen4jException;
+
+import java.time.Duration;
+
+/**
+ * How the results of a function are memoized. Only deterministic functions, such as pure lookups, should be cached:
+ * a call whose canonical JSON arguments were already seen returns the previous result without invoking the function.
+ * Failed calls are never cached.
+ *
+ * @param scope       where the results are kept.
+ * @param maximumSize the maximum number of results kept per cache, the least recently used are evicted first.
+ * @param ttl         how long a result stays in the cache after it is computed, null means forever.
+ *
+ * @author HamaWhite
+ */
+public record FunctionCachePolicy(Scope scope, long maximumSize, Duration ttl) {
+
+    private static final FunctionCachePolicy NONE = new FunctionCachePolicy(Scope.NONE, 0, null);
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    public FunctionCachePolicy {
+        if (scope == null) {
+            throw new Autogen4jException("The scope of a function cache policy must not be null.");
+        }
+        if (scope != Scope.NONE && maximumSize <= 0) {
+            throw new Autogen4jException("The maximum size of a function cache must be positive, but was %s.",
+                    maximumSize);
+        }
+        if (ttl != null && (ttl.isNegative() || ttl.isZero())) {
+            throw new Autogen4jException("The ttl of a function cache must be positive, but was %s.", ttl);
+        }
+    }
+
+    /**
+     * The results are not cached, every call invokes the function.
+     *
+     * @return the policy.
+     */
+    public static FunctionCachePolicy none() {
+        return NONE;
+    }
+
+    /**
+     * The results are cached for the duration of a conversation session, and never shared with other sessions.
+     *
+     * @return the policy.
+     */
+    public static FunctionCachePolicy perConversation() {
+        return new FunctionCachePolicy(Scope.CONVERSATION, DEFAULT_MAXIMUM_SIZE, null);
+    }
+
+    /**
+     * The results are cached by the registry and shared by all the conversations.
+     *
+     * @param maximumSize the maximum number of cached results.
+     * @param ttl         how long a result stays in the cache after it is computed, null means forever.
+     * @return the policy.
+     */
+    public static FunctionCachePolicy global(long maximumSize, Duration ttl) {
+        return new FunctionCachePolicy(Scope.GLOBAL, maximumSize, ttl);
+    }
+
+    /**
+     * Where the results of a function are kept.
+     */
+    public enum Scope {
+
+        /**
+         * the results are not cached.
+         */
+        NONE,
+
+        /**
+         * the results are kept in the conversation session, and dropped with it.
+         */
+        CONVERSATION,
+
+        /**
+         * the results are kept by the registry, across all the conversations.
+         */
+        GLOBAL
+    }
+}
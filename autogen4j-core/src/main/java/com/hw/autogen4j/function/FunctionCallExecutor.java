@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.hw.openai.entity.chat.ChatMessage;
+import com.hw.openai.entity.chat.FunctionCall;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static com.hw.autogen4j.util.ConcurrentUtil.join;
+import static com.hw.autogen4j.util.ConcurrentUtil.newThreadFactory;
+import static com.hw.autogen4j.util.ConcurrentUtil.scheduler;
+import static com.hw.openai.entity.chat.ChatMessageRole.FUNCTION;
+
+/**
+ * Executes all the function calls of an assistant message at the same time, on a bounded pool of threads, so that a
+ * message with several independent tool calls costs the time of the slowest call rather than the sum of all.
+ * <p>
+ * Each call has its own timeout, counted from the moment it starts running. A call that times out is interrupted,
+ * and its result is an error message, so that the llm gets a result for every call it made.
+ *
+ * @author HamaWhite
+ */
+public class FunctionCallExecutor {
+
+    /**
+     * Lazily created executor shared by the agents that do not set their own.
+     */
+    private static final class SharedHolder {
+
+        private static final FunctionCallExecutor INSTANCE = builder().build();
+    }
+
+    private final Duration timeout;
+
+    private final ExecutorService executor;
+
+    private FunctionCallExecutor(Builder builder) {
+        this.timeout = builder.timeout;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(builder.maxConcurrency, builder.maxConcurrency,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), newThreadFactory("autogen4j-function-"));
+        // the threads are only kept while there are function calls to run
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * The executor shared by the agents that do not set their own, running up to 8 calls at the same time, each with
+     * a timeout of 60 seconds.
+     *
+     * @return the shared executor.
+     */
+    public static FunctionCallExecutor shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Execute function calls concurrently and wait for all of them.
+     *
+     * @param functionCalls   the function calls, in the order of the tool calls of the message.
+     * @param executeFunction executes a single function call, returning its result as a function message.
+     * @return the results, in the order of the function calls.
+     */
+    public List<ChatMessage> executeAll(List<FunctionCall> functionCalls,
+            Function<FunctionCall, ChatMessage> executeFunction) {
+        List<CompletableFuture<ChatMessage>> results = new ArrayList<>(functionCalls.size());
+        for (FunctionCall functionCall : functionCalls) {
+            results.add(submit(functionCall, executeFunction));
+        }
+        try {
+            join(CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)));
+        } finally {
+            // when the caller is interrupted, the calls still running are abandoned
+            results.forEach(result -> result.cancel(true));
+        }
+        return results.stream().map(CompletableFuture::join).toList();
+    }
+
+    private CompletableFuture<ChatMessage> submit(FunctionCall functionCall,
+            Function<FunctionCall, ChatMessage> executeFunction) {
+        CompletableFuture<ChatMessage> result = new CompletableFuture<>();
+        AtomicReference<Future<?>> task = new AtomicReference<>();
+        task.set(executor.submit(() -> {
+            // the timeout starts when the call runs, not while it waits for a free thread
+            ScheduledFuture<?> timer = scheduler().schedule(() -> {
+                if (result.complete(timedOut(functionCall)) && task.get() != null) {
+                    task.get().cancel(true);
+                }
+            }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+            try {
+                result.complete(executeFunction.apply(functionCall));
+            } catch (Throwable t) {
+                result.complete(new ChatMessage(FUNCTION, "Error: " + t.getMessage(), functionCall.getName()));
+            } finally {
+                timer.cancel(false);
+            }
+        }));
+        // a call abandoned by the caller is interrupted
+        result.whenComplete((message, throwable) -> {
+            if (throwable != null) {
+                task.get().cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private ChatMessage timedOut(FunctionCall functionCall) {
+        return new ChatMessage(FUNCTION, "Error: Function %s timed out after %s."
+                .formatted(functionCall.getName(), timeout), functionCall.getName());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int maxConcurrency = 8;
+
+        private Duration timeout = Duration.ofSeconds(60);
+
+        private Builder() {
+        }
+
+        /**
+         * The maximum number of function calls running at the same time, across all the messages.
+         *
+         * @param maxConcurrency the maximum number of concurrent calls.
+         * @return this builder.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * The timeout of each function call.
+         *
+         * @param timeout the timeout of a call.
+         * @return this builder.
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public FunctionCallExecutor build() {
+            return new FunctionCallExecutor(this);
+        }
+    }
+}
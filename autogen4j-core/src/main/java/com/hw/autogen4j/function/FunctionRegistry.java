@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hw.autogen4j.cache.CacheStats;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.OpenAiClient;
+import com.hw.openai.entity.chat.ChatFunction;
+import com.hw.openai.entity.chat.Tool;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * The functions that the llm can call, mapping the function names passed to llm to their invokers.
+ * <p>
+ * All the work that doesn't depend on the arguments of a call is done once, when the registry is built: the JSON
+ * schema of each function is derived and its tool spec serialized, and the argument parsing is bound to a
+ * {@link MethodHandle} or a {@link Function}, with an {@link ObjectReader} per argument type. A call then only parses
+ * its arguments and invokes the function, without any reflection.
+ * <p>
+ * The results of a deterministic function can be memoized, per conversation or globally, by registering the function
+ * with a {@link FunctionCachePolicy}.
+ *
+ * @author HamaWhite
+ */
+public class FunctionRegistry {
+
+    private static final Pattern FUNCTION_NAME = Pattern.compile("^[a-zA-Z0-9_-]{1,64}$");
+
+    private final Map<String, RegisteredFunction> functions;
+
+    private final List<Tool> tools;
+
+    private FunctionRegistry(Builder builder) {
+        this.functions = Collections.unmodifiableMap(new LinkedHashMap<>(builder.functions));
+        this.tools = functions.values().stream().<Tool>map(RegisteredFunction::tool).toList();
+    }
+
+    /**
+     * The tool specs of all the functions, to pass as the tools of a chat completion request. The list is built once
+     * and shared by all the requests.
+     *
+     * @return an unmodifiable list of tool specs.
+     */
+    public List<Tool> tools() {
+        return tools;
+    }
+
+    /**
+     * The names of the registered functions.
+     *
+     * @return the function names, in registration order.
+     */
+    public Set<String> names() {
+        return functions.keySet();
+    }
+
+    /**
+     * Whether a function is registered under a name.
+     *
+     * @param name the function name.
+     * @return true if the function is registered.
+     */
+    public boolean contains(String name) {
+        return functions.containsKey(name);
+    }
+
+    /**
+     * Call a function with the arguments generated by the llm.
+     *
+     * @param name      the function name.
+     * @param arguments the arguments, as a JSON object.
+     * @return the result of the function, the string itself for a CharSequence and its JSON form otherwise.
+     * @throws Autogen4jException if the function is not registered, or the arguments don't match its parameters.
+     */
+    public String execute(String name, String arguments) {
+        RegisteredFunction function = function(name);
+        String json = StringUtils.isBlank(arguments) ? "{}" : arguments;
+        return function.cache() == null ? function.call(json) : function.cache().get(json, function::call);
+    }
+
+    /**
+     * The statistics of the result cache of a function, adding up all the conversations for a per-conversation cache.
+     *
+     * @param name the function name.
+     * @return the statistics, all zero if the results of the function are not cached.
+     * @throws Autogen4jException if the function is not registered.
+     */
+    public CacheStats cacheStats(String name) {
+        FunctionCache cache = function(name).cache();
+        return cache == null ? new CacheStats(0, 0, 0, 0) : cache.stats();
+    }
+
+    private RegisteredFunction function(String name) {
+        RegisteredFunction function = functions.get(name);
+        if (function == null) {
+            throw new Autogen4jException("Function %s not found.", name);
+        }
+        return function;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Parses the JSON arguments of a call and invokes the function with them.
+     */
+    @FunctionalInterface
+    interface FunctionInvoker {
+
+        Object invoke(String arguments) throws Throwable;
+    }
+
+    /**
+     * A function bound to its invoker, with its tool spec.
+     *
+     * @param tool         the tool spec passed to the llm.
+     * @param invoker      the invoker of the function.
+     * @param resultWriter the writer of the JSON form of the results.
+     * @param cache        the cache of the results, null if they are not cached.
+     */
+    private record RegisteredFunction(ToolSpec tool, FunctionInvoker invoker, ObjectWriter resultWriter,
+            FunctionCache cache) {
+
+        private String name() {
+            return tool.getChatFunction().getName();
+        }
+
+        private String call(String arguments) {
+            Object result;
+            try {
+                result = invoker.invoke(arguments);
+            } catch (JsonProcessingException e) {
+                throw new Autogen4jException(("The arguments of function %s should follow the JSON format of its "
+                        + "schema: %s").formatted(name(), e.getOriginalMessage()), e);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new Autogen4jException("Error executing function %s.".formatted(name()), t);
+            }
+            return resultToString(result);
+        }
+
+        private String resultToString(Object result) {
+            if (result instanceof CharSequence text) {
+                return text.toString();
+            }
+            try {
+                return resultWriter.writeValueAsString(result);
+            } catch (JsonProcessingException e) {
+                throw new Autogen4jException("Error serializing the result of function %s.".formatted(name()), e);
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private ObjectMapper objectMapper = OpenAiClient.defaultObjectMapper();
+
+        private final Map<String, RegisteredFunction> functions = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * The ObjectMapper that parses the arguments and serializes the results, which also decides the property
+         * names in the schemas. It must be set before any function is registered.
+         *
+         * @param objectMapper the ObjectMapper.
+         * @return this builder.
+         */
+        public Builder objectMapper(ObjectMapper objectMapper) {
+            if (!functions.isEmpty()) {
+                throw new IllegalStateException("The ObjectMapper must be set before registering any function.");
+            }
+            this.objectMapper = objectMapper;
+            return this;
+        }
+
+        /**
+         * Register a function taking its arguments as a single object, typically a record, whose properties form
+         * the JSON schema of the arguments.
+         *
+         * @param name          the function name passed to the llm.
+         * @param description   what the function does.
+         * @param argumentsType the type the JSON arguments are parsed into.
+         * @param function      the function.
+         * @param <T>           the arguments type.
+         * @return this builder.
+         */
+        public <T> Builder function(String name, String description, Class<T> argumentsType, Function<T, ?> function) {
+            JavaType type = objectMapper.constructType(argumentsType);
+            ObjectNode schema = FunctionSchemas.schemaOf(objectMapper, type);
+            if (!"object".equals(schema.path("type").asText())) {
+                throw new Autogen4jException("The arguments of function %s must be an object, not %s.",
+                        name, argumentsType.getName());
+            }
+            ObjectReader reader = objectMapper.readerFor(type);
+            FunctionInvoker invoker = arguments -> function.apply(reader.readValue(arguments));
+            return register(name, description, schema, invoker, objectMapper.writer());
+        }
+
+        /**
+         * Register a function taking its arguments as a single object, with a policy memoizing its results.
+         *
+         * @param name          the function name passed to the llm.
+         * @param description   what the function does.
+         * @param argumentsType the type the JSON arguments are parsed into.
+         * @param function      the function.
+         * @param cachePolicy   how the results of the function are cached.
+         * @param <T>           the arguments type.
+         * @return this builder.
+         */
+        public <T> Builder function(String name, String description, Class<T> argumentsType, Function<T, ?> function,
+                FunctionCachePolicy cachePolicy) {
+            return function(name, description, argumentsType, function).cachePolicy(name, cachePolicy);
+        }
+
+        /**
+         * Set how the results of a registered function are cached, typically one registered with
+         * {@link #functions(Object)}.
+         *
+         * @param name        the function name.
+         * @param cachePolicy how the results of the function are cached.
+         * @return this builder.
+         */
+        public Builder cachePolicy(String name, FunctionCachePolicy cachePolicy) {
+            RegisteredFunction function = functions.get(name);
+            if (function == null) {
+                throw new Autogen4jException("Function %s not found.", name);
+            }
+            FunctionCache cache = cachePolicy.scope() == FunctionCachePolicy.Scope.NONE
+                    ? null
+                    : new FunctionCache(name, cachePolicy);
+            functions.put(name, new RegisteredFunction(function.tool(), function.invoker(), function.resultWriter(),
+                    cache));
+            return this;
+        }
+
+        /**
+         * Register all the methods of a target annotated with {@link LlmFunction}. Each method is bound to the
+         * target through a {@link MethodHandle}, and its parameters become the properties of the JSON arguments.
+         *
+         * @param target the object holding the methods, or a Class for its static methods.
+         * @return this builder.
+         */
+        public Builder functions(Object target) {
+            Class<?> targetClass = target instanceof Class<?> clazz ? clazz : target.getClass();
+            List<Method> methods = new ArrayList<>();
+            for (Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (Method method : clazz.getDeclaredMethods()) {
+                    if (method.isAnnotationPresent(LlmFunction.class) && !method.isBridge()) {
+                        methods.add(method);
+                    }
+                }
+            }
+            if (methods.isEmpty()) {
+                throw new Autogen4jException("No method annotated with @LlmFunction in %s.", targetClass.getName());
+            }
+            // the declared methods come in no particular order, the tools are sorted to keep the requests stable
+            methods.sort(Comparator.comparing(Method::getName));
+            methods.forEach(method -> function(target, method));
+            return this;
+        }
+
+        private void function(Object target, Method method) {
+            LlmFunction annotation = method.getAnnotation(LlmFunction.class);
+            String name = annotation.name().isEmpty() ? method.getName() : annotation.name();
+            boolean isStatic = Modifier.isStatic(method.getModifiers());
+            if (!isStatic && target instanceof Class<?>) {
+                throw new Autogen4jException("Function %s is an instance method, register an instance of %s.",
+                        name, method.getDeclaringClass().getName());
+            }
+
+            Parameter[] parameters = method.getParameters();
+            String[] parameterNames = new String[parameters.length];
+            ObjectReader[] readers = new ObjectReader[parameters.length];
+            ObjectNode schema = objectMapper.createObjectNode().put("type", "object");
+            ObjectNode properties = schema.putObject("properties");
+            for (int i = 0; i < parameters.length; i++) {
+                parameterNames[i] = parameterName(name, parameters[i]);
+                JavaType type = objectMapper.constructType(parameters[i].getParameterizedType());
+                readers[i] = objectMapper.readerFor(type);
+
+                ObjectNode propertySchema = FunctionSchemas.schemaOf(objectMapper, type);
+                JsonPropertyDescription description = parameters[i].getAnnotation(JsonPropertyDescription.class);
+                if (description != null) {
+                    propertySchema.put("description", description.value());
+                }
+                properties.set(parameterNames[i], propertySchema);
+            }
+            // all the parameters of a method are required
+            ArrayNode required = schema.putArray("required");
+            for (String parameterName : parameterNames) {
+                required.add(parameterName);
+            }
+
+            MethodHandle handle;
+            try {
+                method.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new Autogen4jException("Function %s is not accessible.".formatted(name), e);
+            }
+            if (!isStatic) {
+                handle = handle.bindTo(target);
+            }
+            MethodHandle invoker = handle.asSpreader(Object[].class, parameters.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+
+            ObjectMapper mapper = objectMapper;
+            register(name, annotation.description(), schema, arguments -> {
+                JsonNode node = mapper.readTree(arguments);
+                Object[] values = new Object[parameterNames.length];
+                for (int i = 0; i < values.length; i++) {
+                    JsonNode value = node.get(parameterNames[i]);
+                    if (value == null || value.isNull()) {
+                        throw new Autogen4jException("The argument %s of function %s is missing.",
+                                parameterNames[i], name);
+                    }
+                    values[i] = readers[i].readValue(value);
+                }
+                return (Object) invoker.invokeExact(values);
+            }, objectMapper.writerFor(objectMapper.constructType(method.getGenericReturnType())));
+        }
+
+        private static String parameterName(String function, Parameter parameter) {
+            JsonProperty property = parameter.getAnnotation(JsonProperty.class);
+            if (property != null && !property.value().isEmpty()) {
+                return property.value();
+            }
+            if (!parameter.isNamePresent()) {
+                throw new Autogen4jException("The parameter names of function %s are not available, name them with "
+                        + "@JsonProperty or compile with -parameters.", function);
+            }
+            return parameter.getName();
+        }
+
+        private Builder register(String name, String description, ObjectNode schema, FunctionInvoker invoker,
+                ObjectWriter resultWriter) {
+            if (!FUNCTION_NAME.matcher(name).matches()) {
+                throw new Autogen4jException("Invalid function name %s, it must match %s.", name, FUNCTION_NAME);
+            }
+            if (functions.containsKey(name)) {
+                throw new Autogen4jException("Function %s is already registered.", name);
+            }
+
+            ChatFunction.ChatParameter parameters = new ChatFunction.ChatParameter();
+            parameters.setType("object");
+            parameters.setProperties((ObjectNode) schema.get("properties"));
+            List<String> required = new ArrayList<>();
+            schema.path("required").forEach(node -> required.add(node.asText()));
+            parameters.setRequired(required.isEmpty() ? null : required);
+
+            ChatFunction chatFunction = ChatFunction.builder()
+                    .name(name)
+                    .description(description)
+                    .parameters(parameters)
+                    .build();
+            try {
+                String json = objectMapper.writeValueAsString(new Tool(chatFunction));
+                functions.put(name, new RegisteredFunction(new ToolSpec(chatFunction, json), invoker, resultWriter,
+                        null));
+            } catch (JsonProcessingException e) {
+                throw new Autogen4jException("Error serializing the tool spec of function %s.".formatted(name), e);
+            }
+            return this;
+        }
+
+        public FunctionRegistry build() {
+            return new FunctionRegistry(this);
+        }
+    }
+}
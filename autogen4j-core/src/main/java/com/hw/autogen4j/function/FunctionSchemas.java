@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Derives the JSON schema of a Java type, as the properties of the arguments of a function.
+ * <p>
+ * The properties of a bean come from the introspection of the ObjectMapper that parses the arguments, so that the
+ * names in the schema always match the names the arguments are bound by.
+ *
+ * @author HamaWhite
+ */
+final class FunctionSchemas {
+
+    private FunctionSchemas() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Derive the JSON schema of a type.
+     *
+     * @param mapper the ObjectMapper that parses the arguments.
+     * @param type   the Java type.
+     * @return the JSON schema.
+     */
+    static ObjectNode schemaOf(ObjectMapper mapper, JavaType type) {
+        return schemaOf(mapper, type, new HashSet<>());
+    }
+
+    private static ObjectNode schemaOf(ObjectMapper mapper, JavaType type, Set<Class<?>> visiting) {
+        ObjectNode schema = mapper.createObjectNode();
+        Class<?> rawClass = type.getRawClass();
+        if (CharSequence.class.isAssignableFrom(rawClass) || rawClass == char.class || rawClass == Character.class
+                || rawClass.getPackageName().equals("java.time")) {
+            schema.put("type", "string");
+        } else if (rawClass == boolean.class || rawClass == Boolean.class) {
+            schema.put("type", "boolean");
+        } else if (isInteger(rawClass)) {
+            schema.put("type", "integer");
+        } else if (rawClass.isPrimitive() || Number.class.isAssignableFrom(rawClass)) {
+            schema.put("type", "number");
+        } else if (rawClass.isEnum()) {
+            schema.put("type", "string");
+            ArrayNode values = schema.putArray("enum");
+            for (Object constant : rawClass.getEnumConstants()) {
+                values.add(mapper.valueToTree(constant));
+            }
+        } else if (type.isArrayType() || type.isCollectionLikeType()) {
+            schema.put("type", "array");
+            schema.set("items", schemaOf(mapper, type.getContentType(), visiting));
+        } else if (type.isMapLikeType()) {
+            schema.put("type", "object");
+            schema.set("additionalProperties", schemaOf(mapper, type.getContentType(), visiting));
+        } else if (rawClass != Object.class && !JsonNode.class.isAssignableFrom(rawClass)) {
+            beanSchema(mapper, type, schema, visiting);
+        }
+        // anything else, such as Object or JsonNode, accepts any value and has an empty schema
+        return schema;
+    }
+
+    private static void beanSchema(ObjectMapper mapper, JavaType type, ObjectNode schema, Set<Class<?>> visiting) {
+        schema.put("type", "object");
+        Class<?> rawClass = type.getRawClass();
+        // a recursive type is described down to its first repetition
+        if (!visiting.add(rawClass)) {
+            return;
+        }
+        BeanDescription bean = mapper.getDeserializationConfig().introspect(type);
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode required = mapper.createArrayNode();
+        for (BeanPropertyDefinition property : bean.findProperties()) {
+            if (!property.couldDeserialize()) {
+                continue;
+            }
+            ObjectNode propertySchema = schemaOf(mapper, property.getPrimaryType(), visiting);
+            String description = property.getMetadata().getDescription();
+            if (description != null) {
+                propertySchema.put("description", description);
+            }
+            properties.set(property.getName(), propertySchema);
+            // all the components of a record are required, the properties of a bean only when marked so
+            if (rawClass.isRecord() || property.isRequired()) {
+                required.add(property.getName());
+            }
+        }
+        if (!required.isEmpty()) {
+            schema.set("required", required);
+        }
+        visiting.remove(rawClass);
+    }
+
+    private static boolean isInteger(Class<?> rawClass) {
+        return rawClass == int.class || rawClass == Integer.class
+                || rawClass == long.class || rawClass == Long.class
+                || rawClass == short.class || rawClass == Short.class
+                || rawClass == byte.class || rawClass == Byte.class
+                || rawClass == BigInteger.class;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method that the llm can call, registered with {@link FunctionRegistry.Builder#functions(Object)}.
+ * <p>
+ * The parameters become the properties of the JSON arguments. A parameter is named by {@code @JsonProperty}, or by
+ * its own name when the code is compiled with {@code -parameters}, and described by {@code @JsonPropertyDescription}.
+ *
+ * @author HamaWhite
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LlmFunction {
+
+    /**
+     * The name of the function passed to the llm, the name of the method if empty.
+     *
+     * @return the name of the function.
+     */
+    String name() default "";
+
+    /**
+     * What the function does, which the llm reads to decide when and how to call it.
+     *
+     * @return the description of the function.
+     */
+    String description();
+}
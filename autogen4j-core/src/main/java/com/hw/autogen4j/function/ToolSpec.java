@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.hw.openai.entity.chat.ChatFunction;
+import com.hw.openai.entity.chat.Tool;
+
+import java.io.IOException;
+
+/**
+ * A tool whose JSON form is computed once, when the function is registered, and written verbatim into every request,
+ * rather than serialized again from the schema each time.
+ * <p>
+ * The tool must not be modified after it is created, the JSON form would not follow.
+ *
+ * @author HamaWhite
+ */
+public class ToolSpec extends Tool implements JsonSerializable {
+
+    private final String json;
+
+    ToolSpec(ChatFunction chatFunction, String json) {
+        super(chatFunction);
+        this.json = json;
+    }
+
+    /**
+     * The JSON form of the tool, as sent to the llm.
+     *
+     * @return the JSON string.
+     */
+    public String json() {
+        return json;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeRawValue(json);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serialize(generator, serializers);
+    }
+}
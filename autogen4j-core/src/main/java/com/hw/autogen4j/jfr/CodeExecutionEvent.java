@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The execution of a single code block extracted from a message.
+ *
+ * @author HamaWhite
+ */
+@Name("com.hw.autogen4j.CodeExecution")
+@Label("Code Execution")
+@Description("The execution of a code block")
+@Category({"Autogen4j", "Conversation"})
+@StackTrace(false)
+public final class CodeExecutionEvent extends Event {
+
+    @Label("Language")
+    @Description("The language of the code block")
+    public String language;
+
+    @Label("Code Length")
+    @Description("The number of characters in the code block")
+    public int codeLength;
+
+    @Label("Exit Code")
+    @Description("The exit code of the execution, -1 if it failed to run")
+    public int exitCode;
+
+    @Label("Logs Length")
+    @Description("The number of characters in the output of the execution")
+    public int logsLength;
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call to the llm made by an agent, including the calls whose reply is streamed.
+ *
+ * @author HamaWhite
+ */
+@Name("com.hw.autogen4j.ModelCall")
+@Label("Model Call")
+@Description("A call to the llm")
+@Category({"Autogen4j", "Conversation"})
+@StackTrace(false)
+public final class ModelCallEvent extends Event {
+
+    @Label("Agent")
+    @Description("The agent calling the llm")
+    public String agent;
+
+    @Label("Model")
+    @Description("The requested model")
+    public String model;
+
+    @Label("Stream")
+    @Description("Whether the reply is streamed")
+    public boolean stream;
+
+    @Label("Messages")
+    @Description("The number of messages in the request")
+    public int messages;
+
+    @Label("Prompt Tokens")
+    @Description("The prompt tokens reported by the llm, -1 if unknown")
+    public long promptTokens;
+
+    @Label("Completion Tokens")
+    @Description("The completion tokens reported by the llm, -1 if unknown")
+    public long completionTokens;
+
+    @Label("Reply Length")
+    @Description("The number of characters in the reply, -1 if the call failed")
+    public int replyLength;
+
+    @Label("Success")
+    @Description("Whether the call succeeded")
+    public boolean success;
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A single reply function of an agent, such as the llm reply or the code execution reply, called during a turn.
+ *
+ * @author HamaWhite
+ */
+@Name("com.hw.autogen4j.ReplyFunction")
+@Label("Reply Function")
+@Description("A reply function of an agent")
+@Category({"Autogen4j", "Conversation"})
+@StackTrace(false)
+public final class ReplyFunctionEvent extends Event {
+
+    @Label("Agent")
+    @Description("The agent the reply function is registered on")
+    public String agent;
+
+    @Label("Sender")
+    @Description("The agent the reply is for")
+    public String sender;
+
+    @Label("Function")
+    @Description("The name of the reply function")
+    public String function;
+
+    @Label("Messages")
+    @Description("The number of messages passed to the reply function")
+    public int messages;
+
+    @Label("Terminate")
+    @Description("Whether the reply function produced the final reply")
+    public boolean terminate;
+}
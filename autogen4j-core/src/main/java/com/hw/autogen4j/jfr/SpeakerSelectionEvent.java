@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The selection of the next speaker by a group chat manager, in one round of the group chat.
+ *
+ * @author HamaWhite
+ */
+@Name("com.hw.autogen4j.SpeakerSelection")
+@Label("Speaker Selection")
+@Description("The selection of the next speaker of a group chat")
+@Category({"Autogen4j", "Conversation"})
+@StackTrace(false)
+public final class SpeakerSelectionEvent extends Event {
+
+    @Label("Manager")
+    @Description("The group chat manager")
+    public String manager;
+
+    @Label("Round")
+    @Description("The round of the group chat, starting at 0")
+    public int round;
+
+    @Label("Previous Speaker")
+    @Description("The agent that spoke last")
+    public String previousSpeaker;
+
+    @Label("Speaker")
+    @Description("The selected speaker, null if the selection failed")
+    public String speaker;
+
+    @Label("Agents")
+    @Description("The number of agents in the group chat")
+    public int agents;
+}
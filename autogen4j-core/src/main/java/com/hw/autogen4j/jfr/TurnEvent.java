@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A turn of a conversation, from the moment an agent starts generating its reply to a sender until the reply is
+ * ready, spanning all the reply functions it tries.
+ * <p>
+ * The events of this package are recorded only when enabled in a flight recording, for example with
+ * {@code -XX:StartFlightRecording}; otherwise committing them costs a single check.
+ *
+ * @author HamaWhite
+ */
+@Name("com.hw.autogen4j.Turn")
+@Label("Turn")
+@Description("An agent generating its reply to a sender")
+@Category({"Autogen4j", "Conversation"})
+@StackTrace(false)
+public final class TurnEvent extends Event {
+
+    @Label("Agent")
+    @Description("The agent generating the reply")
+    public String agent;
+
+    @Label("Sender")
+    @Description("The agent the reply is for")
+    public String sender;
+
+    @Label("Messages")
+    @Description("The number of messages in the conversation history")
+    public int messages;
+
+    @Label("Reply Length")
+    @Description("The number of characters in the reply, -1 if there is no reply")
+    public int replyLength;
+}
@@ -0,0 +1,439 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.limit;
+
+import com.google.common.base.Ticker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.hw.autogen4j.util.ConcurrentUtil.scheduler;
+
+/**
+ * Admits the model calls of all the agents sharing it, under the rate limits of an endpoint and an adaptive
+ * concurrency limit.
+ * <p>
+ * A call is admitted when the number of calls in flight is below the concurrency limit, and both the requests per
+ * minute and the tokens per minute buckets have room for it. The waiting calls are admitted in arrival order, and the
+ * wait is non-blocking: {@link #acquire(long)} returns a future completed on admission, from the thread releasing a
+ * permit or from a timer when the buckets refill.
+ * <p>
+ * The concurrency limit follows AIMD (additive increase, multiplicative decrease). It grows by one per window of
+ * successful calls, decreases by 10% when the latency per token exceeds the baseline by the latency tolerance, and
+ * halves when the endpoint rejects a call with HTTP 429, which also empties the buckets. The limit decreases at most
+ * once per round trip: the calls admitted before a decrease reflect the load before it, and don't decrease it again.
+ * The baseline is the lowest latency per token observed, relaxed upward by 1% per call so that it follows a lasting
+ * change of the endpoint.
+ *
+ * @author HamaWhite
+ */
+public class AdmissionController {
+
+    /**
+     * The outcome of an admitted call.
+     */
+    public enum Outcome {
+        /**
+         * the call succeeded, its latency adjusts the concurrency limit.
+         */
+        SUCCESS,
+        /**
+         * the endpoint rejected the call because of rate limiting.
+         */
+        RATE_LIMITED,
+        /**
+         * the call failed for another reason, the concurrency limit is not adjusted.
+         */
+        FAILURE
+    }
+
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private static final double RATE_LIMITED_DECREASE_FACTOR = 0.5;
+
+    private static final double BASELINE_RELAXATION = 1.01;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    private final TokenBucket requestBucket;
+
+    private final TokenBucket tokenBucket;
+
+    private final int minConcurrency;
+
+    private final int maxConcurrency;
+
+    private final double latencyTolerance;
+
+    private final Ticker ticker;
+
+    private double limit;
+
+    private int inFlight;
+
+    private double baselineNanosPerToken = Double.NaN;
+
+    /**
+     * when the limit last decreased, the calls admitted until then don't decrease it again.
+     */
+    private long lastDecreaseNanos;
+
+    private ScheduledFuture<?> wakeUp;
+
+    private long wakeUpNanos;
+
+    private AdmissionController(Builder builder) {
+        this.ticker = builder.ticker;
+        long now = ticker.read();
+        this.requestBucket = builder.requestsPerMinute > 0 ? new TokenBucket(builder.requestsPerMinute, now) : null;
+        this.tokenBucket = builder.tokensPerMinute > 0 ? new TokenBucket(builder.tokensPerMinute, now) : null;
+        this.minConcurrency = builder.minConcurrency;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.latencyTolerance = builder.latencyTolerance;
+        this.limit = Math.max(minConcurrency, Math.min(maxConcurrency, builder.initialConcurrency));
+        this.lastDecreaseNanos = now;
+    }
+
+    /**
+     * Wait for the admission of a call. Cancelling the returned future withdraws the call from the queue.
+     *
+     * @param estimatedTokens the estimated number of tokens of the call, prompt and completion.
+     * @return a future completed with the permit of the call when it is admitted.
+     */
+    public CompletableFuture<Permit> acquire(long estimatedTokens) {
+        Waiter waiter = new Waiter(Math.max(0, estimatedTokens), new CompletableFuture<>());
+        lock.lock();
+        try {
+            waiters.add(waiter);
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        return waiter.future;
+    }
+
+    /**
+     * Admit the waiting calls in arrival order, as long as the limits allow it. The futures are completed outside the
+     * lock, since their callbacks may run arbitrary code.
+     */
+    private void drain() {
+        List<Permit> admitted = new ArrayList<>();
+        lock.lock();
+        try {
+            long now = ticker.read();
+            Waiter head;
+            while ((head = waiters.peek()) != null) {
+                if (head.future.isDone()) {
+                    waiters.poll();
+                    continue;
+                }
+                if (inFlight >= (int) limit) {
+                    break;
+                }
+                long delay = Math.max(requestBucket == null ? 0 : requestBucket.nanosUntil(1, now),
+                        tokenBucket == null ? 0 : tokenBucket.nanosUntil(head.tokens, now));
+                if (delay > 0) {
+                    scheduleWakeUp(now, delay);
+                    break;
+                }
+                if (requestBucket != null) {
+                    requestBucket.tryConsume(1, now);
+                }
+                if (tokenBucket != null) {
+                    tokenBucket.tryConsume(head.tokens, now);
+                }
+                waiters.poll();
+                inFlight++;
+                admitted.add(new Permit(head, now));
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Permit permit : admitted) {
+            if (!permit.waiter.future.complete(permit)) {
+                permit.cancel();
+            }
+        }
+    }
+
+    private void scheduleWakeUp(long now, long delay) {
+        if (wakeUp != null && !wakeUp.isDone() && wakeUpNanos <= now + delay) {
+            return;
+        }
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        wakeUpNanos = now + delay;
+        wakeUp = scheduler().schedule(this::onWakeUp, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void onWakeUp() {
+        lock.lock();
+        try {
+            wakeUp = null;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    private void onRelease(Permit permit, Outcome outcome, long actualTokens, long nowNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            long tokens = actualTokens >= 0 ? actualTokens : permit.waiter.tokens;
+            if (tokenBucket != null) {
+                tokenBucket.adjust(permit.waiter.tokens - tokens);
+            }
+            switch (outcome) {
+                case SUCCESS -> onSuccess(permit, (double) (nowNanos - permit.startNanos) / Math.max(1, tokens),
+                        nowNanos);
+                case RATE_LIMITED -> onRateLimited(permit, nowNanos);
+                default -> {
+                    // a failure says nothing about the load of the endpoint
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    private void onSuccess(Permit permit, double nanosPerToken, long nowNanos) {
+        baselineNanosPerToken = Double.isNaN(baselineNanosPerToken)
+                ? nanosPerToken
+                : Math.min(nanosPerToken, baselineNanosPerToken * BASELINE_RELAXATION);
+        if (nanosPerToken > baselineNanosPerToken * latencyTolerance) {
+            decrease(permit, DECREASE_FACTOR, nowNanos);
+        } else {
+            limit = Math.min(maxConcurrency, limit + 1 / limit);
+        }
+    }
+
+    private void onRateLimited(Permit permit, long nowNanos) {
+        decrease(permit, RATE_LIMITED_DECREASE_FACTOR, nowNanos);
+        if (requestBucket != null) {
+            requestBucket.drain();
+        }
+        if (tokenBucket != null) {
+            tokenBucket.drain();
+        }
+    }
+
+    /**
+     * Decrease the limit, unless the call was admitted before the last decrease: a burst of calls in flight failing
+     * together decreases the limit once.
+     */
+    private void decrease(Permit permit, double factor, long nowNanos) {
+        if (permit.startNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        limit = Math.max(minConcurrency, limit * factor);
+        lastDecreaseNanos = nowNanos;
+    }
+
+    private void onCancel(Permit permit) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (requestBucket != null) {
+                requestBucket.adjust(1);
+            }
+            if (tokenBucket != null) {
+                tokenBucket.adjust(permit.waiter.tokens);
+            }
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * The current concurrency limit.
+     *
+     * @return the maximum number of calls in flight.
+     */
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of admitted calls not released yet.
+     *
+     * @return the number of calls in flight.
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of calls waiting for admission.
+     *
+     * @return the number of waiting calls.
+     */
+    public int queued() {
+        lock.lock();
+        try {
+            return (int) waiters.stream().filter(waiter -> !waiter.future.isDone()).count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Waiter(long tokens, CompletableFuture<Permit> future) {
+    }
+
+    /**
+     * The admission of a call, to release exactly once when the call ends.
+     */
+    public final class Permit {
+
+        private final Waiter waiter;
+
+        private final long startNanos;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Waiter waiter, long startNanos) {
+            this.waiter = waiter;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Release the permit when the call ends, adjusting the concurrency limit from its outcome and latency.
+         *
+         * @param outcome      the outcome of the call.
+         * @param actualTokens the number of tokens the call used, negative if unknown, to correct the estimate.
+         */
+        public void release(Outcome outcome, long actualTokens) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(this, outcome, actualTokens, ticker.read());
+            }
+        }
+
+        /**
+         * Release the permit of a call that was never made, returning its tokens to the buckets.
+         */
+        public void cancel() {
+            if (released.compareAndSet(false, true)) {
+                onCancel(this);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private long requestsPerMinute;
+
+        private long tokensPerMinute;
+
+        private int initialConcurrency = 8;
+
+        private int minConcurrency = 1;
+
+        private int maxConcurrency = 256;
+
+        private double latencyTolerance = 2.0;
+
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {
+        }
+
+        /**
+         * The requests per minute limit of the endpoint, zero or negative means unlimited.
+         *
+         * @param requestsPerMinute the number of requests per minute.
+         * @return the builder.
+         */
+        public Builder requestsPerMinute(long requestsPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+            return this;
+        }
+
+        /**
+         * The tokens per minute limit of the endpoint, zero or negative means unlimited.
+         *
+         * @param tokensPerMinute the number of tokens per minute.
+         * @return the builder.
+         */
+        public Builder tokensPerMinute(long tokensPerMinute) {
+            this.tokensPerMinute = tokensPerMinute;
+            return this;
+        }
+
+        public Builder initialConcurrency(int initialConcurrency) {
+            this.initialConcurrency = initialConcurrency;
+            return this;
+        }
+
+        public Builder minConcurrency(int minConcurrency) {
+            this.minConcurrency = minConcurrency;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * How many times the baseline latency per token a call may take before the concurrency limit decreases.
+         *
+         * @param latencyTolerance the ratio to the baseline latency, greater than one.
+         * @return the builder.
+         */
+        public Builder latencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public AdmissionController build() {
+            return new AdmissionController(this);
+        }
+    }
+}
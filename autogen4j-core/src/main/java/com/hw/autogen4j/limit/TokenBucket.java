@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.limit;
+
+/**
+ * A token bucket refilled continuously at a rate per minute, up to its capacity of one minute of tokens.
+ * <p>
+ * A request larger than the capacity is admitted once the bucket is full, and the tokens it consumes beyond the
+ * balance become a debt repaid by the refill, so that a large request is delayed instead of never admitted.
+ * <p>
+ * The bucket is not thread-safe, it is guarded by the lock of its {@link AdmissionController}.
+ *
+ * @author HamaWhite
+ */
+class TokenBucket {
+
+    private static final double NANOS_PER_MINUTE = 60e9;
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    TokenBucket(long perMinute, long nowNanos) {
+        this.capacity = perMinute;
+        this.tokensPerNano = perMinute / NANOS_PER_MINUTE;
+        this.tokens = perMinute;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Consume tokens if the balance allows it.
+     *
+     * @param amount   the number of tokens to consume.
+     * @param nowNanos the current time.
+     * @return true if the tokens were consumed.
+     */
+    boolean tryConsume(long amount, long nowNanos) {
+        refill(nowNanos);
+        if (tokens < Math.min(amount, capacity)) {
+            return false;
+        }
+        tokens -= amount;
+        return true;
+    }
+
+    /**
+     * The time until the balance allows consuming the given amount.
+     *
+     * @param amount   the number of tokens to consume.
+     * @param nowNanos the current time.
+     * @return the delay in nanoseconds, zero if the tokens can be consumed now.
+     */
+    long nanosUntil(long amount, long nowNanos) {
+        refill(nowNanos);
+        double missing = Math.min(amount, capacity) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerNano);
+    }
+
+    /**
+     * Return tokens consumed in excess, or consume tokens consumed too few, once the actual amount is known.
+     *
+     * @param delta the number of tokens to return, negative to consume.
+     */
+    void adjust(long delta) {
+        tokens = Math.min(capacity, tokens + delta);
+    }
+
+    /**
+     * Empty the bucket, when the endpoint reports that the rate limit is reached.
+     */
+    void drain() {
+        tokens = Math.min(tokens, 0);
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.metrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics kept in process, in the style of a Micrometer registry: a timer or a counter per name and tags, created on
+ * first use.
+ * <p>
+ * A timer keeps a histogram with 8 buckets per power of two, so that its percentiles are within 12.5% of the exact
+ * value, and recording a duration does not allocate.
+ *
+ * @author HamaWhite
+ */
+public class InMemoryMetrics implements Metrics {
+
+    private final Map<MeterId, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<MeterId, LongAdder> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordTime(String name, long nanos, String... tags) {
+        timers.computeIfAbsent(new MeterId(name, List.of(tags)), id -> new Timer()).record(nanos);
+    }
+
+    @Override
+    public void count(String name, long amount, String... tags) {
+        counters.computeIfAbsent(new MeterId(name, List.of(tags)), id -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * The snapshot of a timer.
+     *
+     * @param name the name of the timer.
+     * @param tags the tags of the timer, as alternating keys and values, in the order they were recorded with.
+     * @return the snapshot, empty if nothing was recorded.
+     */
+    public TimerSnapshot timer(String name, String... tags) {
+        Timer timer = timers.get(new MeterId(name, List.of(tags)));
+        return timer != null ? timer.snapshot() : new TimerSnapshot(0, 0, 0, new long[Timer.BUCKETS]);
+    }
+
+    /**
+     * The value of a counter.
+     *
+     * @param name the name of the counter.
+     * @param tags the tags of the counter, as alternating keys and values, in the order they were recorded with.
+     * @return the value, 0 if nothing was recorded.
+     */
+    public long counter(String name, String... tags) {
+        LongAdder counter = counters.get(new MeterId(name, List.of(tags)));
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * The snapshots of all the timers, to export them.
+     *
+     * @return the snapshot of each timer.
+     */
+    public Map<MeterId, TimerSnapshot> timers() {
+        Map<MeterId, TimerSnapshot> snapshots = new ConcurrentHashMap<>();
+        timers.forEach((id, timer) -> snapshots.put(id, timer.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * The values of all the counters, to export them.
+     *
+     * @return the value of each counter.
+     */
+    public Map<MeterId, Long> counters() {
+        Map<MeterId, Long> values = new ConcurrentHashMap<>();
+        counters.forEach((id, counter) -> values.put(id, counter.sum()));
+        return values;
+    }
+
+    /**
+     * The identity of a meter.
+     *
+     * @param name the name of the meter.
+     * @param tags the tags of the meter, as alternating keys and values.
+     */
+    public record MeterId(String name, List<String> tags) {
+    }
+
+    /**
+     * The state of a timer.
+     *
+     * @param count      the number of durations recorded.
+     * @param totalNanos the sum of the durations.
+     * @param maxNanos   the longest duration.
+     * @param buckets    the histogram of the durations.
+     */
+    public record TimerSnapshot(long count, long totalNanos, long maxNanos, long[] buckets) {
+
+        public Duration mean() {
+            return Duration.ofNanos(count == 0 ? 0 : totalNanos / count);
+        }
+
+        public Duration max() {
+            return Duration.ofNanos(maxNanos);
+        }
+
+        /**
+         * The duration below which a fraction of the recorded durations fall.
+         *
+         * @param percentile the fraction, between 0 and 1.
+         * @return the upper bound of the bucket holding the percentile, zero if nothing was recorded.
+         */
+        public Duration percentile(double percentile) {
+            long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Duration.ofNanos(Math.min(maxNanos, Timer.upperBound(i)));
+                }
+            }
+            return Duration.ZERO;
+        }
+    }
+
+    private static final class Timer {
+
+        private static final int SUB_BUCKET_BITS = 3;
+
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private void record(long nanos) {
+            long value = Math.max(0, nanos);
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+            buckets.incrementAndGet(bucket(value));
+        }
+
+        /**
+         * The bucket of a value: the position of its highest bit, then its next 3 bits.
+         */
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * The largest value of a bucket.
+         */
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            long lowerBound = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+            return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        private TimerSnapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new TimerSnapshot(count.sum(), total.sum(), max.get(), counts);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.metrics;
+
+/**
+ * The metrics SPI of the framework: the agents, the group chats and the code execution record their timings and counts
+ * through it, tagged with the agent names, the models and the outcomes.
+ * <p>
+ * The meters are identified by a name and tags, as in Micrometer, so that an adapter to a metrics library maps each
+ * call to a timer or a counter of its registry. The metrics are recorded to {@link #global()}, a no-op by default;
+ * {@link InMemoryMetrics} keeps them in process, with latency histograms.
+ *
+ * @author HamaWhite
+ */
+public interface Metrics {
+
+    /**
+     * latency of the llm calls, tagged with agent, model and outcome.
+     */
+    String LLM_LATENCY = "autogen4j.llm.latency";
+
+    /**
+     * tokens of the llm calls, tagged with agent, model and type (prompt or completion).
+     */
+    String LLM_TOKENS = "autogen4j.llm.tokens";
+
+    /**
+     * lookups of the reply cache, tagged with agent and result (hit or miss).
+     */
+    String REPLY_CACHE = "autogen4j.reply.cache";
+
+    /**
+     * lookups of the function result caches, tagged with function and result (hit or miss).
+     */
+    String FUNCTION_CACHE = "autogen4j.function.cache";
+
+    /**
+     * latency of the reply functions, tagged with agent and function.
+     */
+    String REPLY_FUNCTION_LATENCY = "autogen4j.reply.function.latency";
+
+    /**
+     * latency of the speaker selection of a group chat, tagged with manager.
+     */
+    String SELECT_SPEAKER_LATENCY = "autogen4j.groupchat.select.speaker.latency";
+
+    /**
+     * duration of the code executions, tagged with language and exit code.
+     */
+    String CODE_EXECUTION_LATENCY = "autogen4j.code.execution.latency";
+
+    /**
+     * Record the duration of an operation.
+     *
+     * @param name  the name of the timer.
+     * @param nanos the duration in nanoseconds.
+     * @param tags  the tags of the timer, as alternating keys and values.
+     */
+    void recordTime(String name, long nanos, String... tags);
+
+    /**
+     * Add to a counter.
+     *
+     * @param name   the name of the counter.
+     * @param amount the amount to add.
+     * @param tags   the tags of the counter, as alternating keys and values.
+     */
+    void count(String name, long amount, String... tags);
+
+    /**
+     * Metrics recording nothing.
+     *
+     * @return the no-op metrics.
+     */
+    static Metrics noop() {
+        return NoopMetrics.INSTANCE;
+    }
+
+    /**
+     * The metrics the framework records to.
+     *
+     * @return the global metrics, a no-op unless set.
+     */
+    static Metrics global() {
+        return GlobalMetrics.current;
+    }
+
+    /**
+     * Set the metrics the framework records to.
+     *
+     * @param metrics the metrics, null to record nothing.
+     */
+    static void setGlobal(Metrics metrics) {
+        GlobalMetrics.current = metrics != null ? metrics : NoopMetrics.INSTANCE;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.entity.CodeBlock;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static com.hw.autogen4j.util.CodeUtil.EXECUTABLE_LANGUAGES;
+import static com.hw.autogen4j.util.CodeUtil.extractCode;
+
+/**
+ * Decides whether the reply of a cheaper model is good enough, or the request escalates to the next model of a
+ * {@link CascadingChatModel}.
+ *
+ * @author HamaWhite
+ */
+@FunctionalInterface
+public interface AcceptanceCheck {
+
+    /**
+     * Check a reply.
+     *
+     * @param request the request answered.
+     * @param reply   the reply of the model.
+     * @return true to accept the reply, false to escalate.
+     */
+    boolean accept(ChatCompletion request, ChatMessage reply);
+
+    /**
+     * Accept only the replies accepted by both checks.
+     *
+     * @param other the other check.
+     * @return the combined check.
+     */
+    default AcceptanceCheck and(AcceptanceCheck other) {
+        return (request, reply) -> accept(request, reply) && other.accept(request, reply);
+    }
+
+    /**
+     * Accept a reply with some content or tool calls.
+     *
+     * @return the check.
+     */
+    static AcceptanceCheck nonEmpty() {
+        return (request, reply) -> StringUtils.isNotBlank(reply.getContent())
+                || (reply.getToolCalls() != null && !reply.getToolCalls().isEmpty());
+    }
+
+    /**
+     * Accept a reply whose code blocks are all closed, and written in a language the agents can execute.
+     *
+     * @return the check.
+     */
+    static AcceptanceCheck wellFormedCode() {
+        return (request, reply) -> {
+            String content = StringUtils.defaultString(reply.getContent());
+            if (StringUtils.countMatches(content, "```") % 2 != 0) {
+                return false;
+            }
+            List<CodeBlock> codeBlocks = extractCode(content);
+            return codeBlocks.stream().allMatch(codeBlock -> codeBlock.language() != null
+                    && EXECUTABLE_LANGUAGES.contains(codeBlock.language().toLowerCase()));
+        };
+    }
+
+    /**
+     * Accept the replies accepted by a validator.
+     *
+     * @param validator the validator of the replies.
+     * @return the check.
+     */
+    static AcceptanceCheck of(Predicate<ChatMessage> validator) {
+        return (request, reply) -> validator.test(reply);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.reactivex.Flowable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hw.autogen4j.util.ChatCompletionUtil.copyOf;
+
+/**
+ * A chat model trying cheaper models first, and escalating to the next tier only when the reply fails an
+ * {@link AcceptanceCheck}, so that the simple turns, such as a confirmation or a TERMINATE, do not pay for the
+ * strongest model.
+ * <p>
+ * The reply of the last tier is always accepted. A tier failing with an exception escalates as well, while an
+ * exception of the acceptance check is thrown to the caller instead of being taken for a failed tier. The calls, the
+ * accepted replies and the latency of every tier are recorded in {@link #stats()}. A streamed call streams only from
+ * the last tier; a reply accepted from a cheaper tier is emitted as a single chunk.
+ *
+ * @author HamaWhite
+ */
+public class CascadingChatModel implements ChatModel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CascadingChatModel.class);
+
+    private final List<Tier> tiers;
+
+    private final AcceptanceCheck acceptanceCheck;
+
+    private CascadingChatModel(Builder builder) {
+        this.tiers = List.copyOf(builder.tiers);
+        this.acceptanceCheck = builder.acceptanceCheck;
+    }
+
+    @Override
+    public ChatCompletionResp complete(ChatCompletion request) {
+        for (int i = 0; i < tiers.size() - 1; i++) {
+            ChatCompletionResp response = tryTier(tiers.get(i), request);
+            if (response != null) {
+                return response;
+            }
+        }
+        Tier last = tiers.get(tiers.size() - 1);
+        long start = System.nanoTime();
+        try {
+            ChatCompletionResp response = last.model.complete(last.request(request));
+            last.record(System.nanoTime() - start, true);
+            return response;
+        } catch (RuntimeException e) {
+            last.failures.increment();
+            last.record(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public Flowable<ChatCompletionChunk> stream(ChatCompletion request) {
+        return Flowable.defer(() -> {
+            for (int i = 0; i < tiers.size() - 1; i++) {
+                ChatCompletionResp response = tryTier(tiers.get(i), request);
+                if (response != null) {
+                    // a model answering with the accepted response, streamed as a single chunk
+                    ChatModel accepted = acceptedRequest -> response;
+                    return accepted.stream(request);
+                }
+            }
+            Tier last = tiers.get(tiers.size() - 1);
+            long start = System.nanoTime();
+            return last.model.stream(last.request(request))
+                    .doOnComplete(() -> last.record(System.nanoTime() - start, true))
+                    .doOnError(e -> {
+                        last.failures.increment();
+                        last.record(System.nanoTime() - start, false);
+                    });
+        });
+    }
+
+    /**
+     * Call a tier below the last one.
+     *
+     * @return the response if its reply is accepted, null to escalate.
+     */
+    private ChatCompletionResp tryTier(Tier tier, ChatCompletion request) {
+        long start = System.nanoTime();
+        ChatCompletionResp response;
+        try {
+            response = tier.model.complete(tier.request(request));
+        } catch (RuntimeException e) {
+            tier.failures.increment();
+            tier.record(System.nanoTime() - start, false);
+            LOG.warn("Model tier {} failed, escalating to the next tier: {}", tier.name, e.toString());
+            return null;
+        }
+        long nanos = System.nanoTime() - start;
+        ChatMessage reply = response.getChoices().get(0).getMessage();
+        boolean accepted = acceptanceCheck.accept(request, reply);
+        tier.record(nanos, accepted);
+        return accepted ? response : null;
+    }
+
+    /**
+     * The statistics of the tiers.
+     *
+     * @return the statistics of each tier, from the cheapest to the strongest.
+     */
+    public List<TierStats> stats() {
+        return tiers.stream().map(Tier::stats).toList();
+    }
+
+    /**
+     * The statistics of a tier.
+     *
+     * @param name        the name of the tier.
+     * @param calls       the number of calls to the tier.
+     * @param accepted    the number of replies accepted, without escalating.
+     * @param failures    the number of calls failed with an exception.
+     * @param meanLatency the mean latency of the calls, zero before the first call.
+     */
+    public record TierStats(String name, long calls, long accepted, long failures, Duration meanLatency) {
+
+        /**
+         * The fraction of the calls answered by the tier.
+         *
+         * @return the hit rate, between 0 and 1.
+         */
+        public double hitRate() {
+            return calls == 0 ? 0 : (double) accepted / calls;
+        }
+    }
+
+    private static final class Tier {
+
+        private final String name;
+
+        private final ChatModel model;
+
+        /**
+         * the model name replacing the one of the request, null to keep it.
+         */
+        private final String modelName;
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder accepted = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private Tier(String name, ChatModel model, String modelName) {
+            this.name = name;
+            this.model = model;
+            this.modelName = modelName;
+        }
+
+        private ChatCompletion request(ChatCompletion request) {
+            if (modelName == null || modelName.equals(request.getModel())) {
+                return request;
+            }
+            ChatCompletion copy = copyOf(request, request.getMessages());
+            copy.setModel(modelName);
+            return copy;
+        }
+
+        private void record(long nanos, boolean accept) {
+            calls.increment();
+            totalNanos.add(nanos);
+            if (accept) {
+                accepted.increment();
+            }
+        }
+
+        private TierStats stats() {
+            long count = calls.sum();
+            return new TierStats(name, count, accepted.sum(), failures.sum(),
+                    Duration.ofNanos(count == 0 ? 0 : totalNanos.sum() / count));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private final List<Tier> tiers = new ArrayList<>();
+
+        private AcceptanceCheck acceptanceCheck = AcceptanceCheck.nonEmpty();
+
+        private Builder() {
+        }
+
+        /**
+         * Add a tier calling a model under another model name, for example gpt-3.5-turbo on the endpoint of gpt-4.
+         * The tiers are tried in the order they are added, from the cheapest to the strongest.
+         *
+         * @param modelName the model name of the requests to the tier, null to keep the one of the request.
+         * @param model     the model answering the tier.
+         * @return the builder.
+         */
+        public Builder tier(String modelName, ChatModel model) {
+            tiers.add(new Tier(modelName != null ? modelName : "default", model, modelName));
+            return this;
+        }
+
+        /**
+         * The check accepting the replies of the tiers below the last one, non-empty replies by default.
+         *
+         * @param acceptanceCheck the acceptance check, null to keep the default.
+         * @return the builder.
+         */
+        public Builder acceptanceCheck(AcceptanceCheck acceptanceCheck) {
+            this.acceptanceCheck = acceptanceCheck != null ? acceptanceCheck : AcceptanceCheck.nonEmpty();
+            return this;
+        }
+
+        public CascadingChatModel build() {
+            if (tiers.isEmpty()) {
+                throw new IllegalArgumentException("CascadingChatModel requires at least one tier.");
+            }
+            return new CascadingChatModel(this);
+        }
+    }
+}
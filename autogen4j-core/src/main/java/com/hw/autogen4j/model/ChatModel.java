@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.openai.entity.chat.ChatChoice;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+
+import io.reactivex.Flowable;
+
+/**
+ * A chat completion backend, which the agents call to generate their llm replies.
+ * <p>
+ * The requests and responses use the OpenAI chat completion entities, an implementation for another provider
+ * translates them. {@link OpenAiChatModel} calls the OpenAI API, {@link StubChatModel} answers in process, for tests
+ * and benchmarks that must not depend on the network.
+ *
+ * @author HamaWhite
+ */
+public interface ChatModel {
+
+    /**
+     * Generate a chat completion, blocking until it is complete.
+     *
+     * @param request the chat completion request.
+     * @return the chat completion response.
+     */
+    ChatCompletionResp complete(ChatCompletion request);
+
+    /**
+     * Generate a chat completion as a stream of chunks. Cancelling the subscription cancels the generation.
+     * <p>
+     * The default implementation emits the complete response as a single chunk.
+     *
+     * @param request the chat completion request.
+     * @return the stream of chunks.
+     */
+    default Flowable<ChatCompletionChunk> stream(ChatCompletion request) {
+        return Flowable.fromCallable(() -> toChunk(complete(request)));
+    }
+
+    private static ChatCompletionChunk toChunk(ChatCompletionResp response) {
+        ChatCompletionChunk chunk = new ChatCompletionChunk();
+        chunk.setId(response.getId());
+        chunk.setCreated(response.getCreated());
+        chunk.setModel(response.getModel());
+        chunk.setChoices(response.getChoices().stream()
+                .map(choice -> {
+                    ChatChoice delta = new ChatChoice();
+                    delta.setIndex(choice.getIndex());
+                    delta.setMessage(choice.getMessage());
+                    delta.setFinishReason(choice.getFinishReason());
+                    return delta;
+                })
+                .toList());
+        return chunk;
+    }
+}
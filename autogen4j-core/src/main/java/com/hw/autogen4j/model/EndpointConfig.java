@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.openai.common.OpenaiApiType;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The configuration of an OpenAI endpoint, which identifies the client shared by the agents using the endpoint in
+ * {@link OpenAiClientRegistry}.
+ * <p>
+ * A null field falls back to the environment variable read by {@code OpenAiClient}, such as OPENAI_API_KEY or
+ * OPENAI_API_BASE.
+ *
+ * @author HamaWhite
+ */
+@Value
+@Builder(toBuilder = true)
+public class EndpointConfig {
+
+    /**
+     * the base url of the API.
+     */
+    String apiBase;
+
+    /**
+     * the API key.
+     */
+    String apiKey;
+
+    /**
+     * the type of the API, OpenAI or Azure.
+     */
+    OpenaiApiType apiType;
+
+    /**
+     * the version of the API, required by Azure.
+     */
+    String apiVersion;
+
+    /**
+     * the organization of the account.
+     */
+    String organization;
+
+    /**
+     * the http proxy, as host:port.
+     */
+    String proxy;
+
+    String proxyUsername;
+
+    String proxyPassword;
+
+    /**
+     * the timeout of a request in seconds.
+     */
+    @Builder.Default
+    long requestTimeout = 60;
+
+    @Override
+    public String toString() {
+        // the credentials are left out, the config ends up in logs
+        return "EndpointConfig(apiBase=%s, apiType=%s, apiVersion=%s, organization=%s, proxy=%s, requestTimeout=%d)"
+                .formatted(apiBase, apiType, apiVersion, organization, proxy, requestTimeout);
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.reactivex.Flowable;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static com.hw.autogen4j.util.ConcurrentUtil.newThreadFactory;
+import static com.hw.autogen4j.util.ConcurrentUtil.scheduler;
+import static com.hw.autogen4j.util.ConcurrentUtil.unwrap;
+
+/**
+ * A chat model hedging its slow calls: when a call has not answered after a percentile of the recent latencies, a
+ * duplicate is sent to the same or an alternate model, the first answer wins and the other call is cancelled.
+ * <p>
+ * The call itself runs on the calling thread, which is interrupted when the hedge wins; only the hedges run on the
+ * executor, by default a shared one running at most {@link #DEFAULT_HEDGE_THREADS} of them.
+ * <p>
+ * Only idempotent requests may be hedged, by default those at temperature 0, such as the speaker selection of a group
+ * chat. The hedges are paid from a budget refilled by a fraction of the calls, so that the extra load stays below that
+ * fraction; {@link #requests()}, {@link #hedges()} and {@link #hedgeWins()} measure it. Streamed calls are not hedged,
+ * since their chunks are delivered as they arrive.
+ *
+ * @author HamaWhite
+ */
+public class HedgingChatModel implements ChatModel {
+
+    /**
+     * The maximum number of hedges the default executor runs at the same time, a call is not hedged when none of its
+     * threads is free.
+     */
+    public static final int DEFAULT_HEDGE_THREADS = 16;
+
+    private static final Logger LOG = LoggerFactory.getLogger(HedgingChatModel.class);
+
+    /**
+     * Lazily created, shared executor running the hedges, whose threads are interrupted to cancel the losers.
+     */
+    private static final class ExecutorHolder {
+
+        private static final ExecutorService INSTANCE = new ThreadPoolExecutor(0, DEFAULT_HEDGE_THREADS,
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), newThreadFactory("autogen4j-hedge-"));
+    }
+
+    private final ChatModel model;
+
+    private final ChatModel alternateModel;
+
+    private final Predicate<ChatCompletion> hedgeable;
+
+    private final double percentile;
+
+    private final long minDelayNanos;
+
+    private final int minSamples;
+
+    private final double budgetRatio;
+
+    private final double maxBudget;
+
+    private final ExecutorService executor;
+
+    private final LatencyWindow latencies;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    private double budget;
+
+    private HedgingChatModel(Builder builder) {
+        this.model = builder.model;
+        this.alternateModel = builder.alternateModel != null ? builder.alternateModel : builder.model;
+        this.hedgeable = builder.hedgeable;
+        this.percentile = builder.percentile;
+        this.minDelayNanos = builder.minDelay.toNanos();
+        this.minSamples = builder.minSamples;
+        this.budgetRatio = builder.budgetRatio;
+        this.maxBudget = builder.maxBudget;
+        this.executor = builder.executor != null ? builder.executor : ExecutorHolder.INSTANCE;
+        this.latencies = new LatencyWindow(builder.windowSize);
+    }
+
+    @Override
+    public ChatCompletionResp complete(ChatCompletion request) {
+        if (!hedgeable.test(request)) {
+            return model.complete(request);
+        }
+        requests.incrementAndGet();
+        deposit();
+
+        HedgedCall call = new HedgedCall(request);
+        long delay = hedgeDelayNanos();
+        ScheduledFuture<?> timer = delay >= 0 ? scheduler().schedule(call::hedge, delay, TimeUnit.NANOSECONDS) : null;
+        try {
+            return call.run();
+        } finally {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            call.cancelHedge();
+        }
+    }
+
+    @Override
+    public Flowable<ChatCompletionChunk> stream(ChatCompletion request) {
+        return model.stream(request);
+    }
+
+    /**
+     * A hedgeable call: the primary attempt runs on the calling thread, and the hedge, if any, on the executor. The
+     * first answer wins, a losing hedge is cancelled, and a losing primary is interrupted.
+     */
+    private final class HedgedCall {
+
+        private final ChatCompletion request;
+
+        private final Thread caller = Thread.currentThread();
+
+        private final CompletableFuture<ChatCompletionResp> winner = new CompletableFuture<>();
+
+        /**
+         * the attempts that may still answer, guarded by this.
+         */
+        private int pending = 1;
+
+        private boolean primaryRunning = true;
+
+        private boolean primaryInterrupted;
+
+        private Future<?> hedge;
+
+        private HedgedCall(ChatCompletion request) {
+            this.request = request;
+        }
+
+        private ChatCompletionResp run() {
+            long start = System.nanoTime();
+            try {
+                winner.complete(model.complete(request));
+            } catch (Throwable t) {
+                failed(t);
+            } finally {
+                finishPrimary();
+            }
+            try {
+                ChatCompletionResp response = winner.get();
+                // the latency of the primary call: its own when it wins, and its elapsed time when it is interrupted
+                // because a hedge won, so that the slow primary calls keep raising the percentile the hedges are
+                // sent at.
+                latencies.record(System.nanoTime() - start);
+                return response;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Autogen4jException("Interrupted while waiting for the hedged model call.", e);
+            } catch (ExecutionException e) {
+                throw unwrap(e.getCause());
+            }
+        }
+
+        /**
+         * Send the hedge, once the delay has expired, unless the request is decided or the budget is spent.
+         */
+        private synchronized void hedge() {
+            // a primary that has failed already leaves no call for a hedge to race
+            if (winner.isDone() || !withdraw()) {
+                return;
+            }
+            try {
+                hedge = executor.submit(this::runHedge);
+            } catch (RejectedExecutionException e) {
+                refund();
+                LOG.debug("No thread is free to hedge the model call.");
+                return;
+            }
+            pending++;
+            hedges.incrementAndGet();
+        }
+
+        private void runHedge() {
+            try {
+                if (winner.complete(alternateModel.complete(request))) {
+                    hedgeWins.incrementAndGet();
+                    interruptPrimary();
+                }
+            } catch (Throwable t) {
+                failed(t);
+            }
+        }
+
+        /**
+         * The request fails only when no attempt is left that may still answer.
+         */
+        private synchronized void failed(Throwable t) {
+            if (--pending == 0) {
+                winner.completeExceptionally(t);
+            }
+        }
+
+        private synchronized void interruptPrimary() {
+            if (primaryRunning) {
+                primaryInterrupted = true;
+                caller.interrupt();
+            }
+        }
+
+        private synchronized void finishPrimary() {
+            primaryRunning = false;
+            if (primaryInterrupted) {
+                // the interrupt cancelling the primary attempt does not leak to the caller
+                Thread.interrupted();
+            }
+        }
+
+        private synchronized void cancelHedge() {
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The delay after which a call is hedged, negative while too few latencies are known to estimate it.
+     */
+    private long hedgeDelayNanos() {
+        if (latencies.size() < minSamples) {
+            return -1;
+        }
+        return Math.max(minDelayNanos, latencies.percentile(percentile));
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(maxBudget, budget + budgetRatio);
+    }
+
+    private synchronized void refund() {
+        budget = Math.min(maxBudget, budget + 1);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    /**
+     * The current hedging delay.
+     *
+     * @return the delay after which a call is hedged, or null while too few latencies are known to estimate it.
+     */
+    public Duration hedgeDelay() {
+        long delay = hedgeDelayNanos();
+        return delay < 0 ? null : Duration.ofNanos(delay);
+    }
+
+    /**
+     * The number of hedgeable calls.
+     *
+     * @return the number of calls.
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * The number of duplicate calls sent.
+     *
+     * @return the number of hedges.
+     */
+    public long hedges() {
+        return hedges.get();
+    }
+
+    /**
+     * The number of hedges that answered before the call they duplicated.
+     *
+     * @return the number of winning hedges.
+     */
+    public long hedgeWins() {
+        return hedgeWins.get();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private ChatModel model;
+
+        private ChatModel alternateModel;
+
+        private Predicate<ChatCompletion> hedgeable = request -> request.getTemperature() == 0;
+
+        private double percentile = 0.95;
+
+        private Duration minDelay = Duration.ofMillis(10);
+
+        private int minSamples = 20;
+
+        private int windowSize = 256;
+
+        private double budgetRatio = 0.05;
+
+        private double maxBudget = 10;
+
+        private ExecutorService executor;
+
+        private Builder() {
+        }
+
+        /**
+         * The model receiving the calls.
+         *
+         * @param model the primary model.
+         * @return the builder.
+         */
+        public Builder model(ChatModel model) {
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * The model receiving the hedges, for example another deployment of the same model. The primary model by
+         * default.
+         *
+         * @param alternateModel the model receiving the duplicate calls.
+         * @return the builder.
+         */
+        public Builder alternateModel(ChatModel alternateModel) {
+            this.alternateModel = alternateModel;
+            return this;
+        }
+
+        /**
+         * Which requests are idempotent and may be hedged, those at temperature 0 by default.
+         *
+         * @param hedgeable the predicate selecting the requests to hedge.
+         * @return the builder.
+         */
+        public Builder hedgeable(Predicate<ChatCompletion> hedgeable) {
+            this.hedgeable = hedgeable;
+            return this;
+        }
+
+        /**
+         * The percentile of the recent latencies after which a call is hedged, 0.95 by default.
+         *
+         * @param percentile the percentile, between 0 and 1.
+         * @return the builder.
+         */
+        public Builder percentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        public Builder minDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        /**
+         * The number of latencies to observe before hedging.
+         *
+         * @param minSamples the number of calls.
+         * @return the builder.
+         */
+        public Builder minSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        public Builder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * The fraction of the calls that may be hedged, which bounds the extra load, 0.05 by default.
+         *
+         * @param budgetRatio the maximum ratio of hedges to calls.
+         * @return the builder.
+         */
+        public Builder budgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+            return this;
+        }
+
+        /**
+         * The number of hedges the unused budget may accumulate to, which bounds a burst of hedges.
+         *
+         * @param maxBudget the maximum number of hedges in a burst.
+         * @return the builder.
+         */
+        public Builder maxBudget(double maxBudget) {
+            this.maxBudget = maxBudget;
+            return this;
+        }
+
+        /**
+         * The executor running the hedges, whose threads are interrupted to cancel the losing hedges. A call is not
+         * hedged when the executor rejects the hedge. By default, a shared executor running at most
+         * {@link #DEFAULT_HEDGE_THREADS} hedges.
+         *
+         * @param executor the executor of the hedges.
+         * @return the builder.
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public HedgingChatModel build() {
+            return new HedgingChatModel(this);
+        }
+    }
+}
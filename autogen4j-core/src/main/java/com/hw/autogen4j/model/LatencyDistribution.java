@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * A distribution of latencies, sampled by {@link StubChatModel} to simulate the response time of a model.
+ * <p>
+ * The distributions created by the factory methods draw from a seeded generator, so a single-threaded run samples the
+ * same sequence of latencies every time.
+ *
+ * @author HamaWhite
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * Sample a latency.
+     *
+     * @return the latency in nanoseconds, never negative.
+     */
+    long sampleNanos();
+
+    /**
+     * No latency at all, to measure the overhead of the framework alone.
+     *
+     * @return the distribution.
+     */
+    static LatencyDistribution none() {
+        return () -> 0;
+    }
+
+    /**
+     * The same latency every time.
+     *
+     * @param latency the latency.
+     * @return the distribution.
+     */
+    static LatencyDistribution fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return () -> nanos;
+    }
+
+    /**
+     * Latencies uniformly distributed between two bounds.
+     *
+     * @param min  the lower bound, inclusive.
+     * @param max  the upper bound, exclusive.
+     * @param seed the seed of the generator.
+     * @return the distribution.
+     */
+    static LatencyDistribution uniform(Duration min, Duration max, long seed) {
+        Random random = new Random(seed);
+        long minNanos = min.toNanos();
+        double rangeNanos = (double) max.toNanos() - minNanos;
+        return () -> minNanos + (long) (random.nextDouble() * rangeNanos);
+    }
+
+    /**
+     * Normally distributed latencies, truncated at zero.
+     *
+     * @param mean   the mean latency.
+     * @param stdDev the standard deviation.
+     * @param seed   the seed of the generator.
+     * @return the distribution.
+     */
+    static LatencyDistribution normal(Duration mean, Duration stdDev, long seed) {
+        Random random = new Random(seed);
+        long meanNanos = mean.toNanos();
+        long stdDevNanos = stdDev.toNanos();
+        return () -> Math.max(0, meanNanos + (long) (random.nextGaussian() * stdDevNanos));
+    }
+
+    /**
+     * Log-normally distributed latencies, whose long right tail matches the response times of hosted models.
+     *
+     * @param median the median latency.
+     * @param sigma  the standard deviation of the logarithm of the latency, 0.5 gives a p99 about 3.2 times the median.
+     * @param seed   the seed of the generator.
+     * @return the distribution.
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma, long seed) {
+        Random random = new Random(seed);
+        double mu = Math.log(median.toNanos());
+        return () -> (long) Math.exp(mu + sigma * random.nextGaussian());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import java.util.Arrays;
+
+/**
+ * The latencies of the most recent calls, to estimate a percentile of the latency of a model.
+ * <p>
+ * The samples are kept in a ring buffer, and sorted again at most once every {@link #RESORT_INTERVAL} samples, so that
+ * reading a percentile on every call stays cheap.
+ *
+ * @author HamaWhite
+ */
+final class LatencyWindow {
+
+    private static final int RESORT_INTERVAL = 16;
+
+    private final long[] samples;
+
+    private long[] sorted = new long[0];
+
+    private int count;
+
+    private int next;
+
+    private int sinceSort;
+
+    LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sinceSort++;
+    }
+
+    /**
+     * The latency below which the given fraction of the recent calls completed.
+     *
+     * @param percentile the fraction of calls, between 0 and 1.
+     * @return the latency in nanoseconds, or -1 if no call was recorded.
+     */
+    synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        if (sorted.length != count || sinceSort >= RESORT_INTERVAL) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceSort = 0;
+        }
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    synchronized int size() {
+        return count;
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.util.HttpErrorUtil;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.reactivex.Flowable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A chat model spreading its calls across several equivalent deployments, so that their throughput adds up.
+ * <p>
+ * Each call goes to the better of two deployments picked at random (power of two choices), scored by their latency,
+ * their calls in flight and their error rate. The latency is a peak-sensitive moving average: a slower call raises it
+ * at once, then it decays over time toward the faster calls, so that a deployment slowing down is avoided quickly, and
+ * a deployment avoided after a slow call is tried again later.
+ * <p>
+ * A deployment failing several calls in a row is ejected for a while, longer each time it is ejected again. When all
+ * the deployments are ejected, the calls go to all of them rather than failing. A failed call is not sent to another
+ * deployment here; a {@link RetryingChatModel} around this model retries it, most likely on another deployment.
+ *
+ * @author HamaWhite
+ */
+public class LoadBalancedChatModel implements ChatModel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadBalancedChatModel.class);
+
+    /**
+     * the weight of a new sample in the moving average of the error rate.
+     */
+    private static final double DECAY = 0.2;
+
+    /**
+     * the lowest success rate used in the score, so that a failing deployment is not scored infinitely bad.
+     */
+    private static final double MIN_SUCCESS_RATE = 0.05;
+
+    private final List<Backend> backends;
+
+    private final int ejectionThreshold;
+
+    private final long baseEjectionNanos;
+
+    private final long maxEjectionNanos;
+
+    private final double decayNanos;
+
+    private LoadBalancedChatModel(Builder builder) {
+        this.backends = List.copyOf(builder.backends);
+        this.ejectionThreshold = builder.ejectionThreshold;
+        this.baseEjectionNanos = builder.baseEjection.toNanos();
+        this.maxEjectionNanos = builder.maxEjection.toNanos();
+        this.decayNanos = builder.decayTime.toNanos();
+    }
+
+    @Override
+    public ChatCompletionResp complete(ChatCompletion request) {
+        Backend backend = select();
+        backend.outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            ChatCompletionResp response = backend.model.complete(request);
+            backend.onSuccess(start, System.nanoTime(), decayNanos);
+            return response;
+        } catch (RuntimeException e) {
+            onFailure(backend, e);
+            throw e;
+        } finally {
+            backend.outstanding.decrementAndGet();
+        }
+    }
+
+    @Override
+    public Flowable<ChatCompletionChunk> stream(ChatCompletion request) {
+        return Flowable.defer(() -> {
+            Backend backend = select();
+            backend.outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            AtomicBoolean done = new AtomicBoolean();
+            Runnable release = () -> {
+                if (done.compareAndSet(false, true)) {
+                    backend.outstanding.decrementAndGet();
+                }
+            };
+            return backend.model.stream(request)
+                    .doOnNext(chunk -> {
+                        // the latency of a stream is the time to its first chunk
+                        if (first.compareAndSet(true, false)) {
+                            backend.onSuccess(start, System.nanoTime(), decayNanos);
+                        }
+                    })
+                    .doOnError(e -> {
+                        onFailure(backend, e);
+                        release.run();
+                    })
+                    .doOnComplete(release::run)
+                    .doOnCancel(release::run);
+        });
+    }
+
+    /**
+     * Pick the better of two random healthy deployments.
+     */
+    private Backend select() {
+        long now = System.nanoTime();
+        List<Backend> healthy = new ArrayList<>(backends.size());
+        for (Backend backend : backends) {
+            if (!backend.isEjected(now)) {
+                healthy.add(backend);
+            }
+        }
+        List<Backend> candidates = healthy.isEmpty() ? backends : healthy;
+        int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Backend a = candidates.get(first);
+        Backend b = candidates.get(second);
+        return a.score(now, decayNanos) <= b.score(now, decayNanos) ? a : b;
+    }
+
+    private void onFailure(Backend backend, Throwable failure) {
+        if (!HttpErrorUtil.isRetryable(failure)) {
+            // the deployment answered, the request itself is wrong
+            return;
+        }
+        long ejection = backend.onFailure(ejectionThreshold, baseEjectionNanos, maxEjectionNanos);
+        if (ejection > 0) {
+            LOG.warn("Deployment {} ejected for {} ms after {} consecutive failures.", backend.name,
+                    ejection / 1_000_000, ejectionThreshold);
+        }
+    }
+
+    /**
+     * The live statistics of the deployments.
+     *
+     * @return the statistics of each deployment, in the order they were added.
+     */
+    public List<BackendStats> stats() {
+        long now = System.nanoTime();
+        return backends.stream().map(backend -> backend.stats(now)).toList();
+    }
+
+    /**
+     * The live statistics of a deployment.
+     *
+     * @param name        the name of the deployment.
+     * @param outstanding the number of calls in flight.
+     * @param latency     the moving average of the latency, null before the first call.
+     * @param errorRate   the moving average of the error rate.
+     * @param ejected     whether the deployment is currently ejected.
+     */
+    public record BackendStats(String name, int outstanding, Duration latency, double errorRate, boolean ejected) {
+    }
+
+    private static final class Backend {
+
+        private final String name;
+
+        private final ChatModel model;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private double latencyNanos = Double.NaN;
+
+        private long lastUpdateNanos;
+
+        private double errorRate;
+
+        private int consecutiveFailures;
+
+        private int ejections;
+
+        /**
+         * the end of the current ejection, in the past when the deployment is not ejected.
+         */
+        private long ejectedUntilNanos = System.nanoTime();
+
+        private Backend(String name, ChatModel model) {
+            this.name = name;
+            this.model = model;
+        }
+
+        /**
+         * The expected cost of a call, lower is better. A deployment without any latency yet scores best, so that
+         * it is tried.
+         */
+        private synchronized double score(long now, double decayNanos) {
+            double latency = Double.isNaN(latencyNanos) ? 0 : latencyNanos * weight(now, decayNanos);
+            return latency * (outstanding.get() + 1) / Math.max(MIN_SUCCESS_RATE, 1 - errorRate);
+        }
+
+        private synchronized void onSuccess(long start, long end, double decayNanos) {
+            long nanos = end - start;
+            if (Double.isNaN(latencyNanos) || nanos > latencyNanos) {
+                latencyNanos = nanos;
+            } else {
+                double weight = weight(end, decayNanos);
+                latencyNanos = latencyNanos * weight + nanos * (1 - weight);
+            }
+            lastUpdateNanos = end;
+            errorRate -= DECAY * errorRate;
+            consecutiveFailures = 0;
+            ejections = 0;
+        }
+
+        /**
+         * Record a failure, and eject the deployment after too many in a row.
+         *
+         * @return the duration of the ejection in nanoseconds, or 0 if the deployment is not ejected.
+         */
+        private synchronized long onFailure(int threshold, long baseEjectionNanos, long maxEjectionNanos) {
+            errorRate += DECAY * (1 - errorRate);
+            if (++consecutiveFailures < threshold) {
+                return 0;
+            }
+            long ejection = ejectionNanos(baseEjectionNanos, maxEjectionNanos, ejections);
+            ejections++;
+            consecutiveFailures = 0;
+            ejectedUntilNanos = System.nanoTime() + ejection;
+            return ejection;
+        }
+
+        /**
+         * The weight of the current latency, decaying with the time since it was last updated.
+         */
+        private double weight(long now, double decayNanos) {
+            return Math.exp(-Math.max(0, now - lastUpdateNanos) / decayNanos);
+        }
+
+        private synchronized boolean isEjected(long now) {
+            return now - ejectedUntilNanos < 0;
+        }
+
+        private synchronized BackendStats stats(long now) {
+            return new BackendStats(name, outstanding.get(),
+                    Double.isNaN(latencyNanos) ? null : Duration.ofNanos((long) latencyNanos), errorRate,
+                    isEjected(now));
+        }
+    }
+
+    /**
+     * The duration of an ejection, doubling with every ejection in a row up to the maximum.
+     *
+     * @param baseEjectionNanos the duration of the first ejection.
+     * @param maxEjectionNanos  the maximum duration of an ejection.
+     * @param ejections         the number of previous ejections in a row.
+     * @return the duration of the ejection in nanoseconds.
+     */
+    static long ejectionNanos(long baseEjectionNanos, long maxEjectionNanos, int ejections) {
+        // the shift would overflow past the leading zeros of the base
+        if (ejections >= Long.numberOfLeadingZeros(baseEjectionNanos) - 1) {
+            return maxEjectionNanos;
+        }
+        return Math.min(maxEjectionNanos, baseEjectionNanos << ejections);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private final List<Backend> backends = new ArrayList<>();
+
+        private int ejectionThreshold = 5;
+
+        private Duration baseEjection = Duration.ofSeconds(30);
+
+        private Duration maxEjection = Duration.ofMinutes(5);
+
+        private Duration decayTime = Duration.ofSeconds(10);
+
+        private Builder() {
+        }
+
+        /**
+         * Add a deployment.
+         *
+         * @param name  the name of the deployment in the logs and the statistics.
+         * @param model the model calling the deployment.
+         * @return the builder.
+         */
+        public Builder backend(String name, ChatModel model) {
+            backends.add(new Backend(name, model));
+            return this;
+        }
+
+        /**
+         * Add OpenAI deployments, whose clients are shared through {@link OpenAiClientRegistry}.
+         *
+         * @param endpoints the endpoint configurations of the deployments.
+         * @return the builder.
+         */
+        public Builder endpoints(List<EndpointConfig> endpoints) {
+            endpoints.forEach(endpoint -> backend(endpoint.getApiBase(), new OpenAiChatModel(endpoint)));
+            return this;
+        }
+
+        /**
+         * The number of consecutive failures ejecting a deployment, 5 by default.
+         *
+         * @param ejectionThreshold the number of failures.
+         * @return the builder.
+         */
+        public Builder ejectionThreshold(int ejectionThreshold) {
+            this.ejectionThreshold = ejectionThreshold;
+            return this;
+        }
+
+        /**
+         * How long a deployment is ejected the first time, doubled on each ejection in a row.
+         *
+         * @param baseEjection the duration of the first ejection.
+         * @return the builder.
+         */
+        public Builder baseEjection(Duration baseEjection) {
+            this.baseEjection = baseEjection;
+            return this;
+        }
+
+        public Builder maxEjection(Duration maxEjection) {
+            this.maxEjection = maxEjection;
+            return this;
+        }
+
+        /**
+         * The time constant of the latency decay, 10 seconds by default. A shorter time forgets a slow call sooner.
+         *
+         * @param decayTime the time constant.
+         * @return the builder.
+         */
+        public Builder decayTime(Duration decayTime) {
+            this.decayTime = decayTime;
+            return this;
+        }
+
+        public LoadBalancedChatModel build() {
+            if (backends.isEmpty()) {
+                throw new IllegalArgumentException("LoadBalancedChatModel requires at least one deployment.");
+            }
+            return new LoadBalancedChatModel(this);
+        }
+    }
+}
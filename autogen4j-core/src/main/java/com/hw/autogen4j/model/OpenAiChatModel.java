@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.openai.OpenAiClient;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+
+import io.reactivex.Flowable;
+
+import java.util.function.Supplier;
+
+/**
+ * A chat model calling the OpenAI API, or the Azure OpenAI API, through an {@link OpenAiClient}.
+ * <p>
+ * Created from an endpoint configuration, the model looks up the client shared in {@link OpenAiClientRegistry} on
+ * every call, a map lookup, so that it follows the registry when the client is closed and replaced.
+ *
+ * @author HamaWhite
+ */
+public class OpenAiChatModel implements ChatModel {
+
+    private final Supplier<OpenAiClient> client;
+
+    public OpenAiChatModel(OpenAiClient client) {
+        this.client = () -> client;
+    }
+
+    public OpenAiChatModel(EndpointConfig endpoint) {
+        this(endpoint, OpenAiClientRegistry.shared());
+    }
+
+    public OpenAiChatModel(EndpointConfig endpoint, OpenAiClientRegistry registry) {
+        this.client = () -> registry.client(endpoint);
+    }
+
+    @Override
+    public ChatCompletionResp complete(ChatCompletion request) {
+        return client.get().createChatCompletion(request);
+    }
+
+    @Override
+    public Flowable<ChatCompletionChunk> stream(ChatCompletion request) {
+        return client.get().streamChatCompletion(request);
+    }
+
+    public OpenAiClient getClient() {
+        return client.get();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.openai.OpenAiClient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hw.autogen4j.util.ConcurrentUtil.defaultExecutor;
+
+/**
+ * A registry of OpenAI clients keyed by endpoint configuration, so that all the agents calling the same endpoint share
+ * one client, with its connection pool and dispatcher threads, instead of each agent building its own.
+ * <p>
+ * A client is created on first use, so building an agent does not touch the http stack.
+ *
+ * @author HamaWhite
+ */
+public class OpenAiClientRegistry implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OpenAiClientRegistry.class);
+
+    private static final OpenAiClientRegistry SHARED = new OpenAiClientRegistry();
+
+    private final Map<EndpointConfig, OpenAiClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * The registry shared by the whole process, used by the agents by default.
+     *
+     * @return the shared registry.
+     */
+    public static OpenAiClientRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * The client of an endpoint, created on the first call.
+     *
+     * @param config the endpoint configuration.
+     * @return the shared client.
+     */
+    public OpenAiClient client(EndpointConfig config) {
+        return clients.computeIfAbsent(config, OpenAiClientRegistry::createClient);
+    }
+
+    private static OpenAiClient createClient(EndpointConfig config) {
+        LOG.debug("Creating the OpenAI client of {}.", config);
+        return OpenAiClient.builder()
+                .openaiApiBase(config.getApiBase())
+                .openaiApiKey(config.getApiKey())
+                .openaiApiType(config.getApiType())
+                .openaiApiVersion(config.getApiVersion())
+                .openaiOrganization(config.getOrganization())
+                .openaiProxy(config.getProxy())
+                .proxyUsername(config.getProxyUsername())
+                .proxyPassword(config.getProxyPassword())
+                .requestTimeout(config.getRequestTimeout())
+                .build()
+                .init();
+    }
+
+    /**
+     * Open a connection to an endpoint ahead of the first chat, so that the first reply does not pay for the DNS
+     * lookup and the TLS handshake. The connection stays in the pool of the shared client.
+     *
+     * @param config the endpoint configuration.
+     * @return a future completing when the endpoint has answered, failing if it could not be reached.
+     */
+    public CompletableFuture<Void> warmUp(EndpointConfig config) {
+        return CompletableFuture.runAsync(() -> client(config).listModels(), defaultExecutor())
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        LOG.warn("Failed to warm up the connection to {}.", config, throwable);
+                    }
+                });
+    }
+
+    /**
+     * The number of clients created.
+     *
+     * @return the number of clients.
+     */
+    public int size() {
+        return clients.size();
+    }
+
+    /**
+     * Close all the clients, releasing their connections and threads. A later call creates a new client.
+     */
+    @Override
+    public void close() {
+        clients.values().removeIf(client -> {
+            client.close();
+            return true;
+        });
+    }
+}
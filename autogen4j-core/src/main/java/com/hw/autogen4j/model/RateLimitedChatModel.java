@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.context.TokenCounter;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.autogen4j.limit.AdmissionController;
+import com.hw.autogen4j.limit.AdmissionController.Outcome;
+import com.hw.autogen4j.limit.AdmissionController.Permit;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+import com.hw.openai.entity.completions.Usage;
+
+import io.reactivex.Flowable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.hw.autogen4j.util.HttpErrorUtil.isRateLimited;
+
+/**
+ * A chat model admitting its calls through an {@link AdmissionController}, shared by the agents calling the same
+ * endpoint so that together they stay under its rate limits.
+ * <p>
+ * The tokens of a call are estimated from its prompt and its maximum completion tokens, and corrected with the usage
+ * of the response.
+ *
+ * @author HamaWhite
+ */
+public class RateLimitedChatModel implements ChatModel {
+
+    /**
+     * the completion tokens assumed for a request without max tokens.
+     */
+    private static final int DEFAULT_COMPLETION_TOKENS = 256;
+
+    private final ChatModel delegate;
+
+    private final AdmissionController controller;
+
+    private final TokenCounter tokenCounter = TokenCounter.estimating();
+
+    public RateLimitedChatModel(ChatModel delegate, AdmissionController controller) {
+        this.delegate = delegate;
+        this.controller = controller;
+    }
+
+    @Override
+    public ChatCompletionResp complete(ChatCompletion request) {
+        Permit permit = await(controller.acquire(estimateTokens(request)));
+        ChatCompletionResp response;
+        try {
+            response = delegate.complete(request);
+        } catch (RuntimeException e) {
+            permit.release(outcome(e), -1);
+            throw e;
+        }
+        permit.release(Outcome.SUCCESS, usedTokens(response));
+        return response;
+    }
+
+    @Override
+    public Flowable<ChatCompletionChunk> stream(ChatCompletion request) {
+        return Flowable.defer(() -> {
+            Permit permit = await(controller.acquire(estimateTokens(request)));
+            return delegate.stream(request)
+                    .doOnComplete(() -> permit.release(Outcome.SUCCESS, -1))
+                    .doOnError(e -> permit.release(outcome(e), -1))
+                    .doOnCancel(() -> permit.release(Outcome.FAILURE, -1));
+        });
+    }
+
+    private long estimateTokens(ChatCompletion request) {
+        long promptTokens = request.getMessages().stream().mapToLong(tokenCounter::count).sum();
+        Integer maxTokens = request.getMaxTokens();
+        return promptTokens + (maxTokens != null ? maxTokens : DEFAULT_COMPLETION_TOKENS);
+    }
+
+    private static long usedTokens(ChatCompletionResp response) {
+        Usage usage = response.getUsage();
+        return usage != null && usage.getTotalTokens() != null ? usage.getTotalTokens() : -1;
+    }
+
+    /**
+     * Wait for the admission of a call. When interrupted, the call is withdrawn from the queue, or its permit
+     * cancelled if it was admitted in the meantime.
+     */
+    private static Permit await(CompletableFuture<Permit> admission) {
+        try {
+            return admission.get();
+        } catch (InterruptedException e) {
+            if (!admission.cancel(false)) {
+                admission.join().cancel();
+            }
+            Thread.currentThread().interrupt();
+            throw new Autogen4jException("Interrupted while waiting for the admission of a model call.", e);
+        } catch (ExecutionException e) {
+            throw new Autogen4jException(e.getCause());
+        }
+    }
+
+    private static Outcome outcome(Throwable throwable) {
+        return isRateLimited(throwable) ? Outcome.RATE_LIMITED : Outcome.FAILURE;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.autogen4j.exception.CircuitOpenException;
+import com.hw.autogen4j.retry.CircuitBreaker;
+import com.hw.autogen4j.retry.RetryPolicy;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.reactivex.Flowable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A chat model retrying its failed calls under a {@link RetryPolicy}, behind the {@link CircuitBreaker} of its
+ * endpoint.
+ * <p>
+ * A call is retried when its failure is retryable, attempts remain, the retry budget allows it, and the circuit is
+ * closed. A streamed call is retried only until its first chunk, since the chunks already delivered cannot be taken
+ * back.
+ *
+ * @author HamaWhite
+ */
+public class RetryingChatModel implements ChatModel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetryingChatModel.class);
+
+    private final ChatModel delegate;
+
+    private final RetryPolicy policy;
+
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Create a chat model retrying the calls of another.
+     *
+     * @param delegate       the model making the calls.
+     * @param policy         the retry policy.
+     * @param circuitBreaker the circuit breaker of the endpoint, or null for none.
+     */
+    public RetryingChatModel(ChatModel delegate, RetryPolicy policy, CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public ChatCompletionResp complete(ChatCompletion request) {
+        policy.getBudget().onCall();
+        RuntimeException failure = null;
+        for (int attempt = 1;; attempt++) {
+            acquire(failure);
+            try {
+                ChatCompletionResp response = delegate.complete(request);
+                onSuccess();
+                return response;
+            } catch (RuntimeException e) {
+                long backoff = onFailure(attempt, e);
+                if (backoff < 0) {
+                    throw e;
+                }
+                sleep(backoff, e);
+                failure = e;
+            }
+        }
+    }
+
+    @Override
+    public Flowable<ChatCompletionChunk> stream(ChatCompletion request) {
+        return Flowable.defer(() -> {
+            policy.getBudget().onCall();
+            return stream(request, 1);
+        });
+    }
+
+    private Flowable<ChatCompletionChunk> stream(ChatCompletion request, int attempt) {
+        return Flowable.defer(() -> {
+            acquire(null);
+            AtomicBoolean emitted = new AtomicBoolean();
+            return delegate.stream(request)
+                    .doOnNext(chunk -> emitted.set(true))
+                    .doOnComplete(this::onSuccess)
+                    .onErrorResumeNext((Throwable e) -> {
+                        long backoff = -1;
+                        if (emitted.get()) {
+                            reportFailure(e);
+                        } else {
+                            backoff = onFailure(attempt, e);
+                        }
+                        return backoff < 0
+                                ? Flowable.error(e)
+                                : Flowable.timer(backoff, TimeUnit.NANOSECONDS)
+                                        .flatMap(tick -> stream(request, attempt + 1));
+                    });
+        });
+    }
+
+    private void acquire(RuntimeException previousFailure) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            CircuitOpenException exception = new CircuitOpenException(
+                    "The circuit breaker of %s is open.".formatted(circuitBreaker.name()));
+            if (previousFailure != null) {
+                exception.addSuppressed(previousFailure);
+            }
+            throw exception;
+        }
+    }
+
+    private void onSuccess() {
+        if (circuitBreaker != null) {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    /**
+     * Report a failed attempt to the circuit breaker, and decide whether to retry it.
+     *
+     * @return the delay before the retry, or -1 to give up.
+     */
+    private long onFailure(int attempt, Throwable failure) {
+        if (!reportFailure(failure) || attempt >= policy.getMaxAttempts()) {
+            return -1;
+        }
+        long backoff = policy.backoffNanos(attempt, failure);
+        if (backoff < 0 || !policy.getBudget().tryRetry()) {
+            return -1;
+        }
+        LOG.warn("Model call failed on attempt {}, retrying in {} ms: {}", attempt,
+                TimeUnit.NANOSECONDS.toMillis(backoff), failure.toString());
+        return backoff;
+    }
+
+    /**
+     * Report a failure to the circuit breaker.
+     *
+     * @return true if the failure is retryable.
+     */
+    private boolean reportFailure(Throwable failure) {
+        if (!policy.getRetryable().test(failure)) {
+            // the endpoint answered, the request itself is wrong
+            onSuccess();
+            return false;
+        }
+        if (circuitBreaker != null) {
+            circuitBreaker.onFailure();
+        }
+        return true;
+    }
+
+    private static void sleep(long nanos, RuntimeException failure) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Autogen4jException exception = new Autogen4jException("Interrupted while waiting to retry.", e);
+            exception.addSuppressed(failure);
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.context.TokenCounter;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.entity.chat.ChatChoice;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+import com.hw.openai.entity.chat.ChatMessage;
+import com.hw.openai.entity.completions.Usage;
+
+import io.reactivex.Flowable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+
+/**
+ * A chat model answering in process from a script, with a simulated latency, so that conversations can be tested
+ * and benchmarked offline and the overhead of the framework measured apart from the latency of the model.
+ * <p>
+ * The replies come from a responder function of the request, or cycle through a fixed list. Each call sleeps for a
+ * latency sampled from a {@link LatencyDistribution}; a streamed reply is split into words, with a second distribution
+ * for the delay between chunks. The usage of every response is estimated with {@link TokenCounter#estimating()}.
+ *
+ * @author HamaWhite
+ */
+public class StubChatModel implements ChatModel {
+
+    private final Function<ChatCompletion, ChatMessage> responder;
+
+    private final LatencyDistribution latency;
+
+    private final LatencyDistribution chunkLatency;
+
+    private final TokenCounter tokenCounter = TokenCounter.estimating();
+
+    private final AtomicLong calls = new AtomicLong();
+
+    private StubChatModel(Builder builder) {
+        this.responder = builder.responder;
+        this.latency = builder.latency;
+        this.chunkLatency = builder.chunkLatency;
+    }
+
+    @Override
+    public ChatCompletionResp complete(ChatCompletion request) {
+        ChatMessage reply = respond(request);
+        sleep(latency);
+
+        ChatChoice choice = new ChatChoice();
+        choice.setIndex(0);
+        choice.setMessage(reply);
+        choice.setFinishReason("stop");
+
+        ChatCompletionResp response = new ChatCompletionResp();
+        response.setId("stub-" + calls.get());
+        response.setObject("chat.completion");
+        response.setCreated(System.currentTimeMillis() / 1000);
+        response.setModel(request.getModel());
+        response.setChoices(List.of(choice));
+        response.setUsage(usage(request, reply));
+        return response;
+    }
+
+    @Override
+    public Flowable<ChatCompletionChunk> stream(ChatCompletion request) {
+        return Flowable.defer(() -> {
+            ChatMessage reply = respond(request);
+            sleep(latency);
+            return Flowable.fromIterable(chunks(reply))
+                    .map(delta -> {
+                        sleep(chunkLatency);
+                        return chunk(request, delta);
+                    });
+        });
+    }
+
+    /**
+     * The number of calls answered so far.
+     *
+     * @return the number of calls.
+     */
+    public long calls() {
+        return calls.get();
+    }
+
+    private ChatMessage respond(ChatCompletion request) {
+        calls.incrementAndGet();
+        ChatMessage reply = new ChatMessage(responder.apply(request));
+        if (reply.getRole() == null) {
+            reply.setRole(ASSISTANT);
+        }
+        return reply;
+    }
+
+    private Usage usage(ChatCompletion request, ChatMessage reply) {
+        long promptTokens = request.getMessages().stream().mapToLong(tokenCounter::count).sum();
+        long completionTokens = tokenCounter.count(reply);
+        return new Usage(promptTokens, completionTokens, promptTokens + completionTokens);
+    }
+
+    /**
+     * Split a reply into the deltas of a stream: the content word by word, then the tool calls in one piece.
+     */
+    private static List<ChatMessage> chunks(ChatMessage reply) {
+        List<ChatMessage> deltas = new ArrayList<>();
+        String content = reply.getContent();
+        if (content != null) {
+            for (String word : content.split("(?<=\\s)")) {
+                deltas.add(new ChatMessage(deltas.isEmpty() ? ASSISTANT : null, word));
+            }
+        }
+        if (reply.getToolCalls() != null) {
+            deltas.add(new ChatMessage(deltas.isEmpty() ? ASSISTANT : null, null, null, reply.getToolCalls()));
+        }
+        return deltas;
+    }
+
+    private static ChatCompletionChunk chunk(ChatCompletion request, ChatMessage delta) {
+        ChatChoice choice = new ChatChoice();
+        choice.setIndex(0);
+        choice.setMessage(delta);
+
+        ChatCompletionChunk chunk = new ChatCompletionChunk();
+        chunk.setObject("chat.completion.chunk");
+        chunk.setModel(request.getModel());
+        chunk.setChoices(List.of(choice));
+        return chunk;
+    }
+
+    private static void sleep(LatencyDistribution distribution) {
+        long nanos = distribution.sampleNanos();
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Autogen4jException("Interrupted while waiting for the stub chat model.", e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Function<ChatCompletion, ChatMessage> responder = request -> new ChatMessage(ASSISTANT, "TERMINATE");
+
+        private LatencyDistribution latency = LatencyDistribution.none();
+
+        private LatencyDistribution chunkLatency = LatencyDistribution.none();
+
+        private Builder() {
+        }
+
+        /**
+         * Answer every request with a function of the request.
+         *
+         * @param responder the function computing the reply, called once per request.
+         * @return the builder.
+         */
+        public Builder responder(Function<ChatCompletion, ChatMessage> responder) {
+            this.responder = responder;
+            return this;
+        }
+
+        /**
+         * Answer the requests with the given contents, in order, starting over after the last one.
+         *
+         * @param replies the contents of the replies.
+         * @return the builder.
+         */
+        public Builder replies(String... replies) {
+            AtomicLong next = new AtomicLong();
+            this.responder = request -> new ChatMessage(ASSISTANT,
+                    replies[(int) (next.getAndIncrement() % replies.length)]);
+            return this;
+        }
+
+        /**
+         * The latency of a call, until the complete response, or until the first chunk when streaming.
+         *
+         * @param latency the latency distribution.
+         * @return the builder.
+         */
+        public Builder latency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * The delay between the chunks of a streamed response.
+         *
+         * @param chunkLatency the latency distribution.
+         * @return the builder.
+         */
+        public Builder chunkLatency(LatencyDistribution chunkLatency) {
+            this.chunkLatency = chunkLatency;
+            return this;
+        }
+
+        public StubChatModel build() {
+            return new StubChatModel(this);
+        }
+    }
+}
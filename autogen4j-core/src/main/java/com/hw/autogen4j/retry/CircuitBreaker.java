@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.retry;
+
+import com.google.common.base.Ticker;
+import com.hw.autogen4j.model.EndpointConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A circuit breaker for the calls to an endpoint, failing them fast while the endpoint is down instead of adding load
+ * to it.
+ * <p>
+ * The circuit opens after a number of consecutive failures, rejects the calls while open, then lets a single probe
+ * call through. The circuit closes if the probe succeeds, and opens again otherwise. Only retryable failures count, a
+ * client error such as an invalid request shows that the endpoint is up.
+ *
+ * @author HamaWhite
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final Map<EndpointConfig, CircuitBreaker> ENDPOINTS = new ConcurrentHashMap<>();
+
+    /**
+     * The state of the circuit.
+     */
+    public enum State {
+        /**
+         * the calls go through.
+         */
+        CLOSED,
+        /**
+         * the calls are rejected.
+         */
+        OPEN,
+        /**
+         * a probe call is let through to test the endpoint.
+         */
+        HALF_OPEN
+    }
+
+    private final String name;
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private final Ticker ticker;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAtNanos;
+
+    private boolean probing;
+
+    private CircuitBreaker(Builder builder) {
+        this.name = builder.name;
+        this.failureThreshold = builder.failureThreshold;
+        this.openNanos = builder.openDuration.toNanos();
+        this.ticker = builder.ticker;
+    }
+
+    /**
+     * The circuit breaker shared by the agents calling an endpoint.
+     *
+     * @param endpoint the endpoint configuration.
+     * @return the circuit breaker of the endpoint.
+     */
+    public static CircuitBreaker forEndpoint(EndpointConfig endpoint) {
+        return ENDPOINTS.computeIfAbsent(endpoint, key -> builder().name(key.toString()).build());
+    }
+
+    /**
+     * Ask permission to make a call. A call allowed must report its result with {@link #onSuccess()} or
+     * {@link #onFailure()}.
+     *
+     * @return true if the call may be made.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (ticker.read() - openedAtNanos < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            }
+            default -> {
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Report a call that reached the endpoint.
+     */
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            LOG.info("Circuit breaker of {} closed.", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probing = false;
+    }
+
+    /**
+     * Report a call that failed because of the endpoint.
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            LOG.warn("Circuit breaker of {} opened again, the probe call failed.", name);
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            LOG.warn("Circuit breaker of {} opened after {} consecutive failures.", name, consecutiveFailures);
+        }
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = ticker.read();
+            probing = false;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private String name = "endpoint";
+
+        private int failureThreshold = 5;
+
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {
+        }
+
+        /**
+         * The name of the circuit in the logs, usually its endpoint.
+         *
+         * @param name the name of the circuit.
+         * @return the builder.
+         */
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * The number of consecutive failures opening the circuit, 5 by default.
+         *
+         * @param failureThreshold the number of failures.
+         * @return the builder.
+         */
+        public Builder failureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * How long the circuit stays open before a probe call, 30 seconds by default.
+         *
+         * @param openDuration the duration.
+         * @return the builder.
+         */
+        public Builder openDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
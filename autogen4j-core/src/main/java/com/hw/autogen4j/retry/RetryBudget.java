@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.retry;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A budget of retries, refilled by a fraction of every call and by a small rate over time, so that when an endpoint
+ * fails, the retries add at most that fraction to its load instead of multiplying it by the number of attempts.
+ *
+ * @author HamaWhite
+ */
+public class RetryBudget {
+
+    /**
+     * Lazily created budget shared by the retry policies that do not set their own.
+     */
+    private static final class SharedHolder {
+
+        private static final RetryBudget INSTANCE = builder().build();
+    }
+
+    private final double ratio;
+
+    private final double minRetriesPerSecond;
+
+    private final double maxBalance;
+
+    private final Ticker ticker;
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private double balance;
+
+    private long lastRefillNanos;
+
+    private RetryBudget(Builder builder) {
+        this.ratio = builder.ratio;
+        this.minRetriesPerSecond = builder.minRetriesPerSecond;
+        this.maxBalance = builder.maxBalance;
+        this.ticker = builder.ticker;
+        this.balance = builder.maxBalance;
+        this.lastRefillNanos = ticker.read();
+    }
+
+    /**
+     * The budget shared by all the agents of the process.
+     *
+     * @return the shared budget.
+     */
+    public static RetryBudget shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Deposit the share of a call in the budget.
+     */
+    public synchronized void onCall() {
+        refill();
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    /**
+     * Withdraw a retry from the budget.
+     *
+     * @return true if the budget allows the retry.
+     */
+    public synchronized boolean tryRetry() {
+        refill();
+        if (balance < 1) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        balance--;
+        retries.incrementAndGet();
+        return true;
+    }
+
+    private void refill() {
+        long now = ticker.read();
+        double seconds = (double) (now - lastRefillNanos) / TimeUnit.SECONDS.toNanos(1);
+        balance = Math.min(maxBalance, balance + seconds * minRetriesPerSecond);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * The number of retries allowed so far.
+     *
+     * @return the number of retries.
+     */
+    public long retries() {
+        return retries.get();
+    }
+
+    /**
+     * The number of retries refused because the budget was exhausted.
+     *
+     * @return the number of refused retries.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private double ratio = 0.2;
+
+        private double minRetriesPerSecond = 1;
+
+        private double maxBalance = 20;
+
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {
+        }
+
+        /**
+         * The retries allowed per call, 0.2 by default, which bounds the extra load of the retries to 20%.
+         *
+         * @param ratio the ratio of retries to calls.
+         * @return the builder.
+         */
+        public Builder ratio(double ratio) {
+            this.ratio = ratio;
+            return this;
+        }
+
+        /**
+         * The retries allowed per second whatever the number of calls, so that a few calls may still be retried.
+         *
+         * @param minRetriesPerSecond the number of retries per second.
+         * @return the builder.
+         */
+        public Builder minRetriesPerSecond(double minRetriesPerSecond) {
+            this.minRetriesPerSecond = minRetriesPerSecond;
+            return this;
+        }
+
+        /**
+         * The number of retries the unused budget may accumulate to, which bounds a burst of retries.
+         *
+         * @param maxBalance the maximum number of retries in a burst.
+         * @return the builder.
+         */
+        public Builder maxBalance(double maxBalance) {
+            this.maxBalance = maxBalance;
+            return this;
+        }
+
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public RetryBudget build() {
+            return new RetryBudget(this);
+        }
+    }
+}
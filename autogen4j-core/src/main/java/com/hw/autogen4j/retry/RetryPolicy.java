@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.retry;
+
+import com.hw.autogen4j.util.HttpErrorUtil;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * How a failed model call is retried: which failures, how many times, and after which delays.
+ * <p>
+ * The delay grows exponentially with full jitter, so that the clients failing together do not retry together, unless
+ * the endpoint requests a delay with a Retry-After header. Every retry is paid from a {@link RetryBudget}, shared by
+ * default by all the agents of the process, so that the retries add at most a fraction of load to a failing endpoint.
+ *
+ * @author HamaWhite
+ */
+@Value
+@Builder(toBuilder = true)
+public class RetryPolicy {
+
+    /**
+     * the maximum number of attempts of a call, including the first one.
+     */
+    @Builder.Default
+    int maxAttempts = 4;
+
+    /**
+     * the maximum delay before the first retry.
+     */
+    @Builder.Default
+    Duration initialBackoff = Duration.ofMillis(500);
+
+    /**
+     * the maximum delay before any retry.
+     */
+    @Builder.Default
+    Duration maxBackoff = Duration.ofSeconds(30);
+
+    /**
+     * the growth of the maximum delay from one retry to the next.
+     */
+    @Builder.Default
+    double multiplier = 2;
+
+    /**
+     * the longest Retry-After honored, a call asked to wait longer fails instead.
+     */
+    @Builder.Default
+    Duration maxRetryAfter = Duration.ofMinutes(1);
+
+    /**
+     * which failures may be retried, network errors, timeouts, rate limiting and server errors by default.
+     */
+    @Builder.Default
+    Predicate<Throwable> retryable = HttpErrorUtil::isRetryable;
+
+    /**
+     * the budget paying for the retries.
+     */
+    @Builder.Default
+    RetryBudget budget = RetryBudget.shared();
+
+    /**
+     * A policy making a single attempt, for a circuit breaker without retries.
+     *
+     * @return the policy.
+     */
+    public static RetryPolicy noRetry() {
+        return RetryPolicy.builder().maxAttempts(1).build();
+    }
+
+    /**
+     * The delay before retrying a failed attempt.
+     *
+     * @param attempt the number of the failed attempt, starting at 1.
+     * @param failure the failure of the attempt.
+     * @return the delay in nanoseconds, or -1 if the endpoint requested a delay longer than the max Retry-After.
+     */
+    public long backoffNanos(int attempt, Throwable failure) {
+        Duration retryAfter = HttpErrorUtil.retryAfter(failure);
+        if (retryAfter != null) {
+            return retryAfter.compareTo(maxRetryAfter) <= 0 ? retryAfter.toNanos() : -1;
+        }
+        double backoff = initialBackoff.toNanos() * Math.pow(multiplier, attempt - 1.0);
+        long cap = (long) Math.min(maxBackoff.toNanos(), backoff);
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
@@ -0,0 +1,63 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.util;
+
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import java.util.List;
+
+/**
+ * @author HamaWhite
+ */
+public class ChatCompletionUtil {
+
+    private ChatCompletionUtil() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Create a new request from a ChatCompletion template, so that the template shared by concurrent calls is never
+     * mutated.
+     *
+     * @param template the template holding the model and the sampling parameters.
+     * @param messages the messages of the new request.
+     * @return a new ChatCompletion.
+     */
+    public static ChatCompletion copyOf(ChatCompletion template, List<ChatMessage> messages) {
+        return ChatCompletion.builder()
+                .model(template.getModel())
+                .messages(messages)
+                .temperature(template.getTemperature())
+                .topP(template.getTopP())
+                .n(template.getN())
+                .stream(template.isStream())
+                .seed(template.getSeed())
+                .stop(template.getStop())
+                .maxTokens(template.getMaxTokens())
+                .presencePenalty(template.getPresencePenalty())
+                .frequencyPenalty(template.getFrequencyPenalty())
+                .logitBias(template.getLogitBias())
+                .user(template.getUser())
+                .tools(template.getTools())
+                .toolChoice(template.getToolChoice())
+                .build();
+    }
+}
@@ -18,10 +18,13 @@
 
 package com.hw.autogen4j.util;
 
+import com.hw.autogen4j.code.PythonWorkerPool;
 import com.hw.autogen4j.entity.CodeBlock;
 import com.hw.autogen4j.entity.CodeExecutionConfig;
 import com.hw.autogen4j.entity.CodeExecutionResult;
 import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.autogen4j.jfr.CodeExecutionEvent;
+import com.hw.autogen4j.metrics.Metrics;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.exec.*;
@@ -33,10 +36,12 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static com.hw.autogen4j.metrics.Metrics.CODE_EXECUTION_LATENCY;
 import static com.hw.autogen4j.util.FileUtil.deleteFile;
 import static com.hw.autogen4j.util.FileUtil.writeCodeToFile;
 
@@ -45,6 +50,11 @@ import static com.hw.autogen4j.util.FileUtil.writeCodeToFile;
  */
 public class CodeUtil {
 
+    /**
+     * the languages of the code blocks the agents can execute.
+     */
+    public static final Set<String> EXECUTABLE_LANGUAGES = Set.of("bash", "shell", "sh", "python");
+
     private CodeUtil() {
         throw new IllegalStateException("Utility class");
     }
@@ -123,15 +133,43 @@ public class CodeUtil {
         String fileExt = language.startsWith("python") ? "py" : language;
         String filename = String.format("tmp_code_%s.%s", codeHash, fileExt);
 
-        // write the code string to a file specified by the filename.
-        writeCodeToFile(workDir, filename, code);
-
-        CodeExecutionResult executionResult = StringUtils.isEmpty(config.getDocker())
-                ? executeCodeLocally(language, workDir, filename, config.getTimeout())
-                : executeCodeInDocker();
+        // the python code runs on a warm interpreter of the pool when there is one, which takes the code over a pipe
+        PythonWorkerPool pool = config.getPythonWorkerPool();
+        boolean pooled = pool != null && "python".equals(language) && StringUtils.isEmpty(config.getDocker());
+        if (!pooled) {
+            // write the code string to a file specified by the filename.
+            writeCodeToFile(workDir, filename, code);
+        }
 
-        deleteFile(workDir, filename);
-        return executionResult;
+        CodeExecutionEvent event = new CodeExecutionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        CodeExecutionResult executionResult = null;
+        try {
+            if (pooled) {
+                executionResult = pool.execute(code, workDir, filename, config.getTimeout());
+            } else {
+                executionResult = StringUtils.isEmpty(config.getDocker())
+                        ? executeCodeLocally(language, workDir, filename, config.getTimeout())
+                        : executeCodeInDocker();
+            }
+            return executionResult;
+        } finally {
+            Metrics.global().recordTime(CODE_EXECUTION_LATENCY, System.nanoTime() - start, "language", language,
+                    "exit_code", executionResult != null ? String.valueOf(executionResult.exitCode()) : "error");
+            if (event.shouldCommit()) {
+                event.language = language;
+                event.codeLength = code.length();
+                event.exitCode = executionResult != null ? executionResult.exitCode() : -1;
+                event.logsLength = executionResult != null && executionResult.logs() != null
+                        ? executionResult.logs().length()
+                        : 0;
+                event.commit();
+            }
+            if (!pooled) {
+                deleteFile(workDir, filename);
+            }
+        }
     }
 
     private static String getExecutableForLanguage(String language) throws UnsupportedOperationException {
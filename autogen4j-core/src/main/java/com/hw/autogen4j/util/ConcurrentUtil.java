@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hw.autogen4j.exception.Autogen4jException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HamaWhite
+ */
+public class ConcurrentUtil {
+
+    private ConcurrentUtil() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * The maximum number of threads of the default executor.
+     */
+    public static final int DEFAULT_EXECUTOR_THREADS = 64;
+
+    /**
+     * Lazily created, shared executor for the blocking work of asynchronous conversations.
+     */
+    private static final class DefaultExecutorHolder {
+
+        private static final ExecutorService INSTANCE = newDefaultExecutor();
+
+        private static ExecutorService newDefaultExecutor() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_EXECUTOR_THREADS, DEFAULT_EXECUTOR_THREADS,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+                            .setNameFormat("autogen4j-worker-%d")
+                            .setDaemon(true)
+                            .build());
+            // the threads are only kept while there is blocking work to run
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * Lazily created, shared scheduler for timers, such as the wake-ups of rate limiters and the delays of retries.
+     */
+    private static final class SchedulerHolder {
+
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("autogen4j-scheduler-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * The default executor that runs blocking reply functions, such as llm calls, code execution and human input,
+     * when a conversation is driven asynchronously.
+     * <p>
+     * It runs at most {@link #DEFAULT_EXECUTOR_THREADS} tasks at the same time, the others wait in its queue. An
+     * application running more blocking calls at the same time sets its own executor on the agents.
+     *
+     * @return the shared default executor.
+     */
+    public static Executor defaultExecutor() {
+        return DefaultExecutorHolder.INSTANCE;
+    }
+
+    /**
+     * The shared scheduler for timers. The scheduled tasks must be short, they run on a single thread.
+     *
+     * @return the shared scheduler.
+     */
+    public static ScheduledExecutorService scheduler() {
+        return SchedulerHolder.INSTANCE;
+    }
+
+    /**
+     * Create a thread factory that produces virtual threads when the runtime supports them (Java 21 or later),
+     * and daemon platform threads otherwise.
+     *
+     * @param namePrefix the prefix of the thread names.
+     * @return a thread factory.
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        try {
+            // equivalent to Thread.ofVirtual().name(namePrefix, 0).factory(), resolved reflectively
+            // because the project still targets Java 17.
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return new ThreadFactoryBuilder()
+                    .setNameFormat(namePrefix + "%d")
+                    .setDaemon(true)
+                    .build();
+        }
+    }
+
+    /**
+     * Whether the threads created by {@link #newThreadFactory(String)} are virtual threads.
+     *
+     * @return true if the runtime supports virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wait for a future to complete and return its result, rethrowing the original exception if it failed.
+     *
+     * @param future the future to wait for.
+     * @param <T>    the result type.
+     * @return the result of the future.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Autogen4jException("Interrupted while waiting for the result.", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Unwrap the wrapper exceptions added by CompletableFuture.
+     *
+     * @param throwable the exception to unwrap.
+     * @return the original exception, as a RuntimeException.
+     */
+    public static RuntimeException unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new Autogen4jException(cause);
+    }
+}
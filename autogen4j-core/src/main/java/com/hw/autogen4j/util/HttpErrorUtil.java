@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.util;
+
+import com.hw.openai.exception.OpenAiException;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import okhttp3.Headers;
+import retrofit2.HttpException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * @author HamaWhite
+ */
+public class HttpErrorUtil {
+
+    /**
+     * the status code of a response rejected by rate limiting.
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * the status code of a request timeout.
+     */
+    public static final int REQUEST_TIMEOUT = 408;
+
+    private HttpErrorUtil() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * The http status code of the failed response that caused an exception, looked up through its causes.
+     *
+     * @param throwable the exception thrown by a model call.
+     * @return the status code, or -1 if the exception was not caused by an http error response.
+     */
+    public static int statusCode(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OpenAiException openAiException) {
+                return openAiException.statusCode;
+            }
+            if (cause instanceof HttpException httpException) {
+                return httpException.code();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether an exception was caused by the endpoint rejecting the request because of rate limiting.
+     *
+     * @param throwable the exception thrown by a model call.
+     * @return true if the response status was 429.
+     */
+    public static boolean isRateLimited(Throwable throwable) {
+        return statusCode(throwable) == TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Whether a failed model call may succeed when retried: a network error, a timeout, rate limiting or a server
+     * error. A client error, such as an invalid request or a failed authentication, fails again.
+     *
+     * @param throwable the exception thrown by a model call.
+     * @return true if the call may be retried.
+     */
+    public static boolean isRetryable(Throwable throwable) {
+        int statusCode = statusCode(throwable);
+        if (statusCode >= 0) {
+            return statusCode == REQUEST_TIMEOUT || statusCode == TOO_MANY_REQUESTS || statusCode >= 500;
+        }
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The delay requested by the endpoint before retrying, from the retry-after-ms or the Retry-After header of the
+     * failed response. Retry-After holds either a number of seconds or an http date.
+     *
+     * @param throwable the exception thrown by a model call.
+     * @return the requested delay, or null if the response did not request one.
+     */
+    public static Duration retryAfter(Throwable throwable) {
+        Headers headers = headers(throwable);
+        if (headers == null) {
+            return null;
+        }
+        String millis = headers.get("retry-after-ms");
+        if (NumberUtils.isParsable(millis)) {
+            return Duration.ofMillis((long) Double.parseDouble(millis));
+        }
+        String value = headers.get("Retry-After");
+        if (value == null) {
+            return null;
+        }
+        if (NumberUtils.isParsable(value)) {
+            return Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+        }
+        try {
+            Duration delay = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Headers headers(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpException httpException && httpException.response() != null) {
+                return httpException.response().headers();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,66 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.OpenAiClient;
+
+/**
+ * @author HamaWhite
+ */
+public class JsonUtil {
+
+    private JsonUtil() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * ObjectMapper producing a canonical JSON form: the same value always serializes to the same bytes.
+     */
+    private static final ObjectMapper CANONICAL_MAPPER = OpenAiClient.defaultObjectMapper()
+            .copy()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    /**
+     * Serialize a value to its canonical JSON form, with map entries ordered by key.
+     *
+     * @param value the value to serialize.
+     * @return the canonical JSON bytes.
+     */
+    public static byte[] toCanonicalJson(Object value) {
+        try {
+            return CANONICAL_MAPPER.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new Autogen4jException("Error serializing value to JSON.", e);
+        }
+    }
+
+    /**
+     * The ObjectMapper used for the canonical JSON form.
+     *
+     * @return the shared ObjectMapper, which must not be reconfigured.
+     */
+    public static ObjectMapper canonicalMapper() {
+        return CANONICAL_MAPPER;
+    }
+}
@@ -0,0 +1,110 @@
+# Licensed to the Apache Software Foundation (ASF) under one
+# or more contributor license agreements.  See the NOTICE file
+# distributed with this work for additional information
+# regarding copyright ownership.  The ASF licenses this file
+# to you under the Apache License, Version 2.0 (the
+# "License"); you may not use this file except in compliance
+# with the License.  You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# A warm python interpreter running code blocks sent by autogen4j.
+#
+# Each request is a JSON line on stdin with the code, the work directory, the file name the code is reported under,
+# and the files capturing stdout and stderr. The worker runs the code with fresh globals, as a script run by
+# `python <filename>` would, and answers with a line holding the exit code. The modules named in the arguments are
+# imported at startup, so that the code blocks find them already loaded.
+
+import builtins
+import io
+import json
+import linecache
+import os
+import sys
+import traceback
+
+
+def exit_code_of(e):
+    # the same exit code as the interpreter exiting with SystemExit
+    if e.code is None:
+        return 0
+    if isinstance(e.code, int):
+        return e.code
+    print(e.code, file=sys.stderr)
+    return 1
+
+
+def run(request, home, null_fd):
+    stdout_fd = os.open(request["stdout"], os.O_WRONLY | os.O_CREAT | os.O_TRUNC)
+    stderr_fd = os.open(request["stderr"], os.O_WRONLY | os.O_CREAT | os.O_TRUNC)
+    os.dup2(stdout_fd, 1)
+    os.dup2(stderr_fd, 2)
+    os.close(stdout_fd)
+    os.close(stderr_fd)
+
+    work_dir = os.path.abspath(request["work_dir"])
+    filename = os.path.join(work_dir, request["filename"])
+    saved = (sys.stdin, sys.argv, list(sys.path))
+    sys.stdin = io.StringIO()
+    sys.argv = [filename]
+    sys.path.insert(0, work_dir)
+    scope = {"__name__": "__main__", "__file__": filename, "__builtins__": builtins}
+    # the code is not written to the file, the tracebacks read its lines from the cache
+    linecache.cache[filename] = (len(request["code"]), None, request["code"].splitlines(True), filename)
+    try:
+        os.makedirs(work_dir, exist_ok=True)
+        os.chdir(work_dir)
+        exec(compile(request["code"], filename, "exec"), scope)
+        exit_code = 0
+    except SystemExit as e:
+        exit_code = exit_code_of(e)
+    except BaseException:
+        error_type, error, tb = sys.exc_info()
+        # skip the frame of this worker, to print the traceback of the script only
+        traceback.print_exception(error_type, error, tb.tb_next)
+        exit_code = 1
+    finally:
+        for stream in (sys.stdout, sys.stderr):
+            try:
+                stream.flush()
+            except Exception:
+                pass
+        sys.stdout, sys.stderr = sys.__stdout__, sys.__stderr__
+        sys.stdin, sys.argv, sys.path[:] = saved
+        linecache.cache.pop(filename, None)
+        os.chdir(home)
+        os.dup2(null_fd, 1)
+        os.dup2(null_fd, 2)
+    return exit_code
+
+
+def main():
+    # the responses go through a private copy of stdout, the code blocks write to the capture files
+    responses = os.fdopen(os.dup(1), "w", encoding="utf-8")
+    requests = sys.stdin
+    null_fd = os.open(os.devnull, os.O_RDWR)
+    os.dup2(null_fd, 1)
+    os.dup2(null_fd, 2)
+
+    for module in sys.argv[1:]:
+        try:
+            __import__(module)
+        except Exception:
+            pass
+    home = os.getcwd()
+    responses.write("ready\n")
+    responses.flush()
+
+    for line in iter(requests.readline, ""):
+        exit_code = run(json.loads(line), home, null_fd)
+        responses.write("%d\n" % exit_code)
+        responses.flush()
+
+
+main()
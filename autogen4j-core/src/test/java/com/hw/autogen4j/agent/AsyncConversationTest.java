@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent;
+
+import com.hw.autogen4j.conversation.ConversationSession;
+import com.hw.autogen4j.entity.ReplyResult;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class AsyncConversationTest {
+
+    @Test
+    void testRepliesKeepTheirOrder() throws Exception {
+        CountingAgent alice = new CountingAgent("alice", 10);
+        CountingAgent bob = new CountingAgent("bob", 10);
+
+        ConversationSession session = new ConversationSession();
+
+        alice.initiateChatAsync(bob, "0", session).get(10, TimeUnit.SECONDS);
+
+        // the replies complete on other threads, with decreasing delays, and still arrive in order
+        assertThat(contents(session.oaiMessages(bob).get(alice)))
+                .containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "TERMINATE");
+        assertThat(contents(session.oaiMessages(alice).get(bob)))
+                .isEqualTo(contents(session.oaiMessages(bob).get(alice)));
+    }
+
+    @Test
+    void testTerminationCompletesTheChat() throws Exception {
+        CountingAgent alice = new CountingAgent("alice", 3);
+        CountingAgent bob = new CountingAgent("bob", 3);
+
+        ConversationSession session = new ConversationSession();
+
+        CompletableFuture<Void> chat = alice.initiateChatAsync(bob, "0", session);
+        chat.get(10, TimeUnit.SECONDS);
+
+        // nobody replies to TERMINATE
+        assertThat(chat.isDone()).isTrue();
+        assertThat(contents(session.oaiMessages(bob).get(alice))).containsExactly("0", "1", "2", "3", "TERMINATE");
+        // the termination check runs before the reply function, which is not called on TERMINATE
+        assertThat(alice.replies.get() + bob.replies.get()).isEqualTo(4);
+    }
+
+    @Test
+    void testAsyncReplyShortCircuitsLaterFunctions() throws Exception {
+        AtomicInteger laterCalls = new AtomicInteger();
+        CountingAgent agent = new CountingAgent("agent", 0);
+        agent.registerReply(ReplyTrigger.any(), (sender, messages) -> {
+            laterCalls.incrementAndGet();
+            return new ReplyResult(true, new ChatMessage("later"));
+        }, 0);
+        agent.registerAsyncReply((sender, messages) -> CompletableFuture.supplyAsync(
+                () -> new ReplyResult(true, new ChatMessage("first"))));
+
+        ChatMessage reply = agent.generateReplyAsync(new CountingAgent("sender", 0), List.of(new ChatMessage("hi")))
+                .get(10, TimeUnit.SECONDS);
+        assertThat(reply.getContent()).isEqualTo("first");
+        assertThat(laterCalls.get()).isZero();
+
+        // a reply function that doesn't terminate passes on to the next one
+        agent.registerAsyncReply((sender, messages) -> CompletableFuture.completedFuture(
+                new ReplyResult(false, null)));
+        reply = agent.generateReplyAsync(new CountingAgent("sender", 0), List.of(new ChatMessage("hi")))
+                .get(10, TimeUnit.SECONDS);
+        assertThat(reply.getContent()).isEqualTo("first");
+    }
+
+    @Test
+    void testExceptionPropagatesThroughTheFuture() {
+        CountingAgent alice = new CountingAgent("alice", 10);
+        CountingAgent bob = new CountingAgent("bob", 10);
+        bob.registerAsyncReply((sender, messages) -> CompletableFuture.failedFuture(
+                new Autogen4jException("Reply failed.")));
+
+        assertThatThrownBy(() -> alice.initiateChatAsync(bob, "0").get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("Reply failed.");
+
+        // the failure of a blocking reply function, run on the executor, propagates too
+        CountingAgent carol = new CountingAgent("carol", 10);
+        carol.registerReply(ReplyTrigger.any(), (sender, messages) -> {
+            throw new Autogen4jException("Blocking reply failed.");
+        }, 0);
+        assertThatThrownBy(() -> alice.initiateChatAsync(carol, "0").get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("Blocking reply failed.");
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+
+    /**
+     * An agent replying asynchronously with the last number plus one, and with TERMINATE beyond a limit.
+     */
+    private static class CountingAgent extends ConversableAgent {
+
+        private final AtomicInteger replies = new AtomicInteger();
+
+        private CountingAgent(String name, int limit) {
+            super(new Builder().name(name).humanInputMode(NEVER));
+            // before generateOaiReply, the last of the built-in reply functions
+            registerAsyncReply(ReplyTrigger.any(), (sender, messages) -> {
+                replies.incrementAndGet();
+                int next = Integer.parseInt(messages.get(messages.size() - 1).getContent()) + 1;
+                String content = next > limit ? "TERMINATE" : String.valueOf(next);
+                // the later replies complete sooner, so that the order doesn't depend on the completion order
+                return CompletableFuture.supplyAsync(() -> new ReplyResult(true, new ChatMessage(content)),
+                        CompletableFuture.delayedExecutor(Math.max(0, 20 - 2L * next), TimeUnit.MILLISECONDS));
+            }, 3);
+        }
+
+        private static class Builder extends ConversableAgent.Builder<Builder> {
+
+            @Override
+            protected ConversableAgent build() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent;
+
+import com.hw.openai.entity.chat.ChatChoice;
+import com.hw.openai.entity.chat.ChatCompletionChunk;
+import com.hw.openai.entity.chat.ChatMessage;
+import com.hw.openai.entity.chat.FunctionCall;
+import com.hw.openai.entity.chat.ToolCall;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class ChatMessageAccumulatorTest {
+
+    @Test
+    void testAssembleContentFromChunks() {
+        ChatMessageAccumulator accumulator = new ChatMessageAccumulator();
+
+        assertThat(accumulator.append(chunk(new ChatMessage(ASSISTANT, null)))).isEmpty();
+        assertThat(accumulator.append(chunk(new ChatMessage(null, "TERMI")))).isEqualTo("TERMI");
+        assertThat(accumulator.append(chunk(new ChatMessage(null, "NATE")))).isEqualTo("NATE");
+        assertThat(accumulator.append(new ChatCompletionChunk())).isEmpty();
+
+        ChatMessage message = accumulator.message();
+        assertThat(message.getRole()).isEqualTo(ASSISTANT);
+        assertThat(message.getContent()).isEqualTo("TERMINATE");
+        assertThat(message.getToolCalls()).isNull();
+    }
+
+    @Test
+    void testAssembleToolCallFragments() {
+        ChatMessageAccumulator accumulator = new ChatMessageAccumulator();
+
+        accumulator.append(chunk(toolCallDelta("call_1", "get_weather", "{\"city\":")));
+        accumulator.append(chunk(toolCallDelta(null, null, "\"Paris\"}")));
+
+        List<ToolCall> toolCalls = accumulator.message().getToolCalls();
+        assertThat(toolCalls).hasSize(1);
+        assertThat(toolCalls.get(0).getId()).isEqualTo("call_1");
+        assertThat(toolCalls.get(0).getFunction().getName()).isEqualTo("get_weather");
+        assertThat(toolCalls.get(0).getFunction().getArguments()).isEqualTo("{\"city\":\"Paris\"}");
+    }
+
+    private static ChatCompletionChunk chunk(ChatMessage delta) {
+        ChatChoice choice = new ChatChoice();
+        choice.setMessage(delta);
+        ChatCompletionChunk chunk = new ChatCompletionChunk();
+        chunk.setChoices(List.of(choice));
+        return chunk;
+    }
+
+    private static ChatMessage toolCallDelta(String id, String name, String arguments) {
+        FunctionCall function = new FunctionCall();
+        function.setName(name);
+        function.setArguments(arguments);
+        ToolCall toolCall = new ToolCall();
+        toolCall.setIndex(0);
+        toolCall.setId(id);
+        toolCall.setFunction(function);
+
+        ChatMessage delta = new ChatMessage();
+        delta.setToolCalls(List.of(toolCall));
+        return delta;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent;
+
+import com.hw.autogen4j.entity.ReplyResult;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class NestedSendTest {
+
+    @Test
+    void testReplyFunctionSeesTheAnswerToItsSend() {
+        TestAgent expert = new TestAgent("expert", (sender, messages) -> new ReplyResult(true, new ChatMessage("42")));
+        TestAgent helper = new TestAgent("helper", (sender, messages) -> ReplyResult.NOT_APPLICABLE);
+        helper.registerReply(ReplyTrigger.any(), (sender, messages) -> {
+            // the expert answers before the send returns, instead of after this turn
+            helper.send(expert, "What is the answer?");
+            String answer = helper.lastMessage(expert).getContent();
+            return new ReplyResult(true, new ChatMessage("The expert says " + answer));
+        }, 0);
+        // the helper does not answer the expert, which ends the nested conversation
+        helper.registerReply(ReplyTrigger.of(expert), (sender, messages) -> new ReplyResult(true, null), 0);
+
+        List<String> received = new ArrayList<>();
+        TestAgent user = new TestAgent("user", (sender, messages) -> {
+            received.add(messages.get(messages.size() - 1).getContent());
+            return new ReplyResult(true, null);
+        });
+
+        user.initiateChat(helper, "Ask the expert.");
+
+        assertThat(received).containsExactly("The expert says 42");
+    }
+
+    @Test
+    void testHistoryKeepsItsOwnCopyOfTheMessages() {
+        ChatMessage answer = new ChatMessage("42");
+        TestAgent expert = new TestAgent("expert", (sender, messages) -> new ReplyResult(true, answer));
+        TestAgent user = new TestAgent("user", (sender, messages) -> new ReplyResult(true, null));
+        ChatMessage question = new ChatMessage("What is the answer?");
+
+        user.send(expert, question, false, true);
+        question.setContent("Edited question.");
+
+        assertThat(user.lastMessage(expert).getContent()).isEqualTo("What is the answer?");
+        assertThat(expert.lastMessage(user).getContent()).isEqualTo("What is the answer?");
+
+        user.send(expert, question, true, true);
+        answer.setContent("Edited answer.");
+
+        assertThat(user.lastMessage(expert).getContent()).isEqualTo("42");
+        assertThat(expert.lastMessage(user).getContent()).isEqualTo("42");
+    }
+
+    /**
+     * An agent replying with the given function instead of calling the llm.
+     */
+    private static class TestAgent extends ConversableAgent {
+
+        private TestAgent(String name, BiFunction<Agent, List<ChatMessage>, ReplyResult> reply) {
+            super(new Builder().name(name).humanInputMode(NEVER));
+            // before generateOaiReply, the last of the built-in reply functions
+            registerReply(ReplyTrigger.any(), reply, 3);
+        }
+
+        private static class Builder extends ConversableAgent.Builder<Builder> {
+
+            @Override
+            protected ConversableAgent build() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+}
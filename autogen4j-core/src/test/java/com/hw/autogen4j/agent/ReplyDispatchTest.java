@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent;
+
+import com.hw.autogen4j.entity.ReplyResult;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class ReplyDispatchTest {
+
+    private final AssistantAgent assistant = AssistantAgent.builder().name("assistant").build();
+
+    private final UserProxyAgent userProxy = UserProxyAgent.builder().name("user_proxy").build();
+
+    @Test
+    void testDispatchBySenderClassAndInstance() {
+        TestAgent agent = new TestAgent();
+        agent.registerReply(ReplyTrigger.of(UserProxyAgent.class), reply("from a user proxy"), 0);
+        agent.registerReply(ReplyTrigger.of(assistant), reply("from the assistant"), 0);
+
+        assertThat(agent.generateReply(userProxy, messages()).getContent()).isEqualTo("from a user proxy");
+        assertThat(agent.generateReply(assistant, messages()).getContent()).isEqualTo("from the assistant");
+        assertThat(agent.generateReply(new TestAgent(), messages()).getContent()).isEqualTo("default");
+    }
+
+    @Test
+    void testLaterRegistrationInvalidatesDispatchTable() {
+        TestAgent agent = new TestAgent();
+        assertThat(agent.generateReply(assistant, messages()).getContent()).isEqualTo("default");
+
+        agent.registerReply(sender -> sender.getName().startsWith("assist"), reply("by name"), 0);
+        assertThat(agent.generateReply(assistant, messages()).getContent()).isEqualTo("by name");
+    }
+
+    @Test
+    void testTriggerIsEvaluatedOncePerSender() {
+        AtomicInteger evaluations = new AtomicInteger();
+        TestAgent agent = new TestAgent();
+        agent.registerReply(sender -> evaluations.incrementAndGet() < 0, reply("never"), 0);
+
+        for (int i = 0; i < 10; i++) {
+            agent.generateReply(assistant, messages());
+        }
+        assertThat(evaluations).hasValue(1);
+    }
+
+    private static BiFunction<Agent, List<ChatMessage>, ReplyResult> reply(String content) {
+        return (sender, messages) -> new ReplyResult(true, new ChatMessage(content));
+    }
+
+    private static List<ChatMessage> messages() {
+        return List.of(new ChatMessage("hello"));
+    }
+
+    /**
+     * An agent replying "default" instead of calling the llm.
+     */
+    private static class TestAgent extends ConversableAgent {
+
+        private TestAgent() {
+            super(new Builder().name("test").humanInputMode(NEVER));
+            // before generateOaiReply, the last of the built-in reply functions
+            registerReply(ReplyTrigger.any(), reply("default"), 3);
+        }
+
+        private static class Builder extends ConversableAgent.Builder<Builder> {
+
+            @Override
+            protected ConversableAgent build() {
+                return new TestAgent();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent;
+
+import com.hw.autogen4j.cache.InMemoryReplyCache;
+import com.hw.autogen4j.model.StubChatModel;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class StreamedReplyCacheTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final StringBuilder streamed = new StringBuilder();
+
+    @Test
+    void testNotCacheReplyStoppedOnTermination() {
+        AssistantAgent assistant = assistant("The answer is 42. TERMINATE and some more words");
+        UserProxyAgent user = user();
+
+        ChatMessage reply = assistant.generateOaiReply(user, List.of(new ChatMessage("Hello"))).reply();
+        // the stream stops at the chunk matching the termination condition of the recipient
+        assertThat(reply.getContent()).isEqualTo("The answer is 42. TERMINATE ");
+        assertThat(streamed.toString()).isEqualTo(reply.getContent());
+
+        // the truncated reply is not cached, the model is asked again
+        assistant.generateOaiReply(user, List.of(new ChatMessage("Hello")));
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testCacheCompleteStreamedReply() {
+        AssistantAgent assistant = assistant("The answer is 42.");
+        UserProxyAgent user = user();
+
+        assistant.generateOaiReply(user, List.of(new ChatMessage("Hello")));
+        ChatMessage reply = assistant.generateOaiReply(user, List.of(new ChatMessage("Hello"))).reply();
+        assertThat(reply.getContent()).isEqualTo("The answer is 42.");
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    private AssistantAgent assistant(String content) {
+        return AssistantAgent.builder()
+                .name("assistant")
+                .chatModel(StubChatModel.builder()
+                        .responder(request -> {
+                            calls.incrementAndGet();
+                            return new ChatMessage(content);
+                        })
+                        .build())
+                .streamListener((agent, delta) -> streamed.append(delta))
+                .replyCache(new InMemoryReplyCache(10, null))
+                .build();
+    }
+
+    private static UserProxyAgent user() {
+        return UserProxyAgent.builder()
+                .name("user")
+                .humanInputMode(NEVER)
+                .isTerminationMsg(message -> StringUtils.contains(message.getContent(), "TERMINATE"))
+                .build();
+    }
+}
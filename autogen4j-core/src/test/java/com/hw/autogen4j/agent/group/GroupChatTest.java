@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.agent.group;
+
+import com.hw.autogen4j.agent.Agent;
+import com.hw.autogen4j.agent.AssistantAgent;
+import com.hw.autogen4j.agent.UserProxyAgent;
+import com.hw.autogen4j.context.ContextPolicy;
+import com.hw.autogen4j.conversation.ConversationSession;
+import com.hw.autogen4j.conversation.SharedMessages;
+import com.hw.autogen4j.model.StubChatModel;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class GroupChatTest {
+
+    private final AssistantAgent alice = AssistantAgent.builder().name("alice").humanInputMode(NEVER).build();
+
+    private final AssistantAgent bob = AssistantAgent.builder().name("bob").humanInputMode(NEVER).build();
+
+    @Test
+    void testSummarizeHistoryOnceAcrossSpeakerSelections() {
+        AtomicInteger summaries = new AtomicInteger();
+        AssistantAgent selector = AssistantAgent.builder()
+                .name("selector")
+                .chatModel(StubChatModel.builder().replies("bob").build())
+                // every message takes 10 tokens
+                .contextPolicy(ContextPolicy.summarizeOlder(40, (previousSummary, messages) -> {
+                    summaries.incrementAndGet();
+                    return "summary";
+                }, message -> 10))
+                .build();
+        GroupChat groupChat = GroupChat.builder().agents(List.<Agent>of(alice, bob)).build();
+        for (int i = 1; i <= 5; i++) {
+            groupChat.append(new ChatMessage(String.valueOf(i)));
+        }
+
+        // the selection prompt changes every round, the summary of the history is reused
+        for (int round = 0; round < 3; round++) {
+            assertThat(groupChat.selectSpeaker(alice, selector)).isSameAs(bob);
+        }
+        assertThat(summaries.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testParticipantsShareBroadcastMessages() {
+        AssistantAgent carol = AssistantAgent.builder()
+                .name("carol")
+                .chatModel(StubChatModel.builder().replies("carol speaks").build())
+                .build();
+        AssistantAgent dave = AssistantAgent.builder()
+                .name("dave")
+                .chatModel(StubChatModel.builder().replies("dave speaks").build())
+                .build();
+        GroupChat groupChat = GroupChat.builder().agents(List.<Agent>of(carol, dave)).maxRound(4).build();
+        GroupChatManager manager = GroupChatManager.builder()
+                .groupChat(groupChat)
+                .chatModel(StubChatModel.builder().replies("carol", "dave").build())
+                .build();
+        UserProxyAgent user = UserProxyAgent.builder().name("user").humanInputMode(NEVER).build();
+
+        ConversationSession session = new ConversationSession();
+        user.initiateChat(manager, "Start.", session);
+
+        List<ChatMessage> transcript = groupChat.getMessages();
+        assertThat(transcript).hasSize(4);
+        assertThat(transcript.get(1).getName()).isEqualTo("carol");
+        // the transcript and the histories of the participants reference the same messages
+        List<ChatMessage> daveHistory = session.oaiMessages(dave).get(manager);
+        assertThat(daveHistory.get(0)).isSameAs(transcript.get(0));
+        assertThat(daveHistory.get(1)).isSameAs(transcript.get(1));
+        assertThat(session.oaiMessages(carol).get(manager).get(0)).isSameAs(transcript.get(0));
+        assertThat(SharedMessages.isShared(daveHistory.get(2))).isTrue();
+
+        groupChat.reset();
+        assertThat(groupChat.getMessages()).isEmpty();
+    }
+}
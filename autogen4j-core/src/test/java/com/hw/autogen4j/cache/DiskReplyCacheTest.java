@@ -0,0 +1,157 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.cache;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class DiskReplyCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReuseRepliesAcrossInstances() {
+        try (var cache = DiskReplyCache.builder(tempDir).build()) {
+            cache.put("key", new ChatMessage(ASSISTANT, "reply"));
+        }
+        try (var cache = DiskReplyCache.builder(tempDir).build()) {
+            ChatMessage reply = cache.get("key");
+            assertThat(reply.getRole()).isEqualTo(ASSISTANT);
+            assertThat(reply.getContent()).isEqualTo("reply");
+            assertThat(cache.get("missing")).isNull();
+            assertThat(cache.stats().hitCount()).isEqualTo(1);
+            assertThat(cache.stats().missCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testRefreshOnMissOnlyAfterAnotherWriter() {
+        // two instances on the same directory stand for two processes
+        try (var writer = DiskReplyCache.builder(tempDir).build();
+                var reader = DiskReplyCache.builder(tempDir).build()) {
+            long refreshes = reader.refreshes();
+            for (int i = 0; i < 10; i++) {
+                assertThat(reader.get("key")).isNull();
+            }
+            assertThat(reader.refreshes()).isEqualTo(refreshes);
+
+            writer.put("key", new ChatMessage(ASSISTANT, "reply"));
+            assertThat(reader.get("key").getContent()).isEqualTo("reply");
+            assertThat(reader.get("missing")).isNull();
+            assertThat(reader.refreshes()).isEqualTo(refreshes + 1);
+        }
+    }
+
+    @Test
+    void testConcurrentWritersInOneJvm() throws Exception {
+        int keys = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (var first = DiskReplyCache.builder(tempDir).build();
+                var second = DiskReplyCache.builder(tempDir).build()) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> writers = new ArrayList<>();
+            for (DiskReplyCache cache : List.of(first, second)) {
+                String prefix = cache == first ? "first-" : "second-";
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < keys; i++) {
+                        cache.put(prefix + i, new ChatMessage(ASSISTANT, prefix + i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+
+            // each instance reads the replies written by the other one
+            for (int i = 0; i < keys; i++) {
+                assertThat(first.get("second-" + i).getContent()).isEqualTo("second-" + i);
+                assertThat(second.get("first-" + i).getContent()).isEqualTo("first-" + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCompactOlderSegments() throws IOException {
+        try (var cache = DiskReplyCache.builder(tempDir).maxSegmentBytes(1024).compactionSegments(1).build()) {
+            for (int i = 0; i < 200; i++) {
+                cache.put("key-" + i, new ChatMessage(ASSISTANT, "reply " + i));
+            }
+            assertThat(countSegments()).isGreaterThan(2);
+
+            cache.compact();
+            assertThat(countSegments()).isEqualTo(2);
+            for (int i = 0; i < 200; i++) {
+                assertThat(cache.get("key-" + i).getContent()).isEqualTo("reply " + i);
+            }
+        }
+    }
+
+    @Test
+    void testRecoverFromTornRecord() throws IOException {
+        try (var cache = DiskReplyCache.builder(tempDir).build()) {
+            cache.put("first", new ChatMessage(ASSISTANT, "1"));
+        }
+        // simulate a writer that crashed in the middle of a record
+        try (Stream<Path> files = Files.list(tempDir)) {
+            Path segment = files.filter(path -> path.toString().endsWith(".seg")).findFirst().orElseThrow();
+            Files.write(segment, new byte[]{0x41, 0x47, 0x4A}, StandardOpenOption.APPEND);
+        }
+        try (var cache = DiskReplyCache.builder(tempDir).build()) {
+            cache.put("second", new ChatMessage(ASSISTANT, "2"));
+        }
+        try (var cache = DiskReplyCache.builder(tempDir).build()) {
+            assertThat(cache.get("first").getContent()).isEqualTo("1");
+            assertThat(cache.get("second").getContent()).isEqualTo("2");
+        }
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).count();
+        }
+    }
+}
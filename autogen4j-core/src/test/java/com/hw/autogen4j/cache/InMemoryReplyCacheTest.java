@@ -0,0 +1,114 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.cache;
+
+import com.google.common.base.Ticker;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class InMemoryReplyCacheTest {
+
+    @Test
+    void testKeyDependsOnlyOnRequestContent() {
+        ChatCompletion request = request("gpt-4", "Hello");
+
+        assertThat(ReplyCache.keyOf(request))
+                .isEqualTo(ReplyCache.keyOf(request("gpt-4", "Hello")))
+                .isNotEqualTo(ReplyCache.keyOf(request("gpt-4", "Hello!")))
+                .isNotEqualTo(ReplyCache.keyOf(request("gpt-3.5-turbo", "Hello")))
+                .hasSize(64);
+    }
+
+    @Test
+    void testCountHitsAndMisses() {
+        ReplyCache cache = new InMemoryReplyCache(10, null);
+
+        assertThat(cache.get("key")).isNull();
+        cache.put("key", new ChatMessage("reply"));
+        assertThat(cache.get("key").getContent()).isEqualTo("reply");
+
+        CacheStats stats = cache.stats();
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(1);
+        assertThat(stats.hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testEvictLeastRecentlyUsedEntry() {
+        ReplyCache cache = new InMemoryReplyCache(2, null);
+
+        cache.put("first", new ChatMessage("1"));
+        cache.put("second", new ChatMessage("2"));
+        cache.get("first");
+        cache.put("third", new ChatMessage("3"));
+
+        assertThat(cache.get("first")).isNotNull();
+        assertThat(cache.get("second")).isNull();
+        assertThat(cache.stats().evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testExpireEntryAfterTtl() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        ReplyCache cache = new InMemoryReplyCache(10, Duration.ofMinutes(1), ticker);
+
+        cache.put("key", new ChatMessage("reply"));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertThat(cache.get("key")).isNotNull();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(cache.get("key")).isNull();
+    }
+
+    @Test
+    void testCachedReplyIsNotModifiedByCaller() {
+        ReplyCache cache = new InMemoryReplyCache(10, null);
+        cache.put("key", new ChatMessage("reply"));
+
+        cache.get("key").setName("speaker");
+        assertThat(cache.get("key").getName()).isNull();
+    }
+
+    private static ChatCompletion request(String model, String content) {
+        return ChatCompletion.builder()
+                .model(model)
+                .temperature(0)
+                .messages(List.of(new ChatMessage(content)))
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.code;
+
+import com.hw.autogen4j.entity.CodeExecutionConfig;
+import com.hw.autogen4j.entity.CodeExecutionResult;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static com.hw.autogen4j.util.CodeUtil.executeCode;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class PythonWorkerPoolTest {
+
+    private PythonWorkerPool pool;
+
+    private CodeExecutionConfig config;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        pool = PythonWorkerPool.builder().maxWorkers(2).maxRunsPerWorker(3).build();
+        config = CodeExecutionConfig.builder().workDir(tempDir.toString()).pythonWorkerPool(pool).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void testIsolateGlobalsBetweenRuns() {
+        CodeExecutionResult result = executeCode("python", "x = 42\nprint('x is', x)", config);
+        assertThat(result.exitCode()).isZero();
+        assertThat(result.logs()).isEqualTo("x is 42");
+
+        result = executeCode("python", "print(x)", config);
+        assertThat(result.exitCode()).isEqualTo(1);
+        assertThat(result.logs()).contains("NameError");
+        // the traceback is the one of the script, relative to the work directory
+        assertThat(result.logs()).startsWith("Traceback (most recent call last):\n  File \"tmp_code_");
+    }
+
+    @Test
+    void testKeepExitCodeSemantics() {
+        CodeExecutionResult result = executeCode("python", "import sys\nsys.exit(3)", config);
+        assertThat(result.exitCode()).isEqualTo(3);
+
+        result = executeCode("python", "raise Exception('Test Exception')", config);
+        assertThat(result.exitCode()).isEqualTo(1);
+        assertThat(result.logs()).contains("Test Exception");
+
+        // the interpreter crashes, the next run gets a new one
+        result = executeCode("python", "import os\nos._exit(5)", config);
+        assertThat(result.exitCode()).isEqualTo(5);
+        result = executeCode("python", "print('Hello, Python!')", config);
+        assertThat(result.exitCode()).isZero();
+        assertThat(result.logs()).isEqualTo("Hello, Python!");
+    }
+
+    @Test
+    void testKillWorkerOnTimeout() {
+        config.setTimeout(1);
+        CodeExecutionResult result = executeCode("python", "import time\ntime.sleep(10)", config);
+        assertThat(result.exitCode()).isNotZero();
+
+        result = executeCode("python", "print('still running')", config);
+        assertThat(result.logs()).isEqualTo("still running");
+    }
+
+    @Test
+    void testRetireWorkerAfterMaxRuns() {
+        String code = "import os\nprint(os.getpid())";
+        String first = executeCode("python", code, config).logs();
+        assertThat(executeCode("python", code, config).logs()).isEqualTo(first);
+        assertThat(executeCode("python", code, config).logs()).isEqualTo(first);
+        // the worker is retired after 3 runs
+        assertThat(executeCode("python", code, config).logs()).isNotEqualTo(first);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.context;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class ContextPolicyTest {
+
+    /**
+     * every message takes 10 tokens.
+     */
+    private static final TokenCounter TEN_TOKENS = message -> 10;
+
+    @Test
+    void testSlidingWindowKeepsRecentMessagesWithinBudget() {
+        ContextPolicy policy = ContextPolicy.slidingWindow(35, TEN_TOKENS);
+        List<ChatMessage> history = history(3);
+
+        assertThat(policy.apply(history)).isSameAs(history);
+
+        history.add(new ChatMessage("4"));
+        history.add(new ChatMessage("5"));
+        assertThat(contents(policy.apply(history))).containsExactly("3", "4", "5");
+    }
+
+    @Test
+    void testSlidingWindowAlwaysKeepsLastMessage() {
+        ContextPolicy policy = ContextPolicy.slidingWindow(5, TEN_TOKENS);
+
+        assertThat(contents(policy.apply(history(3)))).containsExactly("3");
+    }
+
+    @Test
+    void testCountTokensOfEachMessageOnce() {
+        AtomicInteger counted = new AtomicInteger();
+        ContextPolicy policy = ContextPolicy.slidingWindow(100, message -> {
+            counted.incrementAndGet();
+            return 10;
+        });
+        List<ChatMessage> history = history(5);
+
+        policy.apply(history);
+        history.add(new ChatMessage("6"));
+        policy.apply(history);
+        policy.apply(history);
+
+        assertThat(counted).hasValue(6);
+    }
+
+    @Test
+    void testKeepFirstAndLast() {
+        ContextPolicy policy = ContextPolicy.keepFirstAndLast(1, 2);
+
+        assertThat(contents(policy.apply(history(3)))).containsExactly("1", "2", "3");
+        assertThat(contents(policy.apply(history(6)))).containsExactly("1", "5", "6");
+    }
+
+    @Test
+    void testSummarizeOlderMessagesIncrementally() {
+        List<String> calls = new ArrayList<>();
+        Summarizer summarizer = (previousSummary, messages) -> {
+            String summary = (previousSummary == null ? "" : previousSummary) + String.join("", contents(messages));
+            calls.add(summary);
+            return summary;
+        };
+        ContextPolicy policy = ContextPolicy.summarizeOlder(40, summarizer, TEN_TOKENS);
+        List<ChatMessage> history = history(4);
+
+        assertThat(policy.apply(history)).isSameAs(history);
+
+        // 5 messages overflow the budget, the summary absorbs them until the recent ones take half of it
+        history.add(new ChatMessage("5"));
+        List<ChatMessage> context = policy.apply(history);
+        assertThat(context.get(0).getContent()).endsWith("123");
+        assertThat(contents(context.subList(1, context.size()))).containsExactly("4", "5");
+
+        // the summary is reused until the recent messages overflow the budget again
+        history.add(new ChatMessage("6"));
+        history.add(new ChatMessage("7"));
+        assertThat(policy.apply(history)).hasSize(5);
+        assertThat(calls).hasSize(1);
+
+        history.add(new ChatMessage("8"));
+        context = policy.apply(history);
+        assertThat(context.get(0).getContent()).endsWith("123456");
+        assertThat(contents(context.subList(1, context.size()))).containsExactly("7", "8");
+        assertThat(calls).containsExactly("123", "123456");
+    }
+
+    private static List<ChatMessage> history(int size) {
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            history.add(new ChatMessage(String.valueOf(i)));
+        }
+        return history;
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class ConversationDriverTest {
+
+    @Test
+    void testRunManyTurnsInConstantStackDepth() {
+        int turns = 100_000;
+        AtomicInteger counter = new AtomicInteger();
+        List<Integer> depths = new ArrayList<>();
+
+        Runnable[] turn = new Runnable[1];
+        turn[0] = () -> {
+            if (counter.incrementAndGet() % 10_000 == 0) {
+                depths.add(Thread.currentThread().getStackTrace().length);
+            }
+            if (counter.get() < turns) {
+                ConversationDriver.schedule(turn[0]);
+            }
+        };
+        ConversationDriver.run(turn[0]);
+
+        assertThat(counter.get()).isEqualTo(turns);
+        assertThat(depths).hasSize(10).allMatch(depth -> depth.equals(depths.get(0)));
+        assertThat(ConversationDriver.isRunning()).isFalse();
+    }
+
+    @Test
+    void testNestedConversationCompletesBeforeReturning() {
+        List<String> events = new ArrayList<>();
+
+        ConversationDriver.run(() -> {
+            ConversationDriver.schedule(() -> events.add("outer-second"));
+            ConversationDriver.run(() -> {
+                events.add("inner-first");
+                ConversationDriver.schedule(() -> events.add("inner-second"));
+            });
+            events.add("outer-first");
+        });
+
+        assertThat(events).containsExactly("inner-first", "inner-second", "outer-first", "outer-second");
+    }
+
+    @Test
+    void testSuspendedActionRunsItsTurnsBeforeReturning() {
+        List<String> events = new ArrayList<>();
+
+        ConversationDriver.run(() -> {
+            ConversationDriver.schedule(() -> events.add("outer-second"));
+            ConversationDriver.suspend(() -> {
+                ConversationDriver.schedule(() -> {
+                    events.add("suspended-first");
+                    ConversationDriver.schedule(() -> events.add("suspended-second"));
+                });
+                return events.add("suspended-returned");
+            });
+            events.add("outer-first");
+        });
+
+        assertThat(events).containsExactly("suspended-first", "suspended-second", "suspended-returned",
+                "outer-first", "outer-second");
+        assertThat(ConversationDriver.isRunning()).isFalse();
+    }
+}
@@ -0,0 +1,144 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class ConversationExecutorTest {
+
+    /**
+     * Each stubbed chat waits until all chats are running at the same time, then plays a few turns that block on
+     * simulated model latency.
+     */
+    @Test
+    void testRunTenThousandConcurrentStubbedChats() throws Exception {
+        int chats = 10_000;
+        int turns = 5;
+        CountDownLatch allRunning = new CountDownLatch(chats);
+        AtomicInteger completedTurns = new AtomicInteger();
+
+        try (var executor = ConversationExecutor.builder()
+                .maxConcurrentChats(chats)
+                .chatTimeout(Duration.ofMinutes(2))
+                .build()) {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>(chats);
+            for (int i = 0; i < chats; i++) {
+                futures.add(executor.submit(() -> {
+                    allRunning.countDown();
+                    if (!allRunning.await(1, TimeUnit.MINUTES)) {
+                        throw new IllegalStateException("Chats did not run concurrently.");
+                    }
+                    for (int turn = 0; turn < turns; turn++) {
+                        // simulated model latency
+                        Thread.sleep(20);
+                        completedTurns.incrementAndGet();
+                    }
+                    return turns;
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(2, TimeUnit.MINUTES);
+        }
+        assertThat(completedTurns.get()).isEqualTo(chats * turns);
+    }
+
+    @Test
+    void testRejectChatWhenAdmissionIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (var executor = ConversationExecutor.builder().maxConcurrentChats(1).build()) {
+            CompletableFuture<Boolean> running = executor.submit(() -> release.await(1, TimeUnit.MINUTES));
+            CompletableFuture<Boolean> rejected = executor.submit(() -> true);
+
+            assertThatThrownBy(rejected::get).hasCauseInstanceOf(RejectedExecutionException.class);
+            release.countDown();
+            assertThat(running.get(1, TimeUnit.MINUTES)).isTrue();
+        }
+    }
+
+    @Test
+    void testFailChatAfterDeadline() {
+        try (var executor = ConversationExecutor.builder().chatTimeout(Duration.ofMillis(100)).build()) {
+            CompletableFuture<Object> future = executor.submit(() -> {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                return null;
+            });
+
+            assertThatThrownBy(() -> future.get(1, TimeUnit.MINUTES))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(TimeoutException.class);
+        }
+    }
+
+    @Test
+    void testDrainRunningChatsOnClose() {
+        AtomicInteger finished = new AtomicInteger();
+        var executor = ConversationExecutor.builder().build();
+        for (int i = 0; i < 10; i++) {
+            executor.submit(() -> {
+                Thread.sleep(100);
+                return finished.incrementAndGet();
+            });
+        }
+        executor.close();
+
+        assertThat(finished.get()).isEqualTo(10);
+        assertThat(executor.runningChats()).isZero();
+        assertThatThrownBy(() -> executor.submit(() -> true).get())
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void testReleaseSlotWhenThreadCannotStart() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        try (var executor = ConversationExecutor.builder()
+                .maxConcurrentChats(1)
+                .threadFactory(runnable -> switch (attempts.incrementAndGet()) {
+                    case 1 -> null;
+                    case 2 -> throw new OutOfMemoryError("unable to create native thread");
+                    default -> new Thread(runnable);
+                })
+                .build()) {
+            assertThatThrownBy(() -> executor.submit(() -> true).get())
+                    .hasCauseInstanceOf(RejectedExecutionException.class);
+            assertThatThrownBy(() -> executor.submit(() -> true).get())
+                    .hasCauseInstanceOf(OutOfMemoryError.class);
+            assertThat(executor.runningChats()).isZero();
+
+            // the single slot is still available
+            assertThat(executor.submit(() -> true).get(1, TimeUnit.MINUTES)).isTrue();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class ConversationSessionTest {
+
+    @Test
+    void testBindSessionToCallingThread() {
+        ConversationSession outer = new ConversationSession();
+        ConversationSession inner = new ConversationSession();
+
+        assertThat(ConversationSession.current()).isNull();
+        outer.run(() -> {
+            assertThat(ConversationSession.current()).isSameAs(outer);
+            inner.run(() -> assertThat(ConversationSession.current()).isSameAs(inner));
+            assertThat(ConversationSession.current()).isSameAs(outer);
+        });
+        assertThat(ConversationSession.current()).isNull();
+    }
+
+    @Test
+    void testCarrySessionAcrossThreads() {
+        ConversationSession session = new ConversationSession();
+
+        ConversationSession seen = CompletableFuture.supplyAsync(() -> "value")
+                .thenApplyAsync(session.bind(value -> ConversationSession.current()))
+                .join();
+        assertThat(seen).isSameAs(session);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.SYSTEM;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class MessageHistoryTest {
+
+    @Test
+    void testAppendDoesNotModifyHistory() {
+        MessageHistory empty = MessageHistory.empty();
+        MessageHistory first = empty.append(new ChatMessage("1"));
+        MessageHistory second = first.append(new ChatMessage("2"));
+
+        assertThat(empty).isEmpty();
+        assertThat(contents(first)).containsExactly("1");
+        assertThat(contents(second)).containsExactly("1", "2");
+        assertThat(second.last().getContent()).isEqualTo("2");
+        assertThatThrownBy(() -> first.get(1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void testVersionsShareStorageUntilForked() {
+        MessageHistory history = MessageHistory.empty();
+        for (int i = 1; i <= 100; i++) {
+            history = history.append(new ChatMessage(String.valueOf(i)));
+        }
+        MessageHistory longer = history.append(new ChatMessage("101"));
+        assertThat(longer.storageKey()).isSameAs(history.storageKey());
+
+        // appending to an older version forks it, leaving the newer one intact
+        MessageHistory forked = history.append(new ChatMessage("fork"));
+        assertThat(forked.storageKey()).isNotSameAs(history.storageKey());
+        assertThat(forked.last().getContent()).isEqualTo("fork");
+        assertThat(longer.last().getContent()).isEqualTo("101");
+        assertThat(forked.subList(0, 100)).isEqualTo(longer.subList(0, 100));
+    }
+
+    @Test
+    void testConcatIsViewOfBothLists() {
+        MessageHistory history = MessageHistory.of(List.of(new ChatMessage("1"), new ChatMessage("2")));
+        List<ChatMessage> request = MessageHistory.concat(List.of(new ChatMessage(SYSTEM, "system")), history);
+
+        assertThat(contents(request)).containsExactly("system", "1", "2");
+        assertThatThrownBy(() -> request.add(new ChatMessage("3"))).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.conversation;
+
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+import static com.hw.openai.entity.chat.ChatMessageRole.USER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class SharedMessagesTest {
+
+    @Test
+    void testShareCopiesMessageOnce() {
+        ChatMessage message = new ChatMessage(USER, "hello");
+
+        ChatMessage shared = SharedMessages.share(message, "coder");
+
+        assertThat(shared.getName()).isEqualTo("coder");
+        assertThat(message.getName()).isNull();
+        assertThat(SharedMessages.isShared(shared)).isTrue();
+        assertThat(SharedMessages.isShared(message)).isFalse();
+        assertThat(SharedMessages.share(shared, "coder")).isSameAs(shared);
+        assertThat(SharedMessages.share(shared, "pm")).isNotSameAs(shared);
+    }
+
+    @Test
+    void testRoleVariantsAreCreatedOnce() {
+        ChatMessage shared = SharedMessages.share(new ChatMessage(USER, "hello"), "coder");
+
+        ChatMessage assistant = SharedMessages.withRole(shared, ASSISTANT);
+
+        assertThat(assistant.getRole()).isEqualTo(ASSISTANT);
+        assertThat(assistant.getContent()).isSameAs(shared.getContent());
+        assertThat(SharedMessages.isShared(assistant)).isTrue();
+        assertThat(SharedMessages.withRole(shared, ASSISTANT)).isSameAs(assistant);
+        assertThat(SharedMessages.withRole(assistant, USER)).isSameAs(shared);
+    }
+
+    @Test
+    void testRejectMessageNotShared() {
+        assertThatThrownBy(() -> SharedMessages.withRole(new ChatMessage(USER, "hello"), ASSISTANT))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.google.common.base.Ticker;
+import com.hw.autogen4j.agent.ConversableAgent;
+import com.hw.autogen4j.agent.ReplyTrigger;
+import com.hw.autogen4j.agent.UserProxyAgent;
+import com.hw.autogen4j.cache.CacheStats;
+import com.hw.autogen4j.conversation.ConversationSession;
+import com.hw.autogen4j.entity.ReplyResult;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.entity.chat.ChatMessage;
+import com.hw.openai.entity.chat.FunctionCall;
+import com.hw.openai.entity.chat.ToolCall;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+import static com.hw.openai.entity.chat.ChatMessageRole.FUNCTION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class FunctionCacheTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private String lookup(Map<String, Object> arguments) {
+        calls.incrementAndGet();
+        if (arguments.containsKey("fail")) {
+            throw new Autogen4jException("Lookup failed.");
+        }
+        return "value of " + arguments.get("key");
+    }
+
+    @SuppressWarnings("unchecked")
+    private FunctionRegistry registry(FunctionCachePolicy cachePolicy) {
+        return FunctionRegistry.builder()
+                .function("lookup", "Look up a value.", Map.class, arguments -> lookup(arguments), cachePolicy)
+                .build();
+    }
+
+    @Test
+    void testGlobalCacheKeyedOnCanonicalArguments() {
+        FunctionRegistry registry = registry(FunctionCachePolicy.global(100, null));
+
+        assertThat(registry.execute("lookup", "{\"key\": \"a\", \"options\": {\"x\": 1, \"y\": 2}}"))
+                .isEqualTo("value of a");
+        // the same arguments, in another order and with other whitespace
+        assertThat(registry.execute("lookup", "{\"options\":{\"y\":2,\"x\":1},\"key\":\"a\"}"))
+                .isEqualTo("value of a");
+        assertThat(registry.execute("lookup", "{\"key\": \"b\"}")).isEqualTo("value of b");
+        assertThat(calls.get()).isEqualTo(2);
+
+        // failures are not cached
+        assertThatThrownBy(() -> registry.execute("lookup", "{\"fail\": true}")).hasMessage("Lookup failed.");
+        assertThatThrownBy(() -> registry.execute("lookup", "{\"fail\": true}")).hasMessage("Lookup failed.");
+        assertThat(calls.get()).isEqualTo(4);
+
+        CacheStats stats = registry.cacheStats("lookup");
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(4);
+        assertThat(stats.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testPerConversationCacheIsNotShared() {
+        FunctionRegistry registry = registry(FunctionCachePolicy.perConversation());
+        ConversationSession first = new ConversationSession();
+        ConversationSession second = new ConversationSession();
+
+        first.run(() -> registry.execute("lookup", "{\"key\": \"a\"}"));
+        first.run(() -> registry.execute("lookup", "{\"key\": \"a\"}"));
+        second.run(() -> registry.execute("lookup", "{\"key\": \"a\"}"));
+        assertThat(calls.get()).isEqualTo(2);
+
+        // without a session, there is no conversation to cache the results in
+        registry.execute("lookup", "{\"key\": \"a\"}");
+        assertThat(calls.get()).isEqualTo(3);
+
+        CacheStats stats = registry.cacheStats("lookup");
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(2);
+        assertThat(first.call(() -> registry.cacheStats("lookup").size())).isEqualTo(1);
+    }
+
+    @Test
+    void testClearPerConversationCacheOnNewChat() {
+        FunctionRegistry registry = registry(FunctionCachePolicy.perConversation());
+        UserProxyAgent userProxy = UserProxyAgent.builder()
+                .name("user_proxy")
+                .humanInputMode(NEVER)
+                .functionMap(registry)
+                .build();
+        ToolCallingAgent assistant = new ToolCallingAgent();
+
+        // without a bound session, each chat calls the function once, then hits the cache
+        userProxy.initiateChat(assistant, "Look up a, twice.");
+        assertThat(calls.get()).isEqualTo(1);
+        userProxy.initiateChat(assistant, "Look up a, twice.");
+        assertThat(calls.get()).isEqualTo(2);
+
+        CacheStats stats = registry.cacheStats("lookup");
+        assertThat(stats.hitCount()).isEqualTo(2);
+        assertThat(stats.missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testExpireAndEvictResults() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        FunctionCache cache = new FunctionCache("lookup", FunctionCachePolicy.global(2, Duration.ofMinutes(1)),
+                ticker);
+
+        cache.get("{\"key\": \"a\"}", arguments -> "a" + calls.incrementAndGet());
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertThat(cache.get("{\"key\": \"a\"}", arguments -> "a" + calls.incrementAndGet())).isEqualTo("a1");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(cache.get("{\"key\": \"a\"}", arguments -> "a" + calls.incrementAndGet())).isEqualTo("a2");
+
+        // the least recently used result is evicted beyond the maximum size
+        cache.get("{\"key\": \"b\"}", arguments -> "b");
+        cache.get("{\"key\": \"c\"}", arguments -> "c");
+        assertThat(cache.stats().size()).isEqualTo(2);
+        assertThat(cache.stats().evictionCount()).isNotZero();
+    }
+
+    /**
+     * An agent calling the lookup function twice, then ending the chat.
+     */
+    private static class ToolCallingAgent extends ConversableAgent {
+
+        private ToolCallingAgent() {
+            super(new Builder().name("assistant").humanInputMode(NEVER));
+            registerReply(ReplyTrigger.any(), (sender, messages) -> {
+                long results = messages.stream().filter(message -> FUNCTION.equals(message.getRole())).count();
+                return new ReplyResult(true, results < 2 ? toolCall() : null);
+            }, 0);
+        }
+
+        private static ChatMessage toolCall() {
+            FunctionCall functionCall = new FunctionCall();
+            functionCall.setName("lookup");
+            functionCall.setArguments("{\"key\": \"a\"}");
+            ToolCall toolCall = new ToolCall();
+            toolCall.setId("call_lookup");
+            toolCall.setType("function");
+            toolCall.setFunction(functionCall);
+            return new ChatMessage(ASSISTANT, null, null, List.of(toolCall));
+        }
+
+        private static class Builder extends ConversableAgent.Builder<Builder> {
+
+            @Override
+            protected ConversableAgent build() {
+                return new ToolCallingAgent();
+            }
+        }
+    }
+}
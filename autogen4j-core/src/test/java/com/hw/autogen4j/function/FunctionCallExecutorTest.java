@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.hw.autogen4j.agent.AssistantAgent;
+import com.hw.autogen4j.agent.UserProxyAgent;
+import com.hw.openai.entity.chat.ChatMessage;
+import com.hw.openai.entity.chat.FunctionCall;
+import com.hw.openai.entity.chat.ToolCall;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+import static com.hw.openai.entity.chat.ChatMessageRole.FUNCTION;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class FunctionCallExecutorTest {
+
+    private final AtomicBoolean interrupted = new AtomicBoolean();
+
+    private final FunctionRegistry registry = FunctionRegistry.builder()
+            .function("sleep", "Sleep for a while.", SleepArgs.class, this::sleep)
+            .build();
+
+    @Test
+    void testRunCallsConcurrently() {
+        FunctionCallExecutor executor = FunctionCallExecutor.builder().maxConcurrency(3).build();
+
+        long start = System.nanoTime();
+        List<ChatMessage> results = executor.executeAll(
+                List.of(sleepCall(300), sleepCall(200), sleepCall(100)), this::execute);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(550));
+        assertThat(results.stream().map(ChatMessage::getContent).toList())
+                .containsExactly("slept 300 ms", "slept 200 ms", "slept 100 ms");
+    }
+
+    @Test
+    void testTimeoutEachCall() {
+        FunctionCallExecutor executor = FunctionCallExecutor.builder()
+                .maxConcurrency(1)
+                .timeout(Duration.ofMillis(200))
+                .build();
+
+        long start = System.nanoTime();
+        // with a single thread, the second call waits for the first, its timeout starts when it runs
+        List<ChatMessage> results = executor.executeAll(List.of(sleepCall(150), sleepCall(10_000)), this::execute);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(results.get(0).getContent()).isEqualTo("slept 150 ms");
+        assertThat(results.get(1).getContent()).isEqualTo("Error: Function sleep timed out after PT0.2S.");
+        assertThat(results.get(1).getRole()).isEqualTo(FUNCTION);
+
+        // the call that timed out is interrupted rather than left running
+        long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        while (!interrupted.get() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(interrupted.get()).isTrue();
+    }
+
+    @Test
+    void testReplyToAllToolCallsAtOnce() {
+        UserProxyAgent userProxy = UserProxyAgent.builder()
+                .name("user_proxy")
+                .humanInputMode(NEVER)
+                .functionMap(registry)
+                .build();
+        AssistantAgent assistant = AssistantAgent.builder().name("assistant").build();
+
+        ChatMessage message = new ChatMessage(ASSISTANT, null, null,
+                List.of(toolCall("call_1", sleepCall(500)), toolCall("call_2", sleepCall(500))));
+        long start = System.nanoTime();
+        ChatMessage reply = userProxy.generateReply(assistant, List.of(message));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(900));
+        assertThat(reply.getRole()).isEqualTo(FUNCTION);
+        assertThat(reply.getName()).isEqualTo("multi_tool_use");
+        assertThat(reply.getContent()).isEqualTo("""
+                Response from calling function sleep (tool call call_1):
+                slept 500 ms
+
+                Response from calling function sleep (tool call call_2):
+                slept 500 ms""");
+    }
+
+    private ChatMessage execute(FunctionCall functionCall) {
+        return new ChatMessage(FUNCTION, registry.execute(functionCall.getName(), functionCall.getArguments()),
+                functionCall.getName());
+    }
+
+    private String sleep(SleepArgs args) {
+        try {
+            Thread.sleep(args.millis());
+        } catch (InterruptedException e) {
+            interrupted.set(true);
+            Thread.currentThread().interrupt();
+        }
+        return "slept %d ms".formatted(args.millis());
+    }
+
+    private static FunctionCall sleepCall(long millis) {
+        FunctionCall functionCall = new FunctionCall();
+        functionCall.setName("sleep");
+        functionCall.setArguments("{\"millis\": %d}".formatted(millis));
+        return functionCall;
+    }
+
+    private static ToolCall toolCall(String id, FunctionCall functionCall) {
+        ToolCall toolCall = new ToolCall();
+        toolCall.setId(id);
+        toolCall.setType("function");
+        toolCall.setFunction(functionCall);
+        return toolCall;
+    }
+
+    record SleepArgs(long millis) {
+    }
+}
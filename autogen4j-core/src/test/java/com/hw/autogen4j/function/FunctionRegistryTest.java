@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.function;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hw.autogen4j.agent.AssistantAgent;
+import com.hw.autogen4j.agent.UserProxyAgent;
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.OpenAiClient;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+import com.hw.openai.entity.chat.FunctionCall;
+import com.hw.openai.entity.chat.ToolCall;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.hw.autogen4j.entity.HumanInputMode.NEVER;
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+import static com.hw.openai.entity.chat.ChatMessageRole.FUNCTION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class FunctionRegistryTest {
+
+    private final ObjectMapper mapper = OpenAiClient.defaultObjectMapper();
+
+    @Test
+    void testDeriveSchemaFromRecord() throws Exception {
+        FunctionRegistry registry = FunctionRegistry.builder()
+                .function("get_weather", "Get the current weather in a city.", WeatherQuery.class,
+                        query -> "Sunny in " + query.city())
+                .build();
+
+        JsonNode function = mapper.readTree(((ToolSpec) registry.tools().get(0)).json()).get("function");
+        assertThat(function.get("name").asText()).isEqualTo("get_weather");
+        JsonNode parameters = function.get("parameters");
+        assertThat(parameters.at("/properties/city/type").asText()).isEqualTo("string");
+        assertThat(parameters.at("/properties/city/description").asText()).isEqualTo("the name of the city");
+        assertThat(parameters.at("/properties/unit/enum").toString()).isEqualTo("[\"CELSIUS\",\"FAHRENHEIT\"]");
+        assertThat(parameters.get("required").toString()).isEqualTo("[\"city\",\"unit\"]");
+
+        assertThat(registry.execute("get_weather", "{\"city\": \"Paris\", \"unit\": \"CELSIUS\"}"))
+                .isEqualTo("Sunny in Paris");
+    }
+
+    @Test
+    void testInvokeAnnotatedMethods() throws Exception {
+        FunctionRegistry registry = FunctionRegistry.builder().functions(new Calculator()).build();
+
+        assertThat(registry.names()).containsExactly("add", "range");
+        assertThat(registry.execute("add", "{\"a\": 1, \"b\": 2}")).isEqualTo("3");
+        assertThat(registry.execute("range", "{\"to\": 3}")).isEqualTo("[0,1,2]");
+
+        JsonNode parameters = mapper.readTree(((ToolSpec) registry.tools().get(0)).json()).at("/function/parameters");
+        assertThat(parameters.at("/properties/a/type").asText()).isEqualTo("integer");
+        assertThat(parameters.at("/properties/a/description").asText()).isEqualTo("the first number");
+    }
+
+    @Test
+    void testRejectInvalidArguments() {
+        FunctionRegistry registry = FunctionRegistry.builder().functions(new Calculator()).build();
+
+        assertThatThrownBy(() -> registry.execute("add", "{\"a\": 1}"))
+                .isInstanceOf(Autogen4jException.class)
+                .hasMessageContaining("argument b of function add is missing");
+        assertThatThrownBy(() -> registry.execute("add", "{\"a\": 1,"))
+                .isInstanceOf(Autogen4jException.class)
+                .hasMessageContaining("JSON format");
+        assertThatThrownBy(() -> registry.execute("subtract", "{}"))
+                .isInstanceOf(Autogen4jException.class)
+                .hasMessageContaining("not found");
+    }
+
+    @Test
+    void testWriteCachedToolSpecsIntoRequest() throws Exception {
+        FunctionRegistry registry = FunctionRegistry.builder().functions(new Calculator()).build();
+        ChatCompletion request = ChatCompletion.builder()
+                .model("gpt-4")
+                .messages(List.of(new ChatMessage("Add 1 and 2.")))
+                .tools(registry.tools())
+                .build();
+
+        JsonNode tools = mapper.readTree(mapper.writeValueAsString(request)).get("tools");
+        assertThat(tools.size()).isEqualTo(2);
+        assertThat(tools.get(0).toString()).isEqualTo(((ToolSpec) registry.tools().get(0)).json());
+        assertThat(registry.tools()).isSameAs(registry.tools());
+    }
+
+    @Test
+    void testExecuteToolCallInAgent() {
+        FunctionRegistry registry = FunctionRegistry.builder().functions(new Calculator()).build();
+        UserProxyAgent userProxy = UserProxyAgent.builder()
+                .name("user_proxy")
+                .humanInputMode(NEVER)
+                .functionMap(registry)
+                .build();
+        AssistantAgent assistant = AssistantAgent.builder().name("assistant").functions(registry).build();
+
+        ChatMessage reply = userProxy.generateReply(assistant, List.of(toolCall("add", "{\"a\": 40, \"b\": 2}")));
+        assertThat(reply.getRole()).isEqualTo(FUNCTION);
+        assertThat(reply.getName()).isEqualTo("add");
+        assertThat(reply.getContent()).isEqualTo("42");
+
+        reply = userProxy.generateReply(assistant, List.of(toolCall("multiply", "{}")));
+        assertThat(reply.getContent()).isEqualTo("Error: Function multiply not found.");
+    }
+
+    private static ChatMessage toolCall(String name, String arguments) {
+        FunctionCall functionCall = new FunctionCall();
+        functionCall.setName(name);
+        functionCall.setArguments(arguments);
+        ToolCall toolCall = new ToolCall();
+        toolCall.setId("call_" + name);
+        toolCall.setType("function");
+        toolCall.setFunction(functionCall);
+        return new ChatMessage(ASSISTANT, null, null, List.of(toolCall));
+    }
+
+    enum Unit {
+        CELSIUS,
+        FAHRENHEIT
+    }
+
+    record WeatherQuery(@JsonPropertyDescription("the name of the city") String city, Unit unit) {
+    }
+
+    static class Calculator {
+
+        @LlmFunction(description = "Add two numbers.")
+        public int add(@JsonProperty("a") @JsonPropertyDescription("the first number") int a,
+                @JsonProperty("b") int b) {
+            return a + b;
+        }
+
+        @LlmFunction(description = "List the numbers from 0 to an exclusive bound.")
+        public List<Integer> range(@JsonProperty("to") int to) {
+            return IntStream.range(0, to).boxed().toList();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.jfr;
+
+import com.hw.autogen4j.agent.AssistantAgent;
+import com.hw.autogen4j.agent.UserProxyAgent;
+import com.hw.autogen4j.model.StubChatModel;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class ConversationEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecordTurnReplyFunctionsAndModelCall() throws IOException {
+        AssistantAgent assistant = AssistantAgent.builder()
+                .name("assistant")
+                .chatModel(StubChatModel.builder().replies("Hello").build())
+                .build();
+        UserProxyAgent userProxy = UserProxyAgent.builder().name("user_proxy").build();
+
+        Path file = tempDir.resolve("conversation.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TurnEvent.class);
+            recording.enable(ReplyFunctionEvent.class);
+            recording.enable(ModelCallEvent.class);
+            recording.start();
+            assistant.generateReply(userProxy, List.of(new ChatMessage("Hi")));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent turn = single(events, "com.hw.autogen4j.Turn");
+        assertThat(turn.getString("agent")).isEqualTo("assistant");
+        assertThat(turn.getString("sender")).isEqualTo("user_proxy");
+        assertThat(turn.getInt("replyLength")).isEqualTo(5);
+
+        RecordedEvent modelCall = single(events, "com.hw.autogen4j.ModelCall");
+        assertThat(modelCall.getBoolean("success")).isTrue();
+        assertThat(modelCall.getLong("promptTokens")).isPositive();
+
+        List<String> functions = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.hw.autogen4j.ReplyFunction"))
+                .map(event -> event.getString("function"))
+                .toList();
+        assertThat(functions).contains("generateOaiReply");
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matched = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .toList();
+        assertThat(matched).hasSize(1);
+        return matched.get(0);
+    }
+}
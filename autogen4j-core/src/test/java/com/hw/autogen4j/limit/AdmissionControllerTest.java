@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.limit;
+
+import com.google.common.base.Ticker;
+import com.hw.autogen4j.limit.AdmissionController.Outcome;
+import com.hw.autogen4j.limit.AdmissionController.Permit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class AdmissionControllerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final Ticker ticker = new Ticker() {
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    void testAdmitWaitingCallsInArrivalOrder() {
+        AdmissionController controller = builder().initialConcurrency(1).maxConcurrency(1).build();
+
+        CompletableFuture<Permit> first = controller.acquire(10);
+        CompletableFuture<Permit> second = controller.acquire(10);
+        CompletableFuture<Permit> third = controller.acquire(10);
+        assertThat(first).isDone();
+        assertThat(second).isNotDone();
+        assertThat(controller.queued()).isEqualTo(2);
+
+        second.cancel(false);
+        first.join().release(Outcome.SUCCESS, 10);
+        assertThat(third).isDone();
+        assertThat(controller.inFlight()).isEqualTo(1);
+        assertThat(controller.queued()).isZero();
+    }
+
+    @Test
+    void testWaitForRequestsPerMinute() {
+        AdmissionController controller = builder().requestsPerMinute(2).build();
+
+        controller.acquire(1).join().release(Outcome.SUCCESS, 1);
+        controller.acquire(1).join().release(Outcome.SUCCESS, 1);
+        CompletableFuture<Permit> third = controller.acquire(1);
+        assertThat(third).isNotDone();
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        controller.acquire(1);
+        assertThat(third).isDone();
+    }
+
+    @Test
+    void testAdmitRequestLargerThanTokenCapacityWhenBucketIsFull() {
+        TokenBucket bucket = new TokenBucket(100, 0);
+
+        assertThat(bucket.tryConsume(150, 0)).isTrue();
+        assertThat(bucket.nanosUntil(10, 0)).isEqualTo(TimeUnit.SECONDS.toNanos(36));
+        assertThat(bucket.tryConsume(10, TimeUnit.SECONDS.toNanos(35))).isFalse();
+        assertThat(bucket.tryConsume(10, TimeUnit.SECONDS.toNanos(36))).isTrue();
+    }
+
+    @Test
+    void testAdjustLimitFromLatencyAndRateLimiting() {
+        AdmissionController controller = builder().initialConcurrency(10).build();
+
+        for (int i = 0; i < 10; i++) {
+            call(controller, 100, Outcome.SUCCESS);
+        }
+        assertThat(controller.limit()).isEqualTo(10);
+        call(controller, 100, Outcome.SUCCESS);
+        assertThat(controller.limit()).isEqualTo(11);
+
+        call(controller, 500, Outcome.SUCCESS);
+        assertThat(controller.limit()).isEqualTo(9);
+
+        call(controller, 100, Outcome.RATE_LIMITED);
+        assertThat(controller.limit()).isEqualTo(4);
+
+        call(controller, 100, Outcome.FAILURE);
+        assertThat(controller.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void testDecreaseOncePerBurstOfRateLimitedCalls() {
+        AdmissionController controller = builder().initialConcurrency(16).build();
+
+        List<Permit> burst = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            burst.add(controller.acquire(10).join());
+        }
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        burst.forEach(permit -> permit.release(Outcome.RATE_LIMITED, 10));
+        assertThat(controller.limit()).isEqualTo(8);
+
+        // a call admitted after the decrease is rate limited again
+        call(controller, 100, Outcome.RATE_LIMITED);
+        assertThat(controller.limit()).isEqualTo(4);
+    }
+
+    private void call(AdmissionController controller, long latencyMillis, Outcome outcome) {
+        Permit permit = controller.acquire(10).join();
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        permit.release(outcome, 10);
+    }
+
+    private AdmissionController.Builder builder() {
+        return AdmissionController.builder().ticker(ticker);
+    }
+}
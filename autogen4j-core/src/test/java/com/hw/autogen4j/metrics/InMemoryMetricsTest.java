@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.metrics;
+
+import com.hw.autogen4j.agent.AssistantAgent;
+import com.hw.autogen4j.agent.UserProxyAgent;
+import com.hw.autogen4j.model.StubChatModel;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static com.hw.autogen4j.metrics.Metrics.LLM_LATENCY;
+import static com.hw.autogen4j.metrics.Metrics.LLM_TOKENS;
+import static com.hw.autogen4j.metrics.Metrics.REPLY_FUNCTION_LATENCY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class InMemoryMetricsTest {
+
+    @Test
+    void testTimerPercentiles() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        LongStream.rangeClosed(1, 1000)
+                .forEach(i -> metrics.recordTime("latency", Duration.ofMillis(i).toNanos(), "agent", "a"));
+
+        InMemoryMetrics.TimerSnapshot timer = metrics.timer("latency", "agent", "a");
+        assertThat(timer.count()).isEqualTo(1000);
+        assertThat(timer.max()).isEqualTo(Duration.ofMillis(1000));
+        assertThat(timer.mean().toMillis()).isBetween(499L, 501L);
+        // the buckets are log-linear, 8 per power of two, so a percentile is within 12.5% of the exact value
+        assertThat(timer.percentile(0.5).toMillis()).isBetween(440L, 565L);
+        assertThat(timer.percentile(0.99).toMillis()).isBetween(870L, 1000L);
+    }
+
+    @Test
+    void testSeparateMetersByTags() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.count("tokens", 10, "type", "prompt");
+        metrics.count("tokens", 5, "type", "prompt");
+        metrics.count("tokens", 3, "type", "completion");
+
+        assertThat(metrics.counter("tokens", "type", "prompt")).isEqualTo(15);
+        assertThat(metrics.counter("tokens", "type", "completion")).isEqualTo(3);
+        assertThat(metrics.counter("tokens", "type", "total")).isZero();
+        assertThat(metrics.counters()).hasSize(2);
+    }
+
+    @Test
+    void testRecordAgentReply() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        Metrics.setGlobal(metrics);
+        try {
+            AssistantAgent assistant = AssistantAgent.builder()
+                    .name("assistant")
+                    .chatModel(StubChatModel.builder().replies("Hello").build())
+                    .build();
+            UserProxyAgent userProxy = UserProxyAgent.builder().name("user_proxy").build();
+
+            assistant.generateReply(userProxy, List.of(new ChatMessage("Hi")));
+
+            assertThat(metrics.timer(LLM_LATENCY, "agent", "assistant", "model", "gpt-4", "outcome", "success")
+                    .count()).isEqualTo(1);
+            assertThat(metrics.counter(LLM_TOKENS, "agent", "assistant", "model", "gpt-4", "type", "prompt"))
+                    .isPositive();
+            assertThat(metrics.timer(REPLY_FUNCTION_LATENCY, "agent", "assistant", "function", "generateOaiReply")
+                    .count()).isEqualTo(1);
+        } finally {
+            Metrics.setGlobal(null);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.autogen4j.model.CascadingChatModel.TierStats;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class CascadingChatModelTest {
+
+    @Test
+    void testAcceptReplyOfCheapModel() {
+        CascadingChatModel model = cascade(Map.of("gpt-3.5-turbo", "TERMINATE", "gpt-4", "strong"),
+                AcceptanceCheck.nonEmpty());
+
+        assertThat(content(model)).isEqualTo("TERMINATE");
+        List<TierStats> stats = model.stats();
+        assertThat(stats.get(0).calls()).isEqualTo(1L);
+        assertThat(stats.get(0).hitRate()).isEqualTo(1.0);
+        assertThat(stats.get(1).calls()).isZero();
+    }
+
+    @Test
+    void testEscalateEmptyReply() {
+        CascadingChatModel model = cascade(Map.of("gpt-3.5-turbo", " ", "gpt-4", "strong"),
+                AcceptanceCheck.nonEmpty());
+
+        assertThat(content(model)).isEqualTo("strong");
+        assertThat(model.stats().get(0).hitRate()).isZero();
+        assertThat(model.stats().get(1).accepted()).isEqualTo(1L);
+    }
+
+    @Test
+    void testAcceptOnlyWellFormedCode() {
+        AcceptanceCheck check = AcceptanceCheck.wellFormedCode();
+
+        assertThat(check.accept(request(), reply("```python\nprint('hello')\n```"))).isTrue();
+        assertThat(check.accept(request(), reply("```python\nprint('hello')"))).isFalse();
+        assertThat(check.accept(request(), reply("```rust\nfn main() {}\n```"))).isFalse();
+        assertThat(check.accept(request(), reply("No code."))).isTrue();
+    }
+
+    @Test
+    void testEscalateWhenCheapModelFails() {
+        CascadingChatModel model = CascadingChatModel.builder()
+                .tier("gpt-3.5-turbo", request -> {
+                    throw new Autogen4jException("Model not found.");
+                })
+                .tier(null, StubChatModel.builder().replies("strong").build())
+                .build();
+
+        assertThat(content(model)).isEqualTo("strong");
+        assertThat(model.stats().get(0).failures()).isEqualTo(1L);
+    }
+
+    @Test
+    void testKeepDefaultCheckWhenNull() {
+        CascadingChatModel model = cascade(Map.of("gpt-3.5-turbo", "TERMINATE", "gpt-4", "strong"), null);
+
+        assertThat(content(model)).isEqualTo("TERMINATE");
+        assertThat(model.stats().get(0).failures()).isZero();
+    }
+
+    @Test
+    void testThrowFailingCheckWithoutEscalating() {
+        CascadingChatModel model = cascade(Map.of("gpt-3.5-turbo", "TERMINATE", "gpt-4", "strong"),
+                (request, reply) -> {
+                    throw new IllegalStateException("Broken check.");
+                });
+
+        assertThatThrownBy(() -> content(model))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Broken check.");
+        assertThat(model.stats().get(0).failures()).isZero();
+        assertThat(model.stats().get(1).calls()).isZero();
+    }
+
+    /**
+     * A cascade of two tiers on the same stub, answering by model name.
+     */
+    private static CascadingChatModel cascade(Map<String, String> replies, AcceptanceCheck check) {
+        StubChatModel stub = StubChatModel.builder()
+                .responder(request -> reply(replies.get(request.getModel())))
+                .build();
+        return CascadingChatModel.builder()
+                .tier("gpt-3.5-turbo", stub)
+                .tier(null, stub)
+                .acceptanceCheck(check)
+                .build();
+    }
+
+    private static String content(ChatModel model) {
+        return model.complete(request()).getChoices().get(0).getMessage().getContent();
+    }
+
+    private static ChatMessage reply(String content) {
+        return new ChatMessage(ASSISTANT, content);
+    }
+
+    private static ChatCompletion request() {
+        return ChatCompletion.builder()
+                .model("gpt-4")
+                .messages(List.of(new ChatMessage("Hello")))
+                .build();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class HedgingChatModelTest {
+
+    private static final Duration FAST = Duration.ofMillis(1);
+
+    @Test
+    void testHedgeSlowCallToAlternateModel() {
+        StubChatModel primary = slowAfter(20, Duration.ofSeconds(10));
+        HedgingChatModel model = HedgingChatModel.builder()
+                .model(primary)
+                .alternateModel(StubChatModel.builder().replies("hedge").build())
+                .budgetRatio(1)
+                .build();
+
+        warmUp(model, 20);
+        assertThat(model.hedgeDelay()).isNotNull();
+
+        long start = System.nanoTime();
+        String content = model.complete(request(0)).getChoices().get(0).getMessage().getContent();
+        assertThat(content).isEqualTo("hedge");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(model.hedges()).isEqualTo(1);
+        assertThat(model.hedgeWins()).isEqualTo(1);
+        // the interrupt cancelling the primary call is cleared
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+
+    @Test
+    void testRunPrimaryCallOnCallingThread() {
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        HedgingChatModel model = HedgingChatModel.builder()
+                .model(StubChatModel.builder()
+                        .responder(request -> {
+                            threads.add(Thread.currentThread());
+                            return new ChatMessage("primary");
+                        })
+                        .build())
+                .build();
+
+        warmUp(model, 25);
+        assertThat(model.hedgeDelay()).isNotNull();
+        assertThat(threads).hasSize(25).allMatch(thread -> thread == Thread.currentThread());
+        assertThat(model.hedges()).isZero();
+    }
+
+    @Test
+    void testNotHedgeFailedCall() {
+        AtomicLong calls = new AtomicLong();
+        StubChatModel alternate = StubChatModel.builder().replies("hedge").build();
+        HedgingChatModel model = HedgingChatModel.builder()
+                .model(StubChatModel.builder()
+                        .latency(() -> FAST.toNanos())
+                        .responder(request -> {
+                            if (calls.incrementAndGet() > 20) {
+                                throw new Autogen4jException("primary failed");
+                            }
+                            return new ChatMessage("primary");
+                        })
+                        .build())
+                .alternateModel(alternate)
+                .budgetRatio(1)
+                .build();
+
+        warmUp(model, 20);
+        assertThatThrownBy(() -> model.complete(request(0))).hasMessage("primary failed");
+        assertThat(model.hedges()).isZero();
+    }
+
+    @Test
+    void testBoundHedgesByBudget() {
+        HedgingChatModel model = HedgingChatModel.builder()
+                .model(slowAfter(20, Duration.ofMillis(100)))
+                .budgetRatio(0.1)
+                .maxBudget(1)
+                .build();
+
+        warmUp(model, 25);
+        assertThat(model.requests()).isEqualTo(25);
+        assertThat(model.hedges()).isEqualTo(1);
+    }
+
+    @Test
+    void testRecordLatencyOfHedgedCalls() {
+        HedgingChatModel model = HedgingChatModel.builder()
+                .model(slowAfter(5, Duration.ofSeconds(10)))
+                .alternateModel(StubChatModel.builder().latency(() -> Duration.ofMillis(50).toNanos()).build())
+                .percentile(1)
+                .minDelay(Duration.ofMillis(5))
+                .minSamples(5)
+                .windowSize(5)
+                .budgetRatio(1)
+                .maxBudget(16)
+                .build();
+
+        warmUp(model, 5);
+        assertThat(model.hedgeDelay()).isLessThan(Duration.ofMillis(50));
+
+        // the slow primary calls lose to the hedges, yet their elapsed time still feeds the hedging delay
+        warmUp(model, 16);
+        assertThat(model.hedges()).isEqualTo(16);
+        assertThat(model.hedgeDelay()).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    void testNotHedgeNonIdempotentRequest() {
+        HedgingChatModel model = HedgingChatModel.builder()
+                .model(StubChatModel.builder().build())
+                .build();
+
+        model.complete(request(0.7f));
+        assertThat(model.requests()).isZero();
+        assertThat(model.hedgeDelay()).isNull();
+    }
+
+    /**
+     * A stub answering quickly the first calls, then slowly.
+     */
+    private static StubChatModel slowAfter(int fastCalls, Duration slow) {
+        AtomicLong calls = new AtomicLong();
+        return StubChatModel.builder()
+                .latency(() -> calls.incrementAndGet() > fastCalls ? slow.toNanos() : FAST.toNanos())
+                .build();
+    }
+
+    private static void warmUp(ChatModel model, int calls) {
+        for (int i = 0; i < calls; i++) {
+            model.complete(request(0));
+        }
+    }
+
+    private static ChatCompletion request(float temperature) {
+        return ChatCompletion.builder()
+                .model("gpt-4")
+                .temperature(temperature)
+                .messages(List.of(new ChatMessage("Hello")))
+                .build();
+    }
+}
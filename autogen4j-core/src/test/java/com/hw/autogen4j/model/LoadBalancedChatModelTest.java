@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.exception.Autogen4jException;
+import com.hw.autogen4j.model.LoadBalancedChatModel.BackendStats;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class LoadBalancedChatModelTest {
+
+    @Test
+    void testPreferFasterDeployment() {
+        StubChatModel fast = stub(Duration.ofMillis(1));
+        StubChatModel slow = stub(Duration.ofMillis(20));
+        ChatModel model = LoadBalancedChatModel.builder()
+                .backend("fast", fast)
+                .backend("slow", slow)
+                .decayTime(Duration.ofMillis(50))
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            model.complete(request());
+        }
+        assertThat(fast.calls()).isGreaterThan(80L);
+    }
+
+    @Test
+    void testEjectFailingDeployment() {
+        StubChatModel healthy = stub(Duration.ZERO);
+        LoadBalancedChatModel model = LoadBalancedChatModel.builder()
+                .backend("down", request -> {
+                    throw new Autogen4jException(new IOException("Connection refused"));
+                })
+                .backend("healthy", healthy)
+                .ejectionThreshold(2)
+                .build();
+
+        int failures = 0;
+        for (int i = 0; i < 50; i++) {
+            try {
+                model.complete(request());
+            } catch (Autogen4jException e) {
+                failures++;
+            }
+        }
+        assertThat(failures).isEqualTo(2);
+        assertThat(healthy.calls()).isEqualTo(48L);
+
+        List<BackendStats> stats = model.stats();
+        assertThat(stats.get(0).ejected()).isTrue();
+        assertThat(stats.get(1).ejected()).isFalse();
+        assertThat(stats.get(1).outstanding()).isZero();
+    }
+
+    @Test
+    void testBoundEjectionOfLongFailingDeployment() {
+        long base = Duration.ofSeconds(30).toNanos();
+        long max = Duration.ofMinutes(5).toNanos();
+
+        assertThat(LoadBalancedChatModel.ejectionNanos(base, max, 0)).isEqualTo(base);
+        assertThat(LoadBalancedChatModel.ejectionNanos(base, max, 2)).isEqualTo(4 * base);
+        // the doubling would overflow, the ejection stays at the maximum
+        for (int ejections : new int[]{29, 30, 63, 64, 1000}) {
+            assertThat(LoadBalancedChatModel.ejectionNanos(base, max, ejections)).isEqualTo(max);
+        }
+        assertThat(LoadBalancedChatModel.ejectionNanos(base, Long.MAX_VALUE, 28)).isPositive();
+    }
+
+    @Test
+    void testSendToEjectedDeploymentsWhenAllAreEjected() {
+        ChatModel model = LoadBalancedChatModel.builder()
+                .backend("down", request -> {
+                    throw new Autogen4jException(new IOException("Connection refused"));
+                })
+                .ejectionThreshold(1)
+                .build();
+
+        assertThatThrownBy(() -> model.complete(request())).hasMessageContaining("Connection refused");
+        assertThatThrownBy(() -> model.complete(request())).hasMessageContaining("Connection refused");
+    }
+
+    private static StubChatModel stub(Duration latency) {
+        return StubChatModel.builder().latency(LatencyDistribution.fixed(latency)).build();
+    }
+
+    private static ChatCompletion request() {
+        return ChatCompletion.builder()
+                .model("gpt-4")
+                .messages(List.of(new ChatMessage("Hello")))
+                .build();
+    }
+}
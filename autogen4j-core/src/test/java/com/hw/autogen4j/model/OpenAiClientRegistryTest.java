@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.agent.AssistantAgent;
+import com.hw.openai.OpenAiClient;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class OpenAiClientRegistryTest {
+
+    private static final EndpointConfig ENDPOINT = EndpointConfig.builder().apiKey("sk-test").build();
+
+    @Test
+    void testShareClientPerEndpoint() {
+        try (OpenAiClientRegistry registry = new OpenAiClientRegistry()) {
+            OpenAiClient client = registry.client(ENDPOINT);
+
+            assertThat(registry.client(EndpointConfig.builder().apiKey("sk-test").build())).isSameAs(client);
+            assertThat(registry.client(ENDPOINT.toBuilder().requestTimeout(30).build())).isNotSameAs(client);
+            assertThat(registry.size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void testRecreateClientAfterClose() {
+        OpenAiClientRegistry registry = new OpenAiClientRegistry();
+        OpenAiClient client = registry.client(ENDPOINT);
+
+        registry.close();
+        assertThat(registry.size()).isZero();
+        assertThat(registry.client(ENDPOINT)).isNotSameAs(client);
+        registry.close();
+    }
+
+    @Test
+    void testModelFollowsRecreatedClient() {
+        OpenAiClientRegistry registry = new OpenAiClientRegistry();
+        OpenAiChatModel model = new OpenAiChatModel(ENDPOINT, registry);
+        OpenAiClient client = model.getClient();
+
+        registry.close();
+        assertThat(model.getClient()).isNotSameAs(client).isSameAs(registry.client(ENDPOINT));
+        registry.close();
+    }
+
+    @Test
+    void testBuildAgentWithoutCreatingClient() {
+        int clients = OpenAiClientRegistry.shared().size();
+
+        AssistantAgent.builder().name("assistant").endpoint(ENDPOINT.toBuilder().apiBase("http://unused").build())
+                .build();
+        assertThat(OpenAiClientRegistry.shared().size()).isEqualTo(clients);
+    }
+
+    @Test
+    void testHideCredentialsFromToString() {
+        assertThat(ENDPOINT.toString()).doesNotContain("sk-test");
+    }
+}
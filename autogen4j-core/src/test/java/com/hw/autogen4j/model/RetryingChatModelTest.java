@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.autogen4j.exception.CircuitOpenException;
+import com.hw.autogen4j.retry.CircuitBreaker;
+import com.hw.autogen4j.retry.RetryBudget;
+import com.hw.autogen4j.retry.RetryPolicy;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import io.reactivex.Flowable;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author HamaWhite
+ */
+class RetryingChatModelTest {
+
+    private final StubChatModel stub = StubChatModel.builder().replies("reply").build();
+
+    private final RetryPolicy policy = RetryPolicy.builder()
+            .initialBackoff(Duration.ofMillis(1))
+            .budget(RetryBudget.builder().build())
+            .build();
+
+    @Test
+    void testRetryTransientFailures() {
+        ChatModel model = new RetryingChatModel(failing(2, 503, null), policy, null);
+
+        assertThat(model.complete(request()).getChoices().get(0).getMessage().getContent()).isEqualTo("reply");
+        assertThat(policy.getBudget().retries()).isEqualTo(2);
+    }
+
+    @Test
+    void testNotRetryClientError() {
+        ChatModel model = new RetryingChatModel(failing(1, 400, null), policy, null);
+
+        assertThatThrownBy(() -> model.complete(request())).isInstanceOf(HttpException.class);
+        assertThat(policy.getBudget().retries()).isZero();
+    }
+
+    @Test
+    void testHonorRetryAfter() {
+        ChatModel model = new RetryingChatModel(failing(1, 429, "0.2"), policy, null);
+
+        long start = System.nanoTime();
+        model.complete(request());
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+    }
+
+    @Test
+    void testStopRetryingWhenBudgetIsExhausted() {
+        RetryPolicy budgeted = policy.toBuilder()
+                .budget(RetryBudget.builder().maxBalance(1).ratio(0).minRetriesPerSecond(0).build())
+                .build();
+        ChatModel model = new RetryingChatModel(failing(2, 503, null), budgeted, null);
+
+        assertThatThrownBy(() -> model.complete(request())).isInstanceOf(HttpException.class);
+        assertThat(budgeted.getBudget().rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailFastWhenCircuitIsOpen() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.builder().failureThreshold(2).build();
+        ChatModel model = new RetryingChatModel(failing(10, 503, null), policy, circuitBreaker);
+
+        assertThatThrownBy(() -> model.complete(request())).isInstanceOf(CircuitOpenException.class);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(policy.getBudget().retries()).isEqualTo(2);
+    }
+
+    @Test
+    void testRetryStreamBeforeFirstChunk() {
+        AtomicInteger calls = new AtomicInteger();
+        ChatModel flaky = new ChatModel() {
+
+            @Override
+            public ChatCompletionResp complete(ChatCompletion request) {
+                return stub.complete(request);
+            }
+
+            @Override
+            public Flowable<com.hw.openai.entity.chat.ChatCompletionChunk> stream(ChatCompletion request) {
+                return calls.incrementAndGet() == 1 ? Flowable.error(httpException(503, null)) : stub.stream(request);
+            }
+        };
+        ChatModel model = new RetryingChatModel(flaky, policy, null);
+
+        assertThat(model.stream(request()).count().blockingGet()).isEqualTo(1L);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    /**
+     * A model failing its first calls with an http error, then answering.
+     */
+    private ChatModel failing(int failures, int statusCode, String retryAfter) {
+        AtomicInteger calls = new AtomicInteger();
+        return request -> {
+            if (calls.incrementAndGet() <= failures) {
+                throw httpException(statusCode, retryAfter);
+            }
+            return stub.complete(request);
+        };
+    }
+
+    private static HttpException httpException(int statusCode, String retryAfter) {
+        okhttp3.Response.Builder raw = new okhttp3.Response.Builder()
+                .code(statusCode)
+                .message("error")
+                .protocol(Protocol.HTTP_1_1)
+                .request(new Request.Builder().url("http://localhost/").build());
+        if (retryAfter != null) {
+            raw.header("Retry-After", retryAfter);
+        }
+        return new HttpException(Response.error(ResponseBody.create(null, ""), raw.build()));
+    }
+
+    private static ChatCompletion request() {
+        return ChatCompletion.builder()
+                .model("gpt-4")
+                .messages(List.of(new ChatMessage("Hello")))
+                .build();
+    }
+}
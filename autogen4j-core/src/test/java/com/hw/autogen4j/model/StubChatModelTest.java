@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.model;
+
+import com.hw.openai.entity.chat.ChatChoice;
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+import com.hw.openai.entity.chat.ChatMessage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static com.hw.openai.entity.chat.ChatMessageRole.ASSISTANT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class StubChatModelTest {
+
+    @Test
+    void testCycleThroughReplies() {
+        ChatModel model = StubChatModel.builder().replies("first", "second").build();
+
+        assertThat(content(model.complete(request()))).isEqualTo("first");
+        assertThat(content(model.complete(request()))).isEqualTo("second");
+        assertThat(content(model.complete(request()))).isEqualTo("first");
+    }
+
+    @Test
+    void testReportUsageAndModel() {
+        ChatCompletionResp response = StubChatModel.builder().build().complete(request());
+
+        assertThat(response.getModel()).isEqualTo("gpt-4");
+        assertThat(response.getChoices().get(0).getMessage().getRole()).isEqualTo(ASSISTANT);
+        assertThat(response.getUsage().getPromptTokens()).isPositive();
+        assertThat(response.getUsage().getTotalTokens())
+                .isEqualTo(response.getUsage().getPromptTokens() + response.getUsage().getCompletionTokens());
+    }
+
+    @Test
+    void testStreamReplyWordByWord() {
+        ChatModel model = StubChatModel.builder().replies("Hello big world").build();
+
+        List<String> deltas = model.stream(request())
+                .map(chunk -> chunk.getChoices().get(0).getMessage().getContent())
+                .toList()
+                .blockingGet();
+        assertThat(deltas).containsExactly("Hello ", "big ", "world");
+    }
+
+    @Test
+    void testSampleSameLatenciesForSameSeed() {
+        LatencyDistribution first = LatencyDistribution.logNormal(Duration.ofMillis(500), 0.5, 42);
+        LatencyDistribution second = LatencyDistribution.logNormal(Duration.ofMillis(500), 0.5, 42);
+
+        long[] samples = LongStream.range(0, 1000).map(i -> first.sampleNanos()).toArray();
+        assertThat(LongStream.range(0, 1000).map(i -> second.sampleNanos()).toArray()).isEqualTo(samples);
+        assertThat(LongStream.of(samples).sorted().skip(500).findFirst().getAsLong())
+                .isBetween(Duration.ofMillis(450).toNanos(), Duration.ofMillis(550).toNanos());
+    }
+
+    @Test
+    void testSleepForSampledLatency() {
+        ChatModel model = StubChatModel.builder().latency(LatencyDistribution.fixed(Duration.ofMillis(50))).build();
+
+        long start = System.nanoTime();
+        model.complete(request());
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(50).toNanos());
+    }
+
+    private static String content(ChatCompletionResp response) {
+        ChatChoice choice = response.getChoices().get(0);
+        return choice.getMessage().getContent();
+    }
+
+    private static ChatCompletion request() {
+        return ChatCompletion.builder()
+                .model("gpt-4")
+                .messages(List.of(new ChatMessage("Hello")))
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.autogen4j.retry;
+
+import com.google.common.base.Ticker;
+import com.hw.autogen4j.retry.CircuitBreaker.State;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class CircuitBreakerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final Ticker ticker = new Ticker() {
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    void testOpenAfterConsecutiveFailuresThenProbe() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.builder()
+                .failureThreshold(3)
+                .openDuration(Duration.ofSeconds(30))
+                .ticker(ticker)
+                .build();
+
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.state()).isEqualTo(State.CLOSED);
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.state()).isEqualTo(State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.state()).isEqualTo(State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.state()).isEqualTo(State.OPEN);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess();
+        assertThat(circuitBreaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void testRefillRetryBudgetFromCallsAndTime() {
+        RetryBudget budget = RetryBudget.builder()
+                .ratio(0.5)
+                .minRetriesPerSecond(1)
+                .maxBalance(2)
+                .ticker(ticker)
+                .build();
+
+        assertThat(budget.tryRetry()).isTrue();
+        assertThat(budget.tryRetry()).isTrue();
+        assertThat(budget.tryRetry()).isFalse();
+
+        budget.onCall();
+        budget.onCall();
+        assertThat(budget.tryRetry()).isTrue();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(budget.tryRetry()).isTrue();
+        assertThat(budget.retries()).isEqualTo(4);
+        assertThat(budget.rejected()).isEqualTo(1);
+    }
+}